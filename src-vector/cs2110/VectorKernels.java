@@ -0,0 +1,164 @@
+package cs2110;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Array kernels using the incubating Vector API: each iteration processes a whole vector of
+ * `SPECIES.length()` elements, and the remaining elements are processed one at a time.  Every
+ * kernel has its own loop with a constant operator, since C2 only intrinsifies `lanewise()` for
+ * an operator it can see (a shared loop taking the operator ran slower than scalar code).  This
+ * class is kept apart from src/ because it must be compiled with
+ * `--add-modules jdk.incubator.vector`, after the classes in src/:
+ * <pre>
+ * javac --add-modules jdk.incubator.vector -cp OUT -d OUT src-vector/cs2110/VectorKernels.java
+ * </pre>
+ * It is only loaded (see `ArrayKernels.DEFAULT`) when the JVM is also run with
+ * `--add-modules jdk.incubator.vector`.
+ */
+final class VectorKernels implements ArrayKernels {
+
+    /**
+     * The widest vector shape the platform supports efficiently.
+     */
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public void add(double[] a, double[] b, double[] r, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i).add(DoubleVector.fromArray(SPECIES, b, i))
+                    .intoArray(r, i);
+        }
+        for (; i < n; i++) {
+            r[i] = a[i] + b[i];
+        }
+    }
+
+    @Override
+    public void subtract(double[] a, double[] b, double[] r, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i).sub(DoubleVector.fromArray(SPECIES, b, i))
+                    .intoArray(r, i);
+        }
+        for (; i < n; i++) {
+            r[i] = a[i] - b[i];
+        }
+    }
+
+    @Override
+    public void multiply(double[] a, double[] b, double[] r, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i).mul(DoubleVector.fromArray(SPECIES, b, i))
+                    .intoArray(r, i);
+        }
+        for (; i < n; i++) {
+            r[i] = a[i] * b[i];
+        }
+    }
+
+    @Override
+    public void divide(double[] a, double[] b, double[] r, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i).div(DoubleVector.fromArray(SPECIES, b, i))
+                    .intoArray(r, i);
+        }
+        for (; i < n; i++) {
+            r[i] = a[i] / b[i];
+        }
+    }
+
+    @Override
+    public void pow(double[] a, double[] b, double[] r, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i)
+                    .lanewise(VectorOperators.POW, DoubleVector.fromArray(SPECIES, b, i))
+                    .intoArray(r, i);
+        }
+        for (; i < n; i++) {
+            r[i] = Math.pow(a[i], b[i]);
+        }
+    }
+
+    @Override
+    public void abs(double[] a, double[] r, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i).lanewise(VectorOperators.ABS).intoArray(r, i);
+        }
+        for (; i < n; i++) {
+            r[i] = Math.abs(a[i]);
+        }
+    }
+
+    @Override
+    public void sqrt(double[] a, double[] r, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i).lanewise(VectorOperators.SQRT).intoArray(r, i);
+        }
+        for (; i < n; i++) {
+            r[i] = Math.sqrt(a[i]);
+        }
+    }
+
+    @Override
+    public void exp(double[] a, double[] r, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i).lanewise(VectorOperators.EXP).intoArray(r, i);
+        }
+        for (; i < n; i++) {
+            r[i] = Math.exp(a[i]);
+        }
+    }
+
+    @Override
+    public void log(double[] a, double[] r, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i).lanewise(VectorOperators.LOG).intoArray(r, i);
+        }
+        for (; i < n; i++) {
+            r[i] = Math.log(a[i]);
+        }
+    }
+
+    @Override
+    public void sin(double[] a, double[] r, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i).lanewise(VectorOperators.SIN).intoArray(r, i);
+        }
+        for (; i < n; i++) {
+            r[i] = Math.sin(a[i]);
+        }
+    }
+
+    @Override
+    public void cos(double[] a, double[] r, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i).lanewise(VectorOperators.COS).intoArray(r, i);
+        }
+        for (; i < n; i++) {
+            r[i] = Math.cos(a[i]);
+        }
+    }
+
+    @Override
+    public void tan(double[] a, double[] r, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i).lanewise(VectorOperators.TAN).intoArray(r, i);
+        }
+        for (; i < n; i++) {
+            r[i] = Math.tan(a[i]);
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package cs2110;
 
-import java.util.HashSet;
+import java.io.IOException;
 import java.util.Set;
 
 /**
@@ -9,9 +9,28 @@ import java.util.Set;
  */
 public class Application implements Expression {
 
-    private Expression argument;
+    private final Expression argument;
 
-    private UnaryFunction func;
+    private final UnaryFunction func;
+
+    /**
+     * Structural hash code of this node, computed once from that of its argument (which is itself
+     * cached), so hashing a tree does not traverse it.
+     */
+    private final int hash;
+
+    /**
+     * Metadata of this node, computed once from that of its argument (which is itself cached),
+     * so querying it does not traverse the tree.
+     */
+    private final int opCount;
+    private final int depth;
+
+    /**
+     * The variables this node depends on, or null if not yet known.  Computed by
+     * `DependencySet.collect()` on the first call to `dependencies()`, like that of Operation.
+     */
+    private volatile DependencySet dependencies;
 
     /**
      * Creates a node representing a value where `argument` is passed into `func`
@@ -19,6 +38,23 @@ public class Application implements Expression {
     public Application(UnaryFunction func, Expression argument) {
         this.func = func;
         this.argument = argument;
+        hash = 31 * func.name().hashCode() + argument.hashCode();
+        opCount = 1 + argument.opCount();
+        depth = 1 + argument.depth();
+    }
+
+    /**
+     * Return the function applied by this node.
+     */
+    UnaryFunction func() {
+        return func;
+    }
+
+    /**
+     * Return the argument subexpression of this node.
+     */
+    Expression argument() {
+        return argument;
     }
 
     /**
@@ -27,6 +63,9 @@ public class Application implements Expression {
      */
     @Override
     public double eval(VarTable vars) throws UnboundVariableException {
+        if (depth > Traversal.RECURSION_LIMIT) {
+            return Traversal.eval(this, vars);
+        }
         return func.apply(argument.eval(vars));
     }
 
@@ -35,7 +74,15 @@ public class Application implements Expression {
      */
     @Override
     public int opCount() {
-        return 1 + argument.opCount();
+        return opCount;
+    }
+
+    /**
+     * Return one more than the depth of the argument.
+     */
+    @Override
+    public int depth() {
+        return depth;
     }
 
     /**
@@ -45,7 +92,7 @@ public class Application implements Expression {
      */
     @Override
     public String infixString() {
-        return func.name() + "(" + argument.infixString() + ")";
+        return Traversal.infixString(this);
     }
 
     /**
@@ -55,31 +102,83 @@ public class Application implements Expression {
      */
     @Override
     public String postfixString() {
-        return argument.postfixString() + " " + func.name() + "()";
+        return Traversal.postfixString(this);
+    }
+
+    /**
+     * Append the infix representation of this expression to `out`, in time linear in its length.
+     */
+    @Override
+    public void writeInfix(Appendable out) throws IOException {
+        Traversal.writeInfix(this, out);
+    }
+
+    /**
+     * Append the postfix representation of this expression to `out`, in time linear in its
+     * length.
+     */
+    @Override
+    public void writePostfix(Appendable out) throws IOException {
+        Traversal.writePostfix(this, out);
     }
 
     /**
      * Returns an Expression containing the optimized Application object. An Application can be
      * fully optimized to a Constant if the operand children in the Application object can be fully
      * optimized to Constants. Otherwise, Application can still be partially optimized by creating a
-     * new copy where the child is replaced with its optimized form.
+     * new copy where the child is replaced with its optimized form, or this node itself if the
+     * child did not change. This node is not modified, and no subtree is evaluated to decide
+     * whether it can be folded.
+     * If the function is defined by an expression, its body is inlined (see `Inliner`) and
+     * optimized in place of the application, so constants can be folded across the call.
      */
     @Override
     public Expression optimize(VarTable vars) {
-        argument = argument.optimize(vars);
-        try {
-            return new Constant(this.eval(vars));
-        } catch (UnboundVariableException e) {
-            return new Application(this.func, argument);
+        if (depth > Traversal.RECURSION_LIMIT) {
+            return Traversal.optimize(this, vars);
         }
+        return fold(argument.optimize(vars), vars);
     }
 
     /**
-     * Returns a Set containing all the unique Variable objects used in the operation.
+     * Return the optimized form of this node given the optimized form `arg` of its argument.
+     */
+    Expression fold(Expression arg, VarTable vars) {
+        // The expansion has at most `Inliner.DEFAULT_LIMIT` nodes, so can be optimized
+        // recursively.
+        Expression expanded = Inliner.expand(func, arg, Inliner.DEFAULT_LIMIT);
+        if (expanded != null) {
+            return expanded.optimize(vars);
+        }
+        if (arg instanceof Constant c) {
+            return new Constant(func.apply(c.value));
+        }
+        return arg == argument ? this : new Application(func, arg);
+    }
+
+    /**
+     * Returns a Set containing all the unique Variable objects used in the operation. The set is
+     * that of the argument, found on the first call without recursion, and is not modifiable.
      */
     @Override
     public Set<String> dependencies() {
-        return argument.dependencies();
+        DependencySet deps = dependencies;
+        return deps != null ? deps : DependencySet.collect(this);
+    }
+
+    /**
+     * Return the set of variables this node depends on if it is known, or null otherwise.
+     */
+    DependencySet knownDependencies() {
+        return dependencies;
+    }
+
+    /**
+     * Record `deps` as the set of variables this node depends on.  Called by
+     * `DependencySet.collect()`.
+     */
+    void knownDependencies(DependencySet deps) {
+        dependencies = deps;
     }
 
     /**
@@ -87,10 +186,27 @@ public class Application implements Expression {
      * nodes are considered equal if both their functions and arguments are equal
      */
     public boolean equals(Object a) {
+        if (a == this) {
+            return true;
+        }
         if (a instanceof Application) {
-            return func.equals(((Application) a).func) && argument.equals(
-                    ((Application) a).argument);
+            Application other = (Application) a;
+            if (hash != other.hash) {
+                return false;
+            } else if (depth > Traversal.RECURSION_LIMIT) {
+                return Traversal.equal(this, other);
+            }
+            return func.equals(other.func) && argument.equals(other.argument);
         }
         return false;
     }
+
+    /**
+     * Return a hash code consistent with `equals()`, combining the function's name with the hash
+     * code of the argument.
+     */
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
@@ -0,0 +1,67 @@
+package cs2110;
+
+/**
+ * Loops applying the standard operators and built-in math functions to whole columns of values,
+ * used by the array forms of `Operator.operate()` and `UnaryFunction.apply()`.  Each method sets
+ * `r[i]` to the result for the arguments at index `i` (`a[i]`, and `b[i]` for operators), for
+ * each `i` in `[0, n)`.  `r` may be the same array as an argument.
+ * <p>
+ * `DEFAULT` is the Vector API implementation (`VectorKernels`, kept in src-vector/ because it
+ * must be compiled with `--add-modules jdk.incubator.vector`) when that module is in the boot
+ * layer and the class is on the class path, and `SCALAR` otherwise.  The arithmetic operators,
+ * abs and sqrt give bit-identical results either way; the other functions may differ from `Math`
+ * in the last place when vectorized.
+ */
+interface ArrayKernels {
+
+    /**
+     * Plain loops calling the operators and `Math` methods once per element.
+     */
+    ArrayKernels SCALAR = new ScalarKernels();
+
+    /**
+     * The fastest implementation available in this JVM.
+     */
+    ArrayKernels DEFAULT = load();
+
+    void add(double[] a, double[] b, double[] r, int n);
+
+    void subtract(double[] a, double[] b, double[] r, int n);
+
+    void multiply(double[] a, double[] b, double[] r, int n);
+
+    void divide(double[] a, double[] b, double[] r, int n);
+
+    void pow(double[] a, double[] b, double[] r, int n);
+
+    void abs(double[] a, double[] r, int n);
+
+    void sqrt(double[] a, double[] r, int n);
+
+    void exp(double[] a, double[] r, int n);
+
+    void log(double[] a, double[] r, int n);
+
+    void sin(double[] a, double[] r, int n);
+
+    void cos(double[] a, double[] r, int n);
+
+    void tan(double[] a, double[] r, int n);
+
+    /**
+     * Return the Vector API kernels if the incubator module is present and they can be loaded,
+     * or `SCALAR` if not.  They are loaded reflectively so that this package compiles and runs
+     * without the module.
+     */
+    private static ArrayKernels load() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return SCALAR;
+        }
+        try {
+            return (ArrayKernels) Class.forName("cs2110.VectorKernels")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return SCALAR;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package cs2110;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A VarTable storing values in a `double[]` indexed by each variable's `SymbolTable` id, with a
+ * bitset recording which variables are bound.  Besides the name-based VarTable methods, values
+ * can be accessed directly by id, which Variable nodes resolve once when they are created; that
+ * path costs an array load instead of a hash lookup and never boxes.
+ */
+public class ArrayVarTable implements VarTable {
+
+    /**
+     * The value of each bound variable, indexed by id.  Entries for unbound variables are
+     * meaningless.
+     */
+    private double[] values = new double[16];
+
+    /**
+     * Bit `id % 64` of word `id / 64` is set if and only if the variable with id `id` is bound.
+     */
+    private long[] bound = new long[1];
+
+    /**
+     * The number of bound variables.
+     */
+    private int size;
+
+    /**
+     * Create an empty ArrayVarTable.
+     */
+    public ArrayVarTable() {
+    }
+
+    /**
+     * Create an ArrayVarTable associating `value1` with variable `name1`.
+     */
+    public static ArrayVarTable of(String name1, double value1) {
+        ArrayVarTable ans = new ArrayVarTable();
+        ans.set(name1, value1);
+        return ans;
+    }
+
+    @Override
+    public double get(String name) throws UnboundVariableException {
+        int id = SymbolTable.lookup(name);
+        if (id < 0 || !contains(id)) {
+            throw new UnboundVariableException(name);
+        }
+        return values[id];
+    }
+
+    /**
+     * Return the value associated with the variable whose id is `id`.  Throws
+     * UnboundVariableException if that variable is not associated with a value in this table.
+     */
+    public double get(int id) throws UnboundVariableException {
+        if (!contains(id)) {
+            throw new UnboundVariableException(SymbolTable.name(id));
+        }
+        return values[id];
+    }
+
+    @Override
+    public void set(String name, double value) {
+        set(SymbolTable.intern(name), value);
+    }
+
+    /**
+     * Associate `value` with the variable whose id is `id`, replacing any previously assigned
+     * value.
+     */
+    public void set(int id, double value) {
+        if (id >= values.length) {
+            values = Arrays.copyOf(values, Math.max(2 * values.length, id + 1));
+        }
+        int word = id >>> 6;
+        if (word >= bound.length) {
+            bound = Arrays.copyOf(bound, Math.max(2 * bound.length, word + 1));
+        }
+        long mask = 1L << id;
+        if ((bound[word] & mask) == 0) {
+            bound[word] |= mask;
+            size++;
+        }
+        values[id] = value;
+    }
+
+    @Override
+    public void unset(String name) {
+        int id = SymbolTable.lookup(name);
+        if (id >= 0) {
+            unset(id);
+        }
+    }
+
+    /**
+     * Remove any value associated with the variable whose id is `id`.
+     */
+    public void unset(int id) {
+        if (contains(id)) {
+            bound[id >>> 6] &= ~(1L << id);
+            size--;
+        }
+    }
+
+    @Override
+    public boolean contains(String name) {
+        int id = SymbolTable.lookup(name);
+        return id >= 0 && contains(id);
+    }
+
+    /**
+     * Return whether the variable whose id is `id` is currently associated with a value in this
+     * table.
+     */
+    public boolean contains(int id) {
+        int word = id >>> 6;
+        return word < bound.length && (bound[word] & (1L << id)) != 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return the names of all variables associated with a value in this table, in order of id.
+     * The returned set is a view backed by this table.
+     */
+    @Override
+    public Set<String> names() {
+        return new AbstractSet<>() {
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof String && ArrayVarTable.this.contains((String) o);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<>() {
+                    /**
+                     * The id of the next bound variable, or -1 if there are no more.
+                     */
+                    private int next = nextBound(0);
+
+                    public boolean hasNext() {
+                        return next >= 0;
+                    }
+
+                    public String next() {
+                        if (next < 0) {
+                            throw new NoSuchElementException();
+                        }
+                        String name = SymbolTable.name(next);
+                        next = nextBound(next + 1);
+                        return name;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Return the smallest id no less than `from` of a bound variable, or -1 if there is none.
+     */
+    private int nextBound(int from) {
+        int word = from >>> 6;
+        if (word >= bound.length) {
+            return -1;
+        }
+        long bits = bound[word] & (-1L << from);
+        while (bits == 0) {
+            if (++word == bound.length) {
+                return -1;
+            }
+            bits = bound[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+}
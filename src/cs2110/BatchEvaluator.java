@@ -0,0 +1,476 @@
+package cs2110;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Evaluates an expression over many rows of input at once, where the values of each variable are
+ * given as a column (a `double[]` with one entry per row).  Rather than walking the tree once per
+ * row, each node is evaluated over a whole block of rows before moving on to its parent, so the
+ * work per node is a tight loop over arrays (see `Operator.operate(double[], double[], double[],
+ * int)` and `UnaryFunction.apply(double[], double[], int)`) that the JIT can unroll and vectorize.
+ * <p>
+ * An input is missing for a row if the variable's column is absent or holds NaN in that row.  Rows
+ * with any missing input evaluate to NaN (and are flagged in the optional error mask) instead of
+ * throwing UnboundVariableException.
+ * <p>
+ * A BatchEvaluator does not modify its expression and holds no mutable state between calls, so
+ * one instance may be used by several threads at once as long as they write to disjoint rows.
+ * `parallel()` returns an evaluator that does this itself, splitting large row ranges into chunks
+ * that are evaluated concurrently on a ForkJoinPool.  Expression trees are immutable, so all
+ * chunks share the same tree; node kinds without a columnar implementation are evaluated through
+ * their own `eval()`, which must then be safe to call from several threads.
+ */
+public class BatchEvaluator {
+
+    /**
+     * Number of rows evaluated per block.  Small enough that a block's temporaries stay in cache,
+     * large enough to amortize the per-node overhead.
+     */
+    static final int BLOCK_SIZE = 1024;
+
+    /**
+     * Default number of rows below which a parallel evaluator does not split a range further.
+     */
+    static final int DEFAULT_THRESHOLD = 64 * BLOCK_SIZE;
+
+    /**
+     * The expression tree being evaluated.
+     */
+    private final Expression tree;
+
+    /**
+     * Names of the variables the expression depends on.
+     */
+    private final String[] dependencies;
+
+    /**
+     * The nodes of `tree` in the order they are evaluated over each block.  Node `plan[k]` is
+     * evaluated into buffer `targets[k]`, where buffer 0 is the output block and buffers 1 to
+     * `scratchCount` are scratch blocks; an Operation reads its operands from buffers `lefts[k]`
+     * and `rights[k]` (one of which is its target), and an Application its argument from its
+     * target.  Each Operation evaluates whichever operand needs more scratch blocks first, so a
+     * chain needs a constant number of them whichever way it leans.
+     */
+    private final Expression[] plan;
+    private final int[] targets;
+    private final int[] lefts;
+    private final int[] rights;
+
+    /**
+     * Number of scratch blocks needed to hold intermediate results while evaluating `tree`.
+     */
+    private final int scratchCount;
+
+    /**
+     * Pool that chunks of rows are evaluated on, or null if rows are evaluated sequentially on the
+     * calling thread.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Maximum number of rows evaluated by one parallel task.  A multiple of `BLOCK_SIZE`.
+     */
+    private final int threshold;
+
+    /**
+     * Create an evaluator for `expr` that evaluates rows sequentially on the calling thread.
+     */
+    public BatchEvaluator(Expression expr) {
+        tree = Simplifier.simplify(Inliner.inline(tree(expr)), Simplifier.Mode.STRICT);
+        dependencies = tree.dependencies().toArray(new String[0]);
+        Planner planner = new Planner(tree);
+        plan = planner.plan;
+        targets = planner.targets;
+        lefts = planner.lefts;
+        rights = planner.rights;
+        scratchCount = planner.scratchCount;
+        pool = null;
+        threshold = 0;
+    }
+
+    /**
+     * Create an evaluator sharing the expression of `base` that evaluates chunks of at most
+     * `threshold` rows on `pool`.
+     */
+    private BatchEvaluator(BatchEvaluator base, ForkJoinPool pool, int threshold) {
+        tree = base.tree;
+        dependencies = base.dependencies;
+        plan = base.plan;
+        targets = base.targets;
+        lefts = base.lefts;
+        rights = base.rights;
+        scratchCount = base.scratchCount;
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Return an evaluator for the same expression that splits ranges of more than
+     * `DEFAULT_THRESHOLD` rows across the common ForkJoinPool.
+     */
+    public BatchEvaluator parallel() {
+        return parallel(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Return an evaluator for the same expression that splits ranges of more than `threshold`
+     * rows into chunks evaluated concurrently on `pool`.  `threshold` is rounded up to a whole
+     * number of blocks so that chunks never share a partial block.  Requires `threshold > 0`.
+     */
+    public BatchEvaluator parallel(ForkJoinPool pool, int threshold) {
+        if (pool == null) {
+            throw new NullPointerException("pool");
+        }
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Threshold must be positive: " + threshold);
+        }
+        int blocks = (threshold - 1) / BLOCK_SIZE + 1;
+        return new BatchEvaluator(this, pool, blocks * BLOCK_SIZE);
+    }
+
+    /**
+     * Return an evaluator for the same expression that evaluates rows sequentially on the calling
+     * thread.
+     */
+    public BatchEvaluator sequential() {
+        return pool == null ? this : new BatchEvaluator(this, null, 0);
+    }
+
+    /**
+     * Return whether this evaluator splits large row ranges across a ForkJoinPool.
+     */
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    /**
+     * Return the expression tree underlying `expr`, which may itself be a tree or one of the
+     * compiled representations of one.
+     */
+    static Expression tree(Expression expr) {
+        if (expr instanceof RpnProgram) {
+            return ((RpnProgram) expr).toExpression();
+        } else if (expr instanceof CompiledExpression) {
+            return tree(((CompiledExpression) expr).source());
+        }
+        return expr;
+    }
+
+    /**
+     * Orders the nodes of a tree for evaluation over blocks and assigns each a buffer, as
+     * described for `plan`.
+     */
+    private static class Planner {
+
+        /**
+         * The nodes of the tree in postorder, the postorder indices of the children of each
+         * Operation and Application (-1 for none), and the number of scratch blocks each node
+         * needs to be evaluated into a buffer of its own.
+         */
+        private Expression[] nodes = new Expression[16];
+        private int[] leftChildren = new int[16];
+        private int[] rightChildren = new int[16];
+        private int[] needs = new int[16];
+        private int count;
+
+        /**
+         * The resulting plan, as described for the fields of BatchEvaluator.
+         */
+        final Expression[] plan;
+        final int[] targets;
+        final int[] lefts;
+        final int[] rights;
+        final int scratchCount;
+
+        Planner(Expression tree) {
+            flatten(tree);
+            plan = new Expression[count];
+            targets = new int[count];
+            lefts = new int[count];
+            rights = new int[count];
+            scratchCount = needs[count - 1];
+            order(tree.depth() + 1);
+        }
+
+        /**
+         * Record the nodes of `tree` in postorder, with their children and needs.
+         */
+        private void flatten(Expression tree) {
+            int n = tree.depth() + 1;
+            Expression[] stack = new Expression[n];
+            int[] visited = new int[n];
+            // Postorder indices of the nodes finished but not yet attached to their parent.
+            int[] done = new int[n];
+            int sp = 0;
+            int dp = 0;
+            stack[sp++] = tree;
+            while (sp > 0) {
+                Expression node = stack[sp - 1];
+                if (node instanceof Operation op) {
+                    int v = visited[sp - 1]++;
+                    if (v < 2) {
+                        stack[sp] = v == 0 ? op.left() : op.right();
+                        visited[sp++] = 0;
+                        continue;
+                    }
+                    sp--;
+                    int right = done[--dp];
+                    int left = done[--dp];
+                    int l = needs[left];
+                    int r = needs[right];
+                    // The operand evaluated second needs one more block, for the first's result.
+                    done[dp++] = add(node, left, right, l == r ? l + 1 : Math.max(l, r));
+                } else if (node instanceof Application app) {
+                    if (visited[sp - 1]++ == 0) {
+                        stack[sp] = app.argument();
+                        visited[sp++] = 0;
+                        continue;
+                    }
+                    sp--;
+                    int argument = done[--dp];
+                    done[dp++] = add(node, argument, -1, needs[argument]);
+                } else {
+                    sp--;
+                    done[dp++] = add(node, -1, -1, 0);
+                }
+            }
+        }
+
+        /**
+         * Append `node` to `nodes` and return its index.
+         */
+        private int add(Expression node, int left, int right, int need) {
+            if (count == nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * count);
+                leftChildren = Arrays.copyOf(leftChildren, 2 * count);
+                rightChildren = Arrays.copyOf(rightChildren, 2 * count);
+                needs = Arrays.copyOf(needs, 2 * count);
+            }
+            nodes[count] = node;
+            leftChildren[count] = left;
+            rightChildren[count] = right;
+            needs[count] = need;
+            return count++;
+        }
+
+        /**
+         * Fill in the plan, visiting each node's children in the order that needs fewest scratch
+         * blocks.  `n` is the depth of the tree plus one.
+         */
+        private void order(int n) {
+            // For each node on the stack: its postorder index, the buffer it is evaluated into,
+            // the first scratch buffer it may use, and how many children have been visited.
+            int[] indices = new int[n];
+            int[] into = new int[n];
+            int[] free = new int[n];
+            int[] visited = new int[n];
+            int sp = 0;
+            int k = 0;
+            indices[sp] = count - 1;
+            free[sp++] = 1;
+            while (sp > 0) {
+                int i = indices[sp - 1];
+                int target = into[sp - 1];
+                int scratch = free[sp - 1];
+                Expression node = nodes[i];
+                int v = visited[sp - 1]++;
+                int left = leftChildren[i];
+                int right = rightChildren[i];
+                if (node instanceof Operation) {
+                    // The first operand is evaluated into the target, and the second into the
+                    // first free scratch buffer, using only the ones after it.
+                    boolean rightFirst = needs[right] > needs[left];
+                    if (v < 2) {
+                        boolean first = v == 0;
+                        indices[sp] = first == rightFirst ? right : left;
+                        into[sp] = first ? target : scratch;
+                        free[sp] = first ? scratch : scratch + 1;
+                        visited[sp++] = 0;
+                        continue;
+                    }
+                    lefts[k] = rightFirst ? scratch : target;
+                    rights[k] = rightFirst ? target : scratch;
+                } else if (node instanceof Application && v == 0) {
+                    indices[sp] = left;
+                    into[sp] = target;
+                    free[sp] = scratch;
+                    visited[sp++] = 0;
+                    continue;
+                }
+                sp--;
+                plan[k] = node;
+                targets[k++] = target;
+            }
+        }
+    }
+
+    /**
+     * Evaluate the expression for every row, storing the result for row `i` in `out[i]`.  The
+     * number of rows is `out.length`; every column in `columns` must have at least that many
+     * entries.  If `errors` is not null, `errors[i]` is set to whether row `i` had a missing input
+     * (and evaluated to NaN for that reason).
+     */
+    public void eval(Map<String, double[]> columns, double[] out, boolean[] errors) {
+        eval(columns, out, errors, 0, out.length);
+    }
+
+    /**
+     * Evaluate the expression for rows `[from, to)`, storing the result for row `i` in `out[i]`
+     * and, if `errors` is not null, whether row `i` had a missing input in `errors[i]`.  Does not
+     * touch other rows of `out` or `errors`.
+     */
+    public void eval(Map<String, double[]> columns, double[] out, boolean[] errors, int from,
+            int to) {
+        double[][] inputs = new double[dependencies.length][];
+        for (int k = 0; k < dependencies.length; k++) {
+            inputs[k] = columns.get(dependencies[k]);
+            if (inputs[k] != null && inputs[k].length < to) {
+                throw new IllegalArgumentException("Column '" + dependencies[k] + "' has "
+                        + inputs[k].length + " rows; expected at least " + to);
+            }
+        }
+        if (pool != null && to - from > threshold) {
+            pool.invoke(new RangeTask(inputs, columns, out, errors, from, to));
+        } else {
+            evalRange(inputs, columns, out, errors, from, to);
+        }
+    }
+
+    /**
+     * Evaluate rows `[from, to)` on the calling thread, where `inputs` are the columns of
+     * `dependencies` (null where absent).
+     */
+    private void evalRange(double[][] inputs, Map<String, double[]> columns, double[] out,
+            boolean[] errors, int from, int to) {
+        double[][] buffers = new double[1 + scratchCount][BLOCK_SIZE];
+        for (int base = from; base < to; base += BLOCK_SIZE) {
+            int n = Math.min(BLOCK_SIZE, to - base);
+            evalBlock(columns, base, n, buffers);
+            System.arraycopy(buffers[0], 0, out, base, n);
+        }
+        markMissing(inputs, out, errors, from, to);
+    }
+
+    /**
+     * Evaluates a range of rows by halving it (on a block boundary) until it is no longer than
+     * `threshold`.  Each leaf allocates its own block buffers, so tasks share only the read-only
+     * tree and columns and write to disjoint rows of the outputs.
+     */
+    @SuppressWarnings("serial") // Tasks are never serialized.
+    private class RangeTask extends RecursiveAction {
+
+        private final double[][] inputs;
+        private final Map<String, double[]> columns;
+        private final double[] out;
+        private final boolean[] errors;
+        private final int from;
+        private final int to;
+
+        RangeTask(double[][] inputs, Map<String, double[]> columns, double[] out,
+                boolean[] errors, int from, int to) {
+            this.inputs = inputs;
+            this.columns = columns;
+            this.out = out;
+            this.errors = errors;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                evalRange(inputs, columns, out, errors, from, to);
+                return;
+            }
+            int blocks = (to - from - 1) / BLOCK_SIZE + 1;
+            int mid = from + (blocks / 2) * BLOCK_SIZE;
+            invokeAll(new RangeTask(inputs, columns, out, errors, from, mid),
+                    new RangeTask(inputs, columns, out, errors, mid, to));
+        }
+    }
+
+    /**
+     * Store the value of the expression for rows `[base, base + n)` in `buffers[0][0..n)`, using
+     * the other buffers for intermediate results.
+     */
+    private void evalBlock(Map<String, double[]> columns, int base, int n, double[][] buffers) {
+        for (int k = 0; k < plan.length; k++) {
+            Expression node = plan[k];
+            double[] block = buffers[targets[k]];
+            if (node instanceof Constant c) {
+                Arrays.fill(block, 0, n, c.value);
+            } else if (node instanceof Variable v) {
+                double[] column = columns.get(v.name);
+                if (column == null) {
+                    Arrays.fill(block, 0, n, Double.NaN);
+                } else {
+                    System.arraycopy(column, base, block, 0, n);
+                }
+            } else if (node instanceof Operation op) {
+                op.op().operate(buffers[lefts[k]], buffers[rights[k]], block, n);
+            } else if (node instanceof Application app) {
+                app.func().apply(block, block, n);
+            } else {
+                evalRows(node, columns, base, n, block);
+            }
+        }
+    }
+
+    /**
+     * Store the value of `expr`, a node of a kind with no columnar implementation, for rows
+     * `[base, base + n)` in `block[0..n)` by evaluating it one row at a time.
+     */
+    private static void evalRows(Expression expr, Map<String, double[]> columns, int base, int n,
+            double[] block) {
+        String[] names = expr.dependencies().toArray(new String[0]);
+        int[] ids = new int[names.length];
+        for (int k = 0; k < names.length; k++) {
+            ids[k] = SymbolTable.intern(names[k]);
+        }
+        ArrayVarTable vars = new ArrayVarTable();
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < names.length; k++) {
+                double[] column = columns.get(names[k]);
+                if (column != null) {
+                    vars.set(ids[k], column[base + i]);
+                }
+            }
+            try {
+                block[i] = expr.eval(vars);
+            } catch (UnboundVariableException e) {
+                block[i] = Double.NaN;
+            }
+        }
+    }
+
+    /**
+     * Set `out[i]` to NaN for each row `i` in `[from, to)` with a missing input, and record in
+     * `errors` (if not null) which rows those were.
+     */
+    private static void markMissing(double[][] inputs, double[] out, boolean[] errors, int from,
+            int to) {
+        if (errors != null) {
+            Arrays.fill(errors, from, to, false);
+        }
+        for (double[] column : inputs) {
+            if (column == null) {
+                Arrays.fill(out, from, to, Double.NaN);
+                if (errors != null) {
+                    Arrays.fill(errors, from, to, true);
+                }
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                if (Double.isNaN(column[i])) {
+                    out[i] = Double.NaN;
+                    if (errors != null) {
+                        errors[i] = true;
+                    }
+                }
+            }
+        }
+    }
+}
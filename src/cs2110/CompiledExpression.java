@@ -0,0 +1,134 @@
+package cs2110;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An expression whose evaluation has been compiled to a specialized method taking the values of
+ * its variables positionally.  Instances are created by `ExpressionCompiler.compile()`; their
+ * `eval(double[])` method is typically generated bytecode with all arithmetic inlined.
+ * <p>
+ * All other Expression methods are answered by the expression that was compiled.
+ */
+public abstract class CompiledExpression implements Expression {
+
+    /**
+     * The expression that was compiled.
+     */
+    Expression source;
+
+    /**
+     * Variable names in the order their values are passed to `eval(double[])`.
+     */
+    List<String> params;
+
+    /**
+     * Indices of the parameters actually referenced by `source`, in order of first appearance (so
+     * the same variable is reported unbound as when evaluating `source`).
+     */
+    int[] lookups;
+
+    /**
+     * Functions that generated code cannot call directly, indexed as referenced by that code.
+     */
+    UnaryFunction[] functions;
+
+    /**
+     * Operators that generated code cannot inline, indexed as referenced by that code.
+     */
+    Operator[] operators;
+
+    /**
+     * Subclasses are only created by ExpressionCompiler, which initializes the fields above
+     * immediately after construction.
+     */
+    CompiledExpression() {
+    }
+
+    /**
+     * Return the result of evaluating this expression with the value of variable `params().get(i)`
+     * given by `args[i]`.
+     */
+    public abstract double eval(double[] args);
+
+    /**
+     * Return the result of evaluating this expression with the value of its only parameter given
+     * by `x`.  Requires `params().size() == 1`.  Generated code overrides this to read `x`
+     * directly, so unlike `eval(double[])` no argument array needs to be allocated.
+     */
+    public double eval(double x) {
+        return eval(new double[]{x});
+    }
+
+    /**
+     * Return the variable names whose values are passed to `eval(double[])`, in order.
+     */
+    public List<String> params() {
+        return params;
+    }
+
+    /**
+     * Return the result of evaluating this expression, substituting any variables with their value
+     * in `vars`.  Throws UnboundVariableException if this expression contains a variable whose
+     * value is not in `vars`.
+     */
+    @Override
+    public double eval(VarTable vars) throws UnboundVariableException {
+        double[] args = new double[params.size()];
+        for (int i : lookups) {
+            args[i] = vars.get(params.get(i));
+        }
+        return eval(args);
+    }
+
+    @Override
+    public int opCount() {
+        return source.opCount();
+    }
+
+    @Override
+    public int depth() {
+        return source.depth();
+    }
+
+    @Override
+    public String infixString() {
+        return source.infixString();
+    }
+
+    @Override
+    public String postfixString() {
+        return source.postfixString();
+    }
+
+    @Override
+    public void writeInfix(Appendable out) throws IOException {
+        source.writeInfix(out);
+    }
+
+    @Override
+    public void writePostfix(Appendable out) throws IOException {
+        source.writePostfix(out);
+    }
+
+    /**
+     * Return an optimized form of the compiled expression (which is not itself compiled).
+     */
+    @Override
+    public Expression optimize(VarTable vars) {
+        return source.optimize(vars);
+    }
+
+    @Override
+    public Set<String> dependencies() {
+        return source.dependencies();
+    }
+
+    /**
+     * Return the expression that was compiled.
+     */
+    public Expression source() {
+        return source;
+    }
+}
@@ -1,5 +1,6 @@
 package cs2110;
 
+import java.io.IOException;
 import java.util.Set;
 
 /**
@@ -36,21 +37,39 @@ public class Constant implements Expression {
     }
 
     /**
-     * Return the decimal representation of this node's value (with sufficient precision to
-     * reproduce its binary value).
+     * A Constant is a leaf, with depth 1.
+     */
+    @Override
+    public int depth() {
+        return 1;
+    }
+
+    /**
+     * Return the decimal representation of this node's value (the shortest that reproduces its
+     * binary value; see `DecimalFormatter`).
      */
     @Override
     public String infixString() {
-        return String.valueOf(value);
+        return DecimalFormatter.toString(value);
     }
 
     /**
-     * Return the decimal representation of this node's value (with sufficient precision to
-     * reproduce its binary value).
+     * Return the decimal representation of this node's value (the shortest that reproduces its
+     * binary value; see `DecimalFormatter`).
      */
     @Override
     public String postfixString() {
-        return String.valueOf(value);
+        return DecimalFormatter.toString(value);
+    }
+
+    @Override
+    public void writeInfix(Appendable out) throws IOException {
+        DecimalFormatter.append(value, out);
+    }
+
+    @Override
+    public void writePostfix(Appendable out) throws IOException {
+        DecimalFormatter.append(value, out);
     }
 
     /**
@@ -68,14 +87,20 @@ public class Constant implements Expression {
         return c.value == value;
     }
 
+    /**
+     * Return a hash code consistent with `equals()`, which treats 0.0 and -0.0 as equal.
+     */
+    @Override
+    public int hashCode() {
+        return value == 0 ? 0 : Double.hashCode(value);
+    }
+
     /**
      * A Constant has no dependencies.
      */
     @Override
     public Set<String> dependencies() {
-        // Return the empty set
-        return Set.of();
-        // Alternative: return new HashSet<>();
+        return DependencySet.EMPTY;
     }
 
     /**
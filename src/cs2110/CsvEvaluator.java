@@ -14,6 +14,17 @@ import org.apache.commons.csv.QuoteMode;
 
 public class CsvEvaluator {
 
+    /**
+     * Functions that may be used in formulas: the most common math functions.
+     */
+    private static final FunctionRegistry DEFS = FunctionRegistry.math();
+
+    /**
+     * Formulas parsed so far, shared by all evaluations so that formulas repeated within or across
+     * spreadsheets are only parsed once.
+     */
+    static final ParseCache FORMULAS = new ParseCache();
+
     /**
      * Copy the spreadsheet data (represented as CSV records) from `parser` to `printer`, replacing
      * any formula cells with their evaluated value.
@@ -30,13 +41,11 @@ public class CsvEvaluator {
      * (as understood by Java's `Double.parseDouble()`), or else it must be a formula itself.
      */
     public static void evaluateCsv(CSVParser parser, CSVPrinter printer) throws IOException {
-        // Support the most common math functions when parsing expressions.
-        Map<String, UnaryFunction> defs = UnaryFunction.mathDefs();
-
         // A mapping of the coordinates of cells we have seen so far to their numerical values (if
         // they are a number or a successfully evaluated formula).
-        VarTable vars = new MapVarTable();
+        VarTable vars = new ArrayVarTable();
         Map<String, Integer> cols = new HashMap<>();
+        DecimalParser numbers = new DecimalParser();
 
         // Iterate through each row in the CSV file
         for (CSVRecord r : parser) {
@@ -50,7 +59,7 @@ public class CsvEvaluator {
                 if (s.length() >= 1 && s.charAt(0) == '=') {
                     try {
                         // Evaluates the formula and stores it into vars with its respective column-row notation.
-                        Expression expr = RpnParser.parse(s.substring(1), defs);
+                        Expression expr = FORMULAS.parse(s.substring(1), DEFS);
                         double constant = expr.eval(vars);
                         vars.set(col + row, constant);
                         // Print the value of the evaluated formula
@@ -61,16 +70,14 @@ public class CsvEvaluator {
                         printer.print("#N/A");
                     }
                 } else {
-                    // Tries to evaluate the cell. If it is a non-number, then parsing will throw a NumberFormatException,
-                    // which will be caught, and the cell itself will be printed. If it is a number, we will parse it into a double,
-                    // which is successfully stored into `vars` with its respective column-row notation.
-                    try {
-                        double value = Double.parseDouble(s);
-                        vars.set(col + row, value);
-                        printer.print(s);
-                    } catch (NumberFormatException e) {
-                        printer.print(s);
+                    // Tries to parse the cell as a number. If it is a number, its value is stored
+                    // into `vars` with its respective column-row notation; either way, the cell
+                    // itself is printed. The parser reports non-numbers by its return value, so text
+                    // cells are never parsed twice or via an exception.
+                    if (numbers.parse(s)) {
+                        vars.set(col + row, numbers.value());
                     }
+                    printer.print(s);
                 }
             }
             // Prints a new line after each row is fully iterated through.
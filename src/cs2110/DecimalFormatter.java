@@ -0,0 +1,344 @@
+package cs2110;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigInteger;
+
+/**
+ * Formats doubles as the shortest decimal strings that parse back to the same value.  Uses the
+ * same layout as `Double.toString()` ("2.0", "0.001", "1.0E-4", "1.2345678E7", "NaN", "-Infinity"),
+ * but unlike `Double.toString()` before Java 19, never produces more digits than needed (for
+ * example, it formats 2.0E23 as "2.0E23", not "1.9999999999999998E23").  When several shortest
+ * strings round-trip, the one closest to the exact value is chosen, breaking ties toward an even
+ * last digit.  Since the layout always shows at least two significant digits ("1.0E-323"), a
+ * two-digit string is preferred over a one-digit one that is further from the value, so
+ * 2 * `Double.MIN_VALUE` is "9.9E-324".  The results are those of `Double.toString()` in Java 19
+ * and later.
+ * <p>
+ * Digits are computed with Giulietti's Schubfach algorithm, which needs three 64x128-bit
+ * multiplications against a table of powers of ten and no loops or big integers, so formatting
+ * is faster than `Double.toString()`.  Digits are laid out in a scratch buffer kept by each
+ * thread, so appending to a StringBuilder or Writer does not allocate (once the thread's first
+ * call has created its buffer), and `toString()` allocates only its result.  All methods are
+ * thread-safe.
+ */
+public class DecimalFormatter {
+
+    /**
+     * Maximum number of characters in a formatted double, e.g. "-2.2250738585072014E-308".
+     */
+    static final int MAX_CHARS = 24;
+
+    /**
+     * Length of the buffers passed to `format()`: `MAX_CHARS` for the result, followed by room
+     * for the at most 17 significant digits while they are being laid out.
+     */
+    static final int BUFFER_SIZE = MAX_CHARS + 17;
+
+    /**
+     * The scratch buffer of each thread, of length `BUFFER_SIZE`.  Its contents are only used
+     * within a single call, so the destinations passed to `append()` must not themselves format
+     * doubles with this class while appending.
+     */
+    private static final ThreadLocal<char[]> BUFFERS =
+            ThreadLocal.withInitial(() -> new char[BUFFER_SIZE]);
+
+    /**
+     * Return the shortest decimal representation of `v` that parses back to `v`.
+     */
+    public static String toString(double v) {
+        char[] buf = BUFFERS.get();
+        return new String(buf, 0, format(v, buf));
+    }
+
+    /**
+     * Append the shortest decimal representation of `v` to `sb`.
+     */
+    public static void append(double v, StringBuilder sb) {
+        char[] buf = BUFFERS.get();
+        sb.append(buf, 0, format(v, buf));
+    }
+
+    /**
+     * Append the shortest decimal representation of `v` to `out`.
+     */
+    public static void append(double v, Appendable out) throws IOException {
+        if (out instanceof StringBuilder sb) {
+            append(v, sb);
+            return;
+        }
+        char[] buf = BUFFERS.get();
+        int len = format(v, buf);
+        if (out instanceof Writer writer) {
+            writer.write(buf, 0, len);
+        } else {
+            for (int i = 0; i < len; i++) {
+                out.append(buf[i]);
+            }
+        }
+    }
+
+    /**
+     * Write the shortest decimal representation of `v` to the start of `buf`, which must have
+     * length at least `BUFFER_SIZE`, and return its length.
+     */
+    static int format(double v, char[] buf) {
+        long bits = Double.doubleToRawLongBits(v);
+        long t = bits & T_MASK;
+        int bq = (int) (bits >>> (P - 1)) & BQ_MASK;
+        if (bq == BQ_MASK) {
+            return copy(t != 0 ? "NaN" : bits > 0 ? "Infinity" : "-Infinity", buf);
+        }
+        int pos = 0;
+        if (bits < 0) {
+            buf[pos++] = '-';
+        }
+        if (bq != 0) {
+            // Normal: v = c * 2^q with c having P significant bits.
+            int mq = -Q_MIN + 1 - bq;
+            long c = C_MIN | t;
+            if (0 < mq && mq < P) {
+                // Integers below 2^53 are formatted exactly.
+                long f = c >> mq;
+                if (f << mq == c) {
+                    return layout(f, 0, buf, pos);
+                }
+            }
+            return toDecimal(-mq, c, 0, buf, pos);
+        } else if (t != 0) {
+            // Subnormal.  The tiniest are scaled up by 10 so the algorithm has enough precision.
+            return t < C_TINY ? toDecimal(Q_MIN, 10 * t, -1, buf, pos)
+                    : toDecimal(Q_MIN, t, 0, buf, pos);
+        }
+        buf[pos++] = '0';
+        buf[pos++] = '.';
+        buf[pos++] = '0';
+        return pos;
+    }
+
+    /**
+     * Format the positive value c * 2^q, scaled by 10^-dk, into `buf` at `pos`, and return the
+     * end position.  This is Schubfach: it computes the decimal interval rounding to the double,
+     * then picks the member with fewest digits.
+     */
+    private static int toDecimal(int q, long c, int dk, char[] buf, int pos) {
+        int out = (int) c & 0x1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        // The interval is asymmetric at powers of two, where the double below is closer.
+        if (c != C_MIN || q == Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 2;
+
+        // 10^-k as a 126-bit fraction, so vb, vbl and vbr approximate 4 * v * 10^-k and the
+        // bounds of its rounding interval.
+        int index = 2 * (k - K_MIN);
+        long g1 = G[index];
+        long g0 = G[index + 1];
+        long vb = rop(g1, g0, cb << h);
+        long vbl = rop(g1, g0, cbl << h);
+        long vbr = rop(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) {
+            // Try one digit fewer: a multiple of 10 in the interval.
+            long sp10 = s / 10 * 10;
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                return layout(upin ? sp10 : tp10, k, buf, pos);
+            }
+        }
+        long t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            return layout(uin ? s : t, k + dk, buf, pos);
+        }
+        // Both (or, impossibly, neither) are in the interval: pick the closer, ties to even.
+        long cmp = vb - ((s + t) << 1);
+        return layout(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk, buf, pos);
+    }
+
+    /**
+     * Return the high 64 bits of g * cp, where g = g1 * 2^63 + g0, rounded to odd.  Requires
+     * `cp` less than 2^59.
+     */
+    private static long rop(long g1, long g0, long cp) {
+        long x1 = Math.multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = Math.multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | ((z & MASK_63) + MASK_63) >>> 63;
+    }
+
+    /**
+     * Write the value f * 10^e (with `f` positive) in the layout of `Double.toString()` into
+     * `buf` at `pos`, and return the end position.
+     */
+    private static int layout(long f, int e, char[] buf, int pos) {
+        while (f % 10 == 0) {
+            f /= 10;
+            e++;
+        }
+        // Write the digits of `f` after the result area of `buf`, then copy them into place.
+        int end = BUFFER_SIZE;
+        int start = end;
+        for (; f != 0; f /= 10) {
+            buf[--start] = (char) ('0' + f % 10);
+        }
+        int n = end - start;
+        // The exponent of the leading digit in scientific notation.
+        int exp = e + n - 1;
+        if (exp >= -3 && exp < 7) {
+            if (exp >= 0) {
+                int intDigits = exp + 1;
+                for (int i = 0; i < intDigits; i++) {
+                    buf[pos++] = i < n ? buf[start + i] : '0';
+                }
+                buf[pos++] = '.';
+                if (n > intDigits) {
+                    for (int i = intDigits; i < n; i++) {
+                        buf[pos++] = buf[start + i];
+                    }
+                } else {
+                    buf[pos++] = '0';
+                }
+            } else {
+                buf[pos++] = '0';
+                buf[pos++] = '.';
+                for (int i = -1; i > exp; i--) {
+                    buf[pos++] = '0';
+                }
+                for (int i = 0; i < n; i++) {
+                    buf[pos++] = buf[start + i];
+                }
+            }
+            return pos;
+        }
+        buf[pos++] = buf[start];
+        buf[pos++] = '.';
+        if (n > 1) {
+            for (int i = 1; i < n; i++) {
+                buf[pos++] = buf[start + i];
+            }
+        } else {
+            buf[pos++] = '0';
+        }
+        buf[pos++] = 'E';
+        if (exp < 0) {
+            buf[pos++] = '-';
+            exp = -exp;
+        }
+        if (exp >= 100) {
+            buf[pos++] = (char) ('0' + exp / 100);
+        }
+        if (exp >= 10) {
+            buf[pos++] = (char) ('0' + exp / 10 % 10);
+        }
+        buf[pos++] = (char) ('0' + exp % 10);
+        return pos;
+    }
+
+    /**
+     * Copy `s` to the start of `buf` and return its length.
+     */
+    private static int copy(String s, char[] buf) {
+        s.getChars(0, s.length(), buf, 0);
+        return s.length();
+    }
+
+    /**
+     * floor(log10(2^e)), for |e| at most 5456721.
+     */
+    private static int flog10pow2(int e) {
+        return (int) (e * 661_971_961_083L >> 41);
+    }
+
+    /**
+     * floor(log10(3/4 * 2^e)), for |e| at most 2647887.
+     */
+    private static int flog10threeQuartersPow2(int e) {
+        return (int) (e * 661_971_961_083L + -274_743_187_321L >> 41);
+    }
+
+    /**
+     * floor(log2(10^e)), for |e| at most 1838394.
+     */
+    private static int flog2pow10(int e) {
+        return (int) (e * 913_124_641_741L >> 38);
+    }
+
+    /**
+     * Precision of a double in bits, including the implicit leading bit.
+     */
+    private static final int P = 53;
+
+    /**
+     * Smallest binary exponent q of a double c * 2^q, with integer c.
+     */
+    private static final int Q_MIN = -1074;
+
+    /**
+     * Smallest significand c of a normal double.
+     */
+    private static final long C_MIN = 1L << (P - 1);
+
+    /**
+     * Subnormal significands below this are too imprecise for the algorithm unless scaled.
+     */
+    private static final long C_TINY = 3;
+
+    /**
+     * Masks for the stored significand and the biased exponent of a double.
+     */
+    private static final long T_MASK = (1L << (P - 1)) - 1;
+    private static final int BQ_MASK = (1 << 11) - 1;
+
+    private static final long MASK_63 = (1L << 63) - 1;
+
+    /**
+     * The range of decimal exponents k covered by `G`.
+     */
+    private static final int K_MIN = -324, K_MAX = 292;
+
+    /**
+     * For each k in `[K_MIN, K_MAX]`, g = floor(10^-k * 2^(125 - floor(log2(10^-k)))) + 1, a
+     * 126-bit value, stored as consecutive pairs of its high and low 63 bits.  Computed once at
+     * class initialization.
+     */
+    private static final long[] G = powersOfTen();
+
+    /**
+     * Compute the contents of `G`.
+     */
+    private static long[] powersOfTen() {
+        long[] table = new long[2 * (K_MAX - K_MIN + 1)];
+        BigInteger ten = BigInteger.TEN;
+        BigInteger mask = BigInteger.ONE.shiftLeft(63).subtract(BigInteger.ONE);
+        for (int k = K_MIN; k <= K_MAX; k++) {
+            int shift = 125 - flog2pow10(-k);
+            BigInteger g;
+            if (k <= 0) {
+                BigInteger power = ten.pow(-k);
+                g = shift >= 0 ? power.shiftLeft(shift) : power.shiftRight(-shift);
+            } else {
+                g = BigInteger.ONE.shiftLeft(shift).divide(ten.pow(k));
+            }
+            g = g.add(BigInteger.ONE);
+            int index = 2 * (k - K_MIN);
+            table[index] = g.shiftRight(63).longValue();
+            table[index + 1] = g.and(mask).longValue();
+        }
+        return table;
+    }
+}
@@ -0,0 +1,395 @@
+package cs2110;
+
+import java.math.BigInteger;
+
+/**
+ * Parses decimal floating-point numbers without throwing exceptions.  Accepts exactly the strings
+ * that `Double.parseDouble()` accepts and produces the same (correctly rounded) values, but
+ * reports malformed input through the return value of `parse()` instead of a
+ * NumberFormatException, so callers can classify and convert text in a single pass.
+ * <p>
+ * Decimal literals with at most 19 significant digits are converted with Clinger's fast path when
+ * the result is exact, and otherwise with the Eisel-Lemire algorithm (as used by the fast_float
+ * library), which needs only one or two 64x128-bit multiplications against a table of powers of
+ * five.  The rare inputs that are not decided by those methods (longer ambiguous mantissas and
+ * hexadecimal literals) are delegated to `Double.parseDouble()`.
+ * <p>
+ * A DecimalParser holds the result of its most recent successful parse, so an instance must not
+ * be shared between threads.
+ */
+public class DecimalParser {
+
+    /**
+     * The value of the most recently parsed number.
+     */
+    private double value;
+
+    /**
+     * Parse `s` as a floating-point number.  Return whether it is accepted by
+     * `Double.parseDouble()`; if so, its value is subsequently available from `value()`.
+     */
+    public boolean parse(CharSequence s) {
+        return parse(s, 0, s.length());
+    }
+
+    /**
+     * Parse the span `[start, end)` of `s` as a floating-point number.  Return whether it is
+     * accepted by `Double.parseDouble()`; if so, its value is subsequently available from
+     * `value()`.
+     */
+    public boolean parse(CharSequence s, int start, int end) {
+        // Like `Double.parseDouble()`, ignore surrounding characters no greater than ' '.
+        while (start < end && s.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && s.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int i = start;
+        boolean negative = false;
+        if (i < end && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+        if (i == end) {
+            return false;
+        }
+        char c = s.charAt(i);
+        if (c == 'N' || c == 'I') {
+            if (matches(s, i, end, "NaN")) {
+                value = Double.NaN;
+                return true;
+            } else if (matches(s, i, end, "Infinity")) {
+                value = negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+                return true;
+            }
+            return false;
+        } else if (c == '0' && i + 1 < end && (s.charAt(i + 1) == 'x' || s.charAt(i + 1) == 'X')) {
+            if (!isHexNumber(s, i + 2, end)) {
+                return false;
+            }
+            value = Double.parseDouble(s.subSequence(start, end).toString());
+            return true;
+        }
+
+        // Accumulate up to 19 significant digits in `w` (treated as unsigned); the value is then
+        // w * 10^exp10, where `truncated` records whether any nonzero digits were dropped.
+        long w = 0;
+        int significant = 0;
+        int digits = 0;
+        long exp10 = 0;
+        boolean truncated = false;
+        while (i < end && isDigit(c = s.charAt(i))) {
+            int d = c - '0';
+            if (significant < MAX_DIGITS) {
+                if (w != 0 || d != 0) {
+                    w = 10 * w + d;
+                    significant++;
+                }
+            } else {
+                exp10++;
+                truncated |= d != 0;
+            }
+            i++;
+            digits++;
+        }
+        if (i < end && s.charAt(i) == '.') {
+            i++;
+            while (i < end && isDigit(c = s.charAt(i))) {
+                int d = c - '0';
+                if (significant < MAX_DIGITS) {
+                    if (w != 0 || d != 0) {
+                        w = 10 * w + d;
+                        significant++;
+                    }
+                    exp10--;
+                } else {
+                    truncated |= d != 0;
+                }
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (i < end && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            i++;
+            boolean negativeExp = false;
+            if (i < end && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+                negativeExp = s.charAt(i) == '-';
+                i++;
+            }
+            int first = i;
+            long exp = 0;
+            while (i < end && isDigit(c = s.charAt(i))) {
+                // Exponents this large already overflow or underflow; stop growing to avoid
+                // wrapping around.
+                if (exp < EXPONENT_LIMIT) {
+                    exp = 10 * exp + (c - '0');
+                }
+                i++;
+            }
+            if (i == first) {
+                return false;
+            }
+            exp10 += negativeExp ? -exp : exp;
+        }
+        if (!isSuffixEnd(s, i, end)) {
+            return false;
+        }
+
+        long bits;
+        if (w == 0) {
+            bits = 0;
+        } else if (!truncated && exp10 >= -22 && exp10 <= 22
+                && Long.compareUnsigned(w, 1L << 53) <= 0) {
+            // Clinger's fast path: both w and 10^|exp10| are exact doubles, so a single
+            // floating-point operation yields the correctly rounded result.
+            double d = exp10 < 0 ? w / EXACT_POWERS_OF_TEN[(int) -exp10]
+                    : w * EXACT_POWERS_OF_TEN[(int) exp10];
+            value = negative ? -d : d;
+            return true;
+        } else {
+            bits = eiselLemire(exp10, w);
+            // The true mantissa lies between w and w + 1; if those round differently, the answer
+            // depends on the dropped digits.
+            if (bits < 0 || (truncated && bits != eiselLemire(exp10, w + 1))) {
+                value = Double.parseDouble(s.subSequence(start, end).toString());
+                return true;
+            }
+        }
+        value = Double.longBitsToDouble(negative ? bits | Long.MIN_VALUE : bits);
+        return true;
+    }
+
+    /**
+     * Return the value of the most recent successful `parse()`.
+     */
+    public double value() {
+        return value;
+    }
+
+    /**
+     * Return whether `s` is accepted by `Double.parseDouble()`.
+     */
+    public static boolean isNumber(CharSequence s, int start, int end) {
+        return new DecimalParser().parse(s, start, end);
+    }
+
+    /**
+     * The most significant decimal digits that fit in an unsigned 64-bit integer.
+     */
+    private static final int MAX_DIGITS = 19;
+
+    /**
+     * A decimal exponent magnitude beyond which every nonzero mantissa overflows or underflows.
+     */
+    private static final long EXPONENT_LIMIT = 1_000_000_000L;
+
+    /**
+     * Powers of ten that are exactly representable as doubles.
+     */
+    private static final double[] EXACT_POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7,
+            1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21,
+            1e22};
+
+    /**
+     * The range of decimal exponents covered by `POWERS_OF_FIVE`.  Any nonzero 19-digit mantissa
+     * scaled by a smaller power underflows to zero, and by a larger power overflows to infinity.
+     */
+    private static final int SMALLEST_POWER = -342, LARGEST_POWER = 308;
+
+    /**
+     * 128-bit approximations of 5^q for q in `[SMALLEST_POWER, LARGEST_POWER]`, normalized so the
+     * most significant bit is set, stored as consecutive (high, low) pairs.  Positive powers are
+     * truncated; negative powers are reciprocals rounded up.  This is the table used by
+     * fast_float, computed once at class initialization.
+     */
+    private static final long[] POWERS_OF_FIVE = powersOfFive();
+
+    /**
+     * Compute the contents of `POWERS_OF_FIVE`.
+     */
+    private static long[] powersOfFive() {
+        long[] table = new long[2 * (LARGEST_POWER - SMALLEST_POWER + 1)];
+        BigInteger five = BigInteger.valueOf(5);
+        for (int q = SMALLEST_POWER; q <= LARGEST_POWER; q++) {
+            BigInteger c;
+            if (q < 0) {
+                BigInteger power5 = five.pow(-q);
+                int z = power5.bitLength();
+                int b = q >= -27 ? z + 127 : 2 * z + 2 * 64;
+                c = BigInteger.ONE.shiftLeft(b).divide(power5).add(BigInteger.ONE);
+            } else {
+                c = five.pow(q).shiftLeft(127);
+            }
+            c = c.shiftRight(Math.max(0, c.bitLength() - 128));
+            int index = 2 * (q - SMALLEST_POWER);
+            table[index] = c.shiftRight(64).longValue();
+            table[index + 1] = c.longValue();
+        }
+        return table;
+    }
+
+    /**
+     * Return the bits of the double nearest w * 10^q, where `w` is a nonzero unsigned integer, or
+     * -1 if the product approximation is too close to a rounding boundary to decide.
+     */
+    private static long eiselLemire(long q, long w) {
+        if (q < SMALLEST_POWER) {
+            return 0;
+        }
+        if (q > LARGEST_POWER) {
+            return INFINITY_BITS;
+        }
+        int lz = Long.numberOfLeadingZeros(w);
+        w <<= lz;
+
+        // Multiply by the truncated power of five, refining with the next 64 bits of the power
+        // only when the result's top 55 bits might be affected by them.
+        int index = 2 * ((int) q - SMALLEST_POWER);
+        long high = unsignedMultiplyHigh(w, POWERS_OF_FIVE[index]);
+        long low = w * POWERS_OF_FIVE[index];
+        if ((high & PRECISION_MASK) == PRECISION_MASK) {
+            long secondHigh = unsignedMultiplyHigh(w, POWERS_OF_FIVE[index + 1]);
+            low += secondHigh;
+            if (Long.compareUnsigned(secondHigh, low) > 0) {
+                high++;
+            }
+            if (low == -1L && (q < -27 || q > 55)) {
+                return -1;
+            }
+        }
+
+        int upperBit = (int) (high >>> 63);
+        int shift = upperBit + 64 - MANTISSA_BITS - 3;
+        long mantissa = high >>> shift;
+        // floor(log2(10^q)) + 63, computed without floating point.
+        int power2 = (int) ((((152170 + 65536) * q) >> 16) + 63) + upperBit - lz + 1023;
+
+        if (power2 <= 0) {
+            // Subnormal result (or underflow to zero).
+            if (-power2 + 1 >= 64) {
+                return 0;
+            }
+            mantissa >>>= -power2 + 1;
+            mantissa += mantissa & 1;
+            mantissa >>>= 1;
+            power2 = mantissa < 1L << MANTISSA_BITS ? 0 : 1;
+            return (long) power2 << MANTISSA_BITS | (mantissa & ~(1L << MANTISSA_BITS));
+        }
+
+        // Break exact ties to even.  Only small exponents can produce a product that lands
+        // exactly halfway between two doubles.
+        if (Long.compareUnsigned(low, 1) <= 0 && q >= -4 && q <= 23 && (mantissa & 3) == 1
+                && mantissa << shift == high) {
+            mantissa &= ~1L;
+        }
+        mantissa += mantissa & 1;
+        mantissa >>>= 1;
+        if (mantissa >= 2L << MANTISSA_BITS) {
+            mantissa = 1L << MANTISSA_BITS;
+            power2++;
+        }
+        mantissa &= ~(1L << MANTISSA_BITS);
+        if (power2 >= 0x7FF) {
+            return INFINITY_BITS;
+        }
+        return (long) power2 << MANTISSA_BITS | mantissa;
+    }
+
+    /**
+     * The number of explicitly stored mantissa bits in a double.
+     */
+    private static final int MANTISSA_BITS = 52;
+
+    /**
+     * Low bits of the high product word that lie below the 55 bits needed for rounding.
+     */
+    private static final long PRECISION_MASK = -1L >>> (MANTISSA_BITS + 3);
+
+    /**
+     * The bits of positive infinity.
+     */
+    private static final long INFINITY_BITS = Double.doubleToRawLongBits(Double.POSITIVE_INFINITY);
+
+    /**
+     * Return the high 64 bits of the unsigned 128-bit product of `a` and `b`.
+     */
+    private static long unsignedMultiplyHigh(long a, long b) {
+        return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+    }
+
+    /**
+     * Return whether `[i, end)` of `s` is the remainder of a hexadecimal floating-point literal
+     * following its "0x" prefix (hex digits with an optional point, a mandatory binary exponent,
+     * and an optional float/double suffix).
+     */
+    private static boolean isHexNumber(CharSequence s, int i, int end) {
+        int digits = 0;
+        while (i < end && isHexDigit(s.charAt(i))) {
+            i++;
+            digits++;
+        }
+        if (i < end && s.charAt(i) == '.') {
+            i++;
+            while (i < end && isHexDigit(s.charAt(i))) {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0 || i == end || (s.charAt(i) != 'p' && s.charAt(i) != 'P')) {
+            return false;
+        }
+        i++;
+        if (i < end && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+            i++;
+        }
+        int first = i;
+        while (i < end && isDigit(s.charAt(i))) {
+            i++;
+        }
+        return i > first && isSuffixEnd(s, i, end);
+    }
+
+    /**
+     * Return whether `i` is at `end`, or at a single trailing float/double suffix.
+     */
+    private static boolean isSuffixEnd(CharSequence s, int i, int end) {
+        if (i == end) {
+            return true;
+        }
+        char c = s.charAt(i);
+        return i + 1 == end && (c == 'f' || c == 'F' || c == 'd' || c == 'D');
+    }
+
+    /**
+     * Return whether `c` is an ASCII decimal digit.
+     */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Return whether `c` is an ASCII hexadecimal digit.
+     */
+    private static boolean isHexDigit(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    /**
+     * Return whether `[i, end)` of `s` consists of exactly the characters of `word`.
+     */
+    private static boolean matches(CharSequence s, int i, int end, String word) {
+        if (end - i != word.length()) {
+            return false;
+        }
+        for (int k = 0; k < word.length(); k++) {
+            if (s.charAt(i + k) != word.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
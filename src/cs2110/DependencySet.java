@@ -0,0 +1,501 @@
+package cs2110;
+
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable set of variable names, stored by their `SymbolTable` ids.  Operation and
+ * Application nodes compute theirs (see `collect()`) on the first call to `dependencies()` and
+ * keep it, so later calls neither traverse the tree nor allocate.  Computing them lazily keeps
+ * building a tree linear: a chain over distinct variables (`v0 v1 + v2 + ...`) would otherwise
+ * store a set of every size up to its length.  A node whose variables all come from one child
+ * shares that child's set where it is known, a union equal to one of its operands is that operand
+ * itself, and every Variable with the same name shares one singleton set.
+ * <p>
+ * Since ids are never reclaimed, a set's ids may be far apart and far from 0.  A set is stored as
+ * a sorted array of its ids unless a bitset spanning only the words from its smallest id to its
+ * largest would be smaller, so its size is proportional to its number of names, not to its
+ * largest id.  Iteration is in order of id, i.e. in the order the names were first used anywhere
+ * in the program.  `contains()` takes constant time for bitsets and time logarithmic in the size
+ * of the set otherwise.
+ */
+public final class DependencySet extends AbstractSet<String> {
+
+    /**
+     * The set with no names.
+     */
+    public static final DependencySet EMPTY = new DependencySet(new int[0]);
+
+    /**
+     * The set containing only the name with each id, or null if none has been created yet.
+     * Only written while holding the class lock.
+     */
+    private static volatile DependencySet[] singletons = new DependencySet[64];
+
+    /**
+     * The ids in this set in increasing order, or null if it is stored as a bitset.
+     */
+    private final int[] ids;
+
+    /**
+     * If `ids` is null, bit `id % 64` of `words[id / 64 - base]` is set if the name with id `id`
+     * is in this set.  The first and last words are nonzero.
+     */
+    private final long[] words;
+
+    /**
+     * The index (id / 64) of the word of the smallest id, if `ids` is null.
+     */
+    private final int base;
+
+    /**
+     * Number of names in this set.
+     */
+    private final int size;
+
+    /**
+     * Create a set of the ids in `ids`, which must be strictly increasing and not be modified
+     * afterwards.
+     */
+    private DependencySet(int[] ids) {
+        this.ids = ids;
+        words = null;
+        base = 0;
+        size = ids.length;
+    }
+
+    /**
+     * Create a set from the bitset `words`, whose first word is number `base` and whose first and
+     * last words are nonzero, containing `size` ids.  `words` must not be modified afterwards.
+     */
+    private DependencySet(long[] words, int base, int size) {
+        ids = null;
+        this.words = words;
+        this.base = base;
+        this.size = size;
+    }
+
+    /**
+     * Return whether a set of `size` ids is smaller as a bitset of `wordCount` words than as an
+     * array of ids.
+     */
+    private static boolean dense(int size, int wordCount) {
+        return 2L * wordCount < size;
+    }
+
+    /**
+     * Return the set containing only the name with `SymbolTable` id `id`.  Every call with the
+     * same id returns the same set.
+     */
+    public static DependencySet of(int id) {
+        DependencySet[] cache = singletons;
+        if (id < cache.length && cache[id] != null) {
+            return cache[id];
+        }
+        synchronized (DependencySet.class) {
+            cache = singletons;
+            if (id >= cache.length) {
+                cache = Arrays.copyOf(cache, Math.max(id + 1, 2 * cache.length));
+            }
+            if (cache[id] == null) {
+                cache[id] = new DependencySet(new int[]{id});
+            }
+            singletons = cache;
+            return cache[id];
+        }
+    }
+
+    /**
+     * Return `names` itself if it is a DependencySet, or otherwise a DependencySet containing the
+     * same names (interning any that are not yet in `SymbolTable`).
+     */
+    public static DependencySet of(Set<String> names) {
+        if (names instanceof DependencySet set) {
+            return set;
+        } else if (names.size() == 1) {
+            return of(SymbolTable.intern(names.iterator().next()));
+        }
+        int[] ans = new int[names.size()];
+        int n = 0;
+        for (String name : names) {
+            ans[n++] = SymbolTable.intern(name);
+        }
+        Arrays.sort(ans, 0, n);
+        return fromSorted(ans, n);
+    }
+
+    /**
+     * Return the set of the first `n` ids in `ids`, which must be strictly increasing, as an
+     * array or a bitset, whichever is smaller.  `ids` may be kept by the set, so must not be
+     * modified afterwards.
+     */
+    private static DependencySet fromSorted(int[] ids, int n) {
+        if (n == 0) {
+            return EMPTY;
+        } else if (n == 1) {
+            return of(ids[0]);
+        }
+        int base = ids[0] >>> 6;
+        int wordCount = (ids[n - 1] >>> 6) - base + 1;
+        if (!dense(n, wordCount)) {
+            return new DependencySet(n == ids.length ? ids : Arrays.copyOf(ids, n));
+        }
+        long[] words = new long[wordCount];
+        for (int i = 0; i < n; i++) {
+            words[(ids[i] >>> 6) - base] |= 1L << ids[i];
+        }
+        return new DependencySet(words, base, n);
+    }
+
+    /**
+     * Return the set of variables that `node`, an Operation or Application, depends on, and record
+     * it in every node whose set is found to be the same.  Where a node's other operands are
+     * constants (as for an Application's argument), its set is that of its remaining operand, so
+     * those nodes share one set.  Otherwise the ids of the variables below are gathered with an
+     * explicit stack, stopping at nodes whose sets are known and visiting shared subexpressions
+     * once, so this works on trees of any depth and takes time linear in the size of the part of
+     * the tree whose sets are not known.  Sets are only recorded in nodes passed through on the
+     * way down, so a chain does not keep a set at every level.
+     */
+    static DependencySet collect(Expression node) {
+        // Follow operands that the whole set must come from.
+        List<Expression> path = new ArrayList<>();
+        DependencySet ans = null;
+        while (ans == null) {
+            if (node instanceof Operation op) {
+                ans = op.knownDependencies();
+                if (ans == null) {
+                    path.add(node);
+                    if (op.right() instanceof Constant) {
+                        node = op.left();
+                    } else if (op.left() instanceof Constant) {
+                        node = op.right();
+                    } else {
+                        ans = gather(op);
+                    }
+                }
+            } else if (node instanceof Application app) {
+                ans = app.knownDependencies();
+                if (ans == null) {
+                    path.add(node);
+                    node = app.argument();
+                }
+            } else {
+                ans = of(node.dependencies());
+            }
+        }
+        for (Expression e : path) {
+            if (e instanceof Operation op) {
+                op.knownDependencies(ans);
+            } else {
+                ((Application) e).knownDependencies(ans);
+            }
+        }
+        return ans;
+    }
+
+    /**
+     * Return the set of variables the operands of `op` depend on, gathering the ids of the
+     * variables below it as described for `collect()`.  Returns the set of an operand if it is
+     * known and equal.
+     */
+    private static DependencySet gather(Operation op) {
+        int[] ids = new int[16];
+        int n = 0;
+        Deque<Expression> stack = new ArrayDeque<>();
+        Set<Expression> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        stack.push(op.right());
+        stack.push(op.left());
+        while (!stack.isEmpty()) {
+            Expression node = stack.pop();
+            DependencySet known;
+            if (node instanceof Operation child) {
+                known = child.knownDependencies();
+                if (!seen.add(node)) {
+                    continue;
+                } else if (known == null) {
+                    stack.push(child.right());
+                    stack.push(child.left());
+                    continue;
+                }
+            } else if (node instanceof Application child) {
+                known = child.knownDependencies();
+                if (!seen.add(node)) {
+                    continue;
+                } else if (known == null) {
+                    stack.push(child.argument());
+                    continue;
+                }
+            } else {
+                known = of(node.dependencies());
+            }
+            if (n + known.size > ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(2 * ids.length, n + known.size));
+            }
+            if (known.ids != null) {
+                System.arraycopy(known.ids, 0, ids, n, known.size);
+                n += known.size;
+            } else {
+                for (int id = known.first(); id >= 0; id = known.nextId(id + 1)) {
+                    ids[n++] = id;
+                }
+            }
+        }
+
+        // Sort and remove duplicates.
+        Arrays.sort(ids, 0, n);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || ids[i] != ids[distinct - 1]) {
+                ids[distinct++] = ids[i];
+            }
+        }
+        for (Expression operand : List.of(op.left(), op.right())) {
+            DependencySet known = operand instanceof Operation o ? o.knownDependencies()
+                    : operand instanceof Application a ? a.knownDependencies() : null;
+            if (known != null && known.size == distinct) {
+                return known;
+            }
+        }
+        return fromSorted(ids, distinct);
+    }
+
+    /**
+     * Return the union of this set and `other`.  Returns one of the two sets themselves if it
+     * contains the other, so no new set is created.
+     */
+    public DependencySet union(DependencySet other) {
+        if (covers(other)) {
+            return this;
+        } else if (other.covers(this)) {
+            return other;
+        }
+        int lo = Math.min(first(), other.first()) >>> 6;
+        int hi = Math.max(last(), other.last()) >>> 6;
+        if (!dense(size + other.size, hi - lo + 1)) {
+            // The union is stored as an array however much the sets overlap, so merge their ids.
+            int[] a = sortedIds();
+            int[] b = other.sortedIds();
+            int[] ans = new int[a.length + b.length];
+            int n = 0;
+            int i = 0;
+            int j = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    ans[n++] = a[i++];
+                } else if (a[i] > b[j]) {
+                    ans[n++] = b[j++];
+                } else {
+                    ans[n++] = a[i++];
+                    j++;
+                }
+            }
+            while (i < a.length) {
+                ans[n++] = a[i++];
+            }
+            while (j < b.length) {
+                ans[n++] = b[j++];
+            }
+            return fromSorted(ans, n);
+        }
+
+        // The span is short enough to combine the sets as bitsets.
+        long[] ans = new long[hi - lo + 1];
+        orInto(ans, lo);
+        other.orInto(ans, lo);
+        int n = 0;
+        for (long word : ans) {
+            n += Long.bitCount(word);
+        }
+        if (dense(n, ans.length)) {
+            return new DependencySet(ans, lo, n);
+        }
+        return new DependencySet(idsOf(ans, lo, n));
+    }
+
+    /**
+     * Return the ids in this set in increasing order.  The result must not be modified.
+     */
+    private int[] sortedIds() {
+        return ids != null ? ids : idsOf(words, base, size);
+    }
+
+    /**
+     * Return the `n` ids in the bitset `words`, whose first word is number `base`, in increasing
+     * order.
+     */
+    private static int[] idsOf(long[] words, int base, int n) {
+        int[] ans = new int[n];
+        int k = 0;
+        for (int w = 0; w < words.length; w++) {
+            for (long word = words[w]; word != 0; word &= word - 1) {
+                ans[k++] = (base + w) * 64 + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return ans;
+    }
+
+    /**
+     * Set the bits of the ids in this set in the bitset `out`, whose first word is number `lo`.
+     * Requires `out` spans every id in this set.
+     */
+    private void orInto(long[] out, int lo) {
+        if (ids != null) {
+            for (int id : ids) {
+                out[(id >>> 6) - lo] |= 1L << id;
+            }
+        } else {
+            for (int i = 0; i < words.length; i++) {
+                out[base - lo + i] |= words[i];
+            }
+        }
+    }
+
+    /**
+     * Return the smallest id in this set.  Requires this set is not empty.
+     */
+    private int first() {
+        return ids != null ? ids[0] : base * 64 + Long.numberOfTrailingZeros(words[0]);
+    }
+
+    /**
+     * Return the largest id in this set.  Requires this set is not empty.
+     */
+    private int last() {
+        if (ids != null) {
+            return ids[size - 1];
+        }
+        return (base + words.length) * 64 - 1 - Long.numberOfLeadingZeros(words[words.length - 1]);
+    }
+
+    /**
+     * Return whether this set contains every name in `other`.
+     */
+    private boolean covers(DependencySet other) {
+        if (other.size > size) {
+            return false;
+        } else if (other.size == 0) {
+            return true;
+        } else if (other.first() < first() || other.last() > last()) {
+            return false;
+        } else if (ids == null && other.ids == null) {
+            for (int i = 0; i < other.words.length; i++) {
+                if ((other.words[i] & ~words[other.base - base + i]) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (other.ids != null) {
+            for (int id : other.ids) {
+                if (!containsId(id)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        for (int id = other.first(); id >= 0; id = other.nextId(id + 1)) {
+            if (!containsId(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return whether this set contains the name with `SymbolTable` id `id`.
+     */
+    public boolean containsId(int id) {
+        if (ids != null) {
+            return Arrays.binarySearch(ids, id) >= 0;
+        }
+        int i = (id >>> 6) - base;
+        return id >= 0 && i >= 0 && i < words.length && (words[i] & (1L << id)) != 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof String name && containsId(SymbolTable.lookup(name));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return an iterator over the names in this set, in order of id.
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<>() {
+            /**
+             * The next id in this set to return, or -1 if there is none.
+             */
+            private int next = size == 0 ? -1 : first();
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public String next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                String name = SymbolTable.name(next);
+                next = nextId(next + 1);
+                return name;
+            }
+        };
+    }
+
+    /**
+     * Return the smallest id at least `from` in this set, or -1 if there is none.
+     */
+    private int nextId(int from) {
+        if (ids != null) {
+            int i = Arrays.binarySearch(ids, from);
+            if (i < 0) {
+                i = -i - 1;
+            }
+            return i < size ? ids[i] : -1;
+        }
+        int i = Math.max((from >>> 6) - base, 0);
+        if (i >= words.length) {
+            return -1;
+        }
+        long word = (from >>> 6) - base < 0 ? words[i] : words[i] & (-1L << from);
+        while (word == 0) {
+            if (++i == words.length) {
+                return -1;
+            }
+            word = words[i];
+        }
+        return (base + i) * 64 + Long.numberOfTrailingZeros(word);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof DependencySet other) {
+            // Every set is stored in the smaller of its two forms, so equal sets have equal forms.
+            return ids != null ? Arrays.equals(ids, other.ids)
+                    : base == other.base && Arrays.equals(words, other.words);
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+}
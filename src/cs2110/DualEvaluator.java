@@ -0,0 +1,278 @@
+package cs2110;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Evaluates expressions by forward-mode automatic differentiation: each subexpression is
+ * evaluated to a dual number, its value together with its partial derivatives with respect to a
+ * list of variables, so that an expression's value and gradient are computed in a single
+ * traversal, exactly up to rounding (unlike finite differences).  The value is always the one
+ * `eval()` would return.
+ * <p>
+ * The partials of an operation are given by the usual rules for the operators defined by
+ * `Operator`, and those of a function application by the chain rule, using
+ * `UnaryFunction.derivative()`.  A zero partial stays zero, even where a derivative is infinite
+ * or undefined (such as `sqrt()` at 0, or `x ^ y` with respect to `y` at negative `x`), since the
+ * subexpression does not depend on that variable.  Like `Traversal`, this uses explicit stacks,
+ * so it works on trees of any depth.
+ */
+final class DualEvaluator {
+
+    /**
+     * Return the value of `expr` given `vars`, followed by its partial derivatives with respect to
+     * each variable in `wrt`, as specified by `Expression.evalWithGradient()`.
+     */
+    static double[] eval(Expression expr, VarTable vars, String[] wrt)
+            throws UnboundVariableException {
+        // Each operand on the value stack occupies `w` consecutive entries: its value, then its
+        // partials.
+        int w = wrt.length + 1;
+        int n = expr.depth() + 1;
+        Expression[] nodes = new Expression[n];
+        int[] visited = new int[n];
+        double[] values = new double[n * w];
+        int sp = 0;
+        int vp = 0;
+        nodes[sp++] = expr;
+        while (sp > 0) {
+            Expression node = nodes[sp - 1];
+            if (node instanceof Operation op) {
+                int v = visited[sp - 1]++;
+                if (v < 2) {
+                    nodes[sp] = v == 0 ? op.left() : op.right();
+                    visited[sp++] = 0;
+                } else {
+                    sp--;
+                    vp--;
+                    operate(op.op(), values, (vp - 1) * w, vp * w, w);
+                }
+            } else if (node instanceof Application app) {
+                if (visited[sp - 1]++ == 0) {
+                    nodes[sp] = app.argument();
+                    visited[sp++] = 0;
+                } else {
+                    sp--;
+                    apply(app.func(), values, (vp - 1) * w, w);
+                }
+            } else {
+                sp--;
+                leaf(node, vars, wrt, values, vp++ * w);
+            }
+        }
+        return Arrays.copyOf(values, w);
+    }
+
+    /**
+     * Return the derivative of `body` with respect to `param`, as a function of the value of
+     * `param`, or null if it cannot be differentiated: if `body` applies a function that is not
+     * `UnaryFunction.isDifferentiable()` to an argument depending on `param`, or contains an
+     * operator not defined by `Operator` or a kind of node that cannot be differentiated.  `body`
+     * is flattened into postfix order once, so each call just runs one loop over the steps with a
+     * small stack of dual numbers, rather than traversing the tree with a variable table.  Throws
+     * IllegalArgumentException if `body` depends on a variable other than `param`.
+     */
+    static DoubleUnaryOperator derivative(Expression body, String param) {
+        Flattener flattener = new Flattener(param);
+        Traversal.walk(body, flattener);
+        if (!flattener.differentiable) {
+            return null;
+        }
+        Expression[] steps = flattener.steps.toArray(new Expression[0]);
+        int maxDepth = flattener.maxDepth;
+        return x -> {
+            // As in `eval()`, with one partial: the value of stack entry `i` is at `2 * i`, and
+            // its derivative at `2 * i + 1`.
+            double[] values = new double[2 * maxDepth];
+            int sp = 0;
+            for (Expression step : steps) {
+                if (step instanceof Constant c) {
+                    values[2 * sp] = c.value;
+                    values[2 * sp++ + 1] = 0;
+                } else if (step instanceof Variable) {
+                    values[2 * sp] = x;
+                    values[2 * sp++ + 1] = 1;
+                } else if (step instanceof Operation op) {
+                    sp--;
+                    operate(op.op(), values, 2 * (sp - 1), 2 * sp, 2);
+                } else {
+                    apply(((Application) step).func(), values, 2 * (sp - 1), 2);
+                }
+            }
+            return values[1];
+        };
+    }
+
+    /**
+     * Lists the Constant, Variable, Operation and Application nodes of a function body in
+     * postfix order, replacing compiled, let and memoized expressions by their source, and
+     * determines whether the body can be differentiated with respect to its parameter.
+     */
+    private static class Flattener implements Traversal.Visitor {
+
+        /**
+         * The name of the body's parameter.
+         */
+        private final String param;
+
+        /**
+         * The nodes of the body in postfix order.
+         */
+        final List<Expression> steps = new ArrayList<>();
+
+        /**
+         * The number of values on the stack after evaluating `steps`, and the most at any point.
+         */
+        private int sp;
+        int maxDepth;
+
+        /**
+         * Whether every node so far can be differentiated.
+         */
+        boolean differentiable = true;
+
+        Flattener(String param) {
+            this.param = param;
+        }
+
+        @Override
+        public void exit(Expression node) {
+            if (node instanceof Operation op) {
+                differentiable &= op.op() == Operator.ADD || op.op() == Operator.SUBTRACT
+                        || op.op() == Operator.MULTIPLY || op.op() == Operator.DIVIDE
+                        || op.op() == Operator.POW;
+                steps.add(node);
+                sp--;
+            } else if (node instanceof Application app) {
+                // Like `apply()`, only an argument depending on `param` needs the derivative.
+                differentiable &= app.func().isDifferentiable()
+                        || !app.argument().dependencies().contains(param);
+                steps.add(node);
+            } else if (node instanceof Constant
+                    || node instanceof Variable v && v.name.equals(param)) {
+                steps.add(node);
+                maxDepth = Math.max(maxDepth, ++sp);
+            } else if (node instanceof Variable v) {
+                throw new IllegalArgumentException("Unknown variable: " + v.name);
+            } else if (node instanceof LetExpression let) {
+                Traversal.walk(let.source(), this);
+            } else if (node instanceof CompiledExpression compiled) {
+                Traversal.walk(compiled.source(), this);
+            } else if (node instanceof MemoizedExpression memo) {
+                Traversal.walk(memo.source(), this);
+            } else if (node instanceof RpnProgram program) {
+                Traversal.walk(program.toExpression(), this);
+            } else {
+                differentiable = false;
+                // Keep the stack balanced for the nodes that follow.
+                maxDepth = Math.max(maxDepth, ++sp);
+            }
+        }
+    }
+
+    /**
+     * Replace the dual number at `a` in `values` with the result of applying `op` to it and the
+     * dual number at `b`, where each has `w` entries.  Throws UnsupportedOperationException if
+     * `op` is not one of the operators defined by `Operator`.
+     */
+    private static void operate(Operator op, double[] values, int a, int b, int w) {
+        double x = values[a];
+        double y = values[b];
+        double value = op.operate(x, y);
+        if (op == Operator.ADD) {
+            for (int i = 1; i < w; i++) {
+                values[a + i] += values[b + i];
+            }
+        } else if (op == Operator.SUBTRACT) {
+            for (int i = 1; i < w; i++) {
+                values[a + i] -= values[b + i];
+            }
+        } else if (op == Operator.MULTIPLY) {
+            for (int i = 1; i < w; i++) {
+                values[a + i] = values[a + i] * y + x * values[b + i];
+            }
+        } else if (op == Operator.DIVIDE) {
+            for (int i = 1; i < w; i++) {
+                values[a + i] = (values[a + i] - value * values[b + i]) / y;
+            }
+        } else if (op == Operator.POW) {
+            // d(x^y) = y x^(y-1) dx + x^y log(x) dy, where each term is computed only if needed.
+            double dx = Double.NaN;
+            double dy = Double.NaN;
+            for (int i = 1; i < w; i++) {
+                double da = values[a + i];
+                double db = values[b + i];
+                double d = 0;
+                if (da != 0) {
+                    if (Double.isNaN(dx)) {
+                        dx = y * Math.pow(x, y - 1);
+                    }
+                    d = dx * da;
+                }
+                if (db != 0) {
+                    if (Double.isNaN(dy)) {
+                        dy = value * Math.log(x);
+                    }
+                    d += dy * db;
+                }
+                values[a + i] = d;
+            }
+        } else {
+            throw new UnsupportedOperationException("Cannot differentiate operator '"
+                    + op.symbol() + "'");
+        }
+        values[a] = value;
+    }
+
+    /**
+     * Replace the dual number at `a` in `values`, which has `w` entries, with the result of
+     * applying `f` to it.  The derivative of `f` is only needed if some partial is nonzero.
+     */
+    private static void apply(UnaryFunction f, double[] values, int a, int w) {
+        double x = values[a];
+        values[a] = f.apply(x);
+        double d = Double.NaN;
+        for (int i = 1; i < w; i++) {
+            if (values[a + i] != 0) {
+                if (Double.isNaN(d)) {
+                    d = f.derivative(x);
+                }
+                values[a + i] *= d;
+            }
+        }
+    }
+
+    /**
+     * Store the dual number of the leaf `node` at `a` in `values`, with one partial for each
+     * variable in `wrt`.  Compiled, let and memoized expressions are differentiated through their
+     * source.  Throws UnsupportedOperationException for kinds of node that cannot be
+     * differentiated.
+     */
+    private static void leaf(Expression node, VarTable vars, String[] wrt, double[] values,
+            int a) throws UnboundVariableException {
+        if (node instanceof Constant || node instanceof Variable) {
+            values[a] = node.eval(vars);
+            String name = node instanceof Variable v ? v.name : null;
+            for (int i = 0; i < wrt.length; i++) {
+                values[a + 1 + i] = wrt[i].equals(name) ? 1 : 0;
+            }
+            return;
+        }
+        Expression source;
+        if (node instanceof LetExpression let) {
+            source = let.source();
+        } else if (node instanceof CompiledExpression compiled) {
+            source = compiled.source();
+        } else if (node instanceof MemoizedExpression memo) {
+            source = memo.source();
+        } else if (node instanceof RpnProgram program) {
+            source = program.toExpression();
+        } else {
+            throw new UnsupportedOperationException("Cannot differentiate expression of "
+                    + node.getClass());
+        }
+        System.arraycopy(eval(source, vars, wrt), 0, values, a, wrt.length + 1);
+    }
+}
@@ -1,5 +1,7 @@
 package cs2110;
 
+import java.io.IOException;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -16,11 +18,30 @@ public interface Expression {
      */
     double eval(VarTable vars) throws UnboundVariableException;
 
+    /**
+     * Return an array whose first element is the result of `eval(vars)`, followed by the partial
+     * derivative of this expression with respect to each variable in `wrt`, in order (zero for
+     * variables it does not depend on).  The value and all partials are computed together in one
+     * traversal; see `DualEvaluator`.  Throws UnboundVariableException as `eval()` does, and
+     * UnsupportedOperationException if a partial requires the derivative of a function that is
+     * not `UnaryFunction.isDifferentiable()` or of an operator not defined by `Operator`.
+     */
+    default double[] evalWithGradient(VarTable vars, String... wrt)
+            throws UnboundVariableException {
+        return DualEvaluator.eval(this, vars, wrt);
+    }
+
     /**
      * Return the number of operations and unary functions contained in this expression.
      */
     int opCount();
 
+    /**
+     * Return the number of nodes on the longest path from the root of this expression to a leaf,
+     * so a Constant or Variable has depth 1.
+     */
+    int depth();
+
     /**
      * Return the infix representation of this expression, enclosing every binary operation in
      * parentheses (regardless of whether they are necessary to preserve the order of operations).
@@ -34,6 +55,23 @@ public interface Expression {
      */
     String postfixString();
 
+    /**
+     * Append the infix representation of this expression (as returned by `infixString()`) to
+     * `out`, such as a StringBuilder, Writer, or CharBuffer, without first building it as a
+     * String.  Throws IOException if `out` does.
+     */
+    default void writeInfix(Appendable out) throws IOException {
+        out.append(infixString());
+    }
+
+    /**
+     * Append the postfix representation of this expression (as returned by `postfixString()`) to
+     * `out`, without first building it as a String.  Throws IOException if `out` does.
+     */
+    default void writePostfix(Appendable out) throws IOException {
+        out.append(postfixString());
+    }
+
     /**
      * Return an expression where all operations and function evaluations that only depend on
      * constants or variables in `vars` are replaced by constants equal to their evaluated value.
@@ -48,4 +86,22 @@ public interface Expression {
      */
     Set<String> dependencies();
 
+    /**
+     * Evaluate this expression once per row of input, where `columns` maps each variable name to
+     * its values for every row, and store the result for row `i` in `out[i]`.  The number of rows
+     * is `out.length`.  Rows with a missing input (an absent column or a NaN entry) evaluate to
+     * NaN rather than throwing.  Each node is evaluated over many rows at a time; see
+     * `BatchEvaluator`.
+     */
+    default void evalBatch(Map<String, double[]> columns, double[] out) {
+        new BatchEvaluator(this).eval(columns, out, null);
+    }
+
+    /**
+     * Like `evalBatch(columns, out)`, but also set `errors[i]` to whether row `i` had a missing
+     * input.
+     */
+    default void evalBatch(Map<String, double[]> columns, double[] out, boolean[] errors) {
+        new BatchEvaluator(this).eval(columns, out, errors);
+    }
 }
@@ -0,0 +1,566 @@
+package cs2110;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles expression trees to JVM bytecode.  Each compiled expression becomes a hidden class
+ * (see `MethodHandles.Lookup.defineHiddenClass()`) whose `eval(double[])` method is straight-line
+ * code: operators are emitted as the corresponding arithmetic instructions (or a direct call to
+ * `Math.pow()`), and the built-in functions of `UnaryFunction` become direct calls to the
+ * corresponding `java.lang.Math` methods.  This lets the JIT compile and inline each formula
+ * independently, instead of dispatching through shared, megamorphic `Operator.operate()` and
+ * `UnaryFunction.apply()` call sites.
+ * <p>
+ * Hidden classes are not registered with any class loader, so compiled expressions (and their
+ * code) are garbage collected once unreachable.
+ */
+public class ExpressionCompiler {
+
+    /**
+     * Return a compiled form of `expr` whose `eval(double[])` method takes the value of variable
+     * `params.get(i)` as its argument `i`.  Throws IllegalArgumentException if `expr` depends on a
+     * variable not in `params`, or contains a kind of node that cannot be compiled.  Functions
+     * defined by expressions are inlined first (see `Inliner`), and the result simplified with
+     * `Simplifier.Mode.STRICT`, which does not change any result.
+     * <p>
+     * Expressions too large for a single JVM method are compiled to an `RpnProgram` instead,
+     * which is interpreted.  If there is exactly one parameter, the generated class also
+     * overrides `eval(double)` to take its value directly, without an array.
+     */
+    public static CompiledExpression compile(Expression expr, List<String> params) {
+        Expression tree = Simplifier.simplify(Inliner.inline(tree(expr)),
+                Simplifier.Mode.STRICT);
+        Map<String, Integer> indices = new HashMap<>();
+        for (int i = 0; i < params.size(); i++) {
+            indices.putIfAbsent(params.get(i), i);
+        }
+        String[] names = RpnProgram.of(tree).names();
+        int[] lookups = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            Integer index = indices.get(names[i]);
+            if (index == null) {
+                throw new IllegalArgumentException("Unknown variable: " + names[i]);
+            }
+            lookups[i] = index;
+        }
+
+        ClassBuilder builder = new ClassBuilder(indices);
+        builder.emit(tree);
+        if (params.size() == 1) {
+            builder.emitUnary(tree);
+        }
+        CompiledExpression ans;
+        // Variable loads are shorter in `eval(D)D`, so its code is never the longer of the two.
+        if (builder.code.size() < MAX_CODE_LENGTH) {
+            ans = instantiate(builder.toClassFile());
+        } else {
+            ans = interpreted(tree, indices);
+        }
+        ans.source = expr;
+        ans.params = List.copyOf(params);
+        ans.lookups = lookups;
+        ans.functions = builder.functions.toArray(new UnaryFunction[0]);
+        ans.operators = builder.operators.toArray(new Operator[0]);
+        return ans;
+    }
+
+    /**
+     * Return an expression tree equivalent to `expr`, which may itself be a tree or one of the
+     * compiled representations of one.
+     */
+    private static Expression tree(Expression expr) {
+        if (expr instanceof RpnProgram) {
+            return ((RpnProgram) expr).toExpression();
+        } else if (expr instanceof CompiledExpression) {
+            return tree(((CompiledExpression) expr).source());
+        }
+        return expr;
+    }
+
+    /**
+     * Define a hidden class from `classFile` in this package and return a new instance of it.
+     */
+    private static CompiledExpression instantiate(byte[] classFile) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup()
+                    .defineHiddenClass(classFile, true);
+            return (CompiledExpression) lookup.findConstructor(lookup.lookupClass(),
+                    MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not define compiled expression", e);
+        }
+    }
+
+    /**
+     * Return a CompiledExpression that evaluates `tree` by interpreting an equivalent RpnProgram,
+     * for expressions too large to compile to a single method.
+     */
+    private static CompiledExpression interpreted(Expression tree, Map<String, Integer> indices) {
+        RpnProgram program = RpnProgram.of(tree);
+        String[] names = program.names();
+        int[] argIndices = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            argIndices[i] = indices.get(names[i]);
+        }
+        return new CompiledExpression() {
+            @Override
+            public double eval(double[] args) {
+                double[] slotValues = new double[argIndices.length];
+                for (int i = 0; i < argIndices.length; i++) {
+                    slotValues[i] = args[argIndices[i]];
+                }
+                return program.execute(slotValues, new double[program.maxDepth()]);
+            }
+        };
+    }
+
+    /**
+     * The maximum length of a JVM method's bytecode.
+     */
+    private static final int MAX_CODE_LENGTH = 65535;
+
+    /**
+     * Internal name of the superclass of generated classes.
+     */
+    private static final String SUPER_NAME = "cs2110/CompiledExpression";
+
+    /* JVM opcodes used by generated code. */
+    private static final int ICONST_0 = 0x03, BIPUSH = 0x10, SIPUSH = 0x11, LDC_W = 0x13,
+            LDC2_W = 0x14, DLOAD_1 = 0x27, ALOAD_0 = 0x2a, ALOAD_1 = 0x2b, DALOAD = 0x31, AALOAD = 0x32,
+            DADD = 0x63, DSUB = 0x67, DMUL = 0x6b, DDIV = 0x6f, DRETURN = 0xaf, RETURN = 0xb1,
+            GETFIELD = 0xb4, INVOKEVIRTUAL = 0xb6, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8,
+            INVOKEINTERFACE = 0xb9;
+
+    /* Constant pool tags. */
+    private static final int UTF8 = 1, INTEGER = 3, DOUBLE = 6, CLASS = 7, FIELDREF = 9,
+            METHODREF = 10, INTERFACE_METHODREF = 11, NAME_AND_TYPE = 12;
+
+    /**
+     * Accumulates the constant pool and method body of one generated class.
+     */
+    private static class ClassBuilder implements Traversal.Visitor {
+
+        /**
+         * Index of each variable's value in the `args` array.
+         */
+        private final Map<String, Integer> indices;
+
+        /**
+         * Serialized constant pool entries, and the index of each entry keyed by its contents.
+         */
+        private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+        private final Map<String, Integer> poolIndices = new HashMap<>();
+        private int poolCount = 1;
+
+        /**
+         * Bytecode of the method being emitted; normally `eval([D)D`.
+         */
+        private ByteArrayOutputStream code = new ByteArrayOutputStream();
+
+        /**
+         * Current and maximum operand stack size (in JVM slots) of the code emitted so far.
+         */
+        private int depth, maxDepth;
+
+        /**
+         * Whether variables are emitted as loads of the `double` argument of `eval(D)D` rather
+         * than as loads from the `args` array.
+         */
+        private boolean unary;
+
+        /**
+         * Complete bytecode and maximum stack size of the `eval(D)D` method, or null if that
+         * method is not generated.
+         */
+        private ByteArrayOutputStream unaryCode;
+        private int unaryMaxDepth;
+
+        /**
+         * Functions and operators referenced through the fields of CompiledExpression.
+         */
+        final List<UnaryFunction> functions = new ArrayList<>();
+        final List<Operator> operators = new ArrayList<>();
+
+        ClassBuilder(Map<String, Integer> indices) {
+            this.indices = indices;
+        }
+
+        /**
+         * Emit code that pushes the value of `expr` onto the operand stack.
+         */
+        void emit(Expression expr) {
+            Traversal.walk(expr, this);
+        }
+
+        /**
+         * Emit the code needed before the operands of `node`: the reference to a custom operator
+         * or function, which the JVM expects below the arguments of the call.
+         */
+        @Override
+        public void enter(Expression node) {
+            if (node instanceof Operation operation) {
+                Operator op = operation.op();
+                if (arithmetic(op) == 0 && op != Operator.POW) {
+                    // this.operators[k].operate(left, right)
+                    emitTableEntry("operators", "[Lcs2110/Operator;", operators.size());
+                    operators.add(op);
+                }
+            } else if (node instanceof Application app && math(app.func()) == null) {
+                // this.functions[k].apply(argument)
+                emitTableEntry("functions", "[Lcs2110/UnaryFunction;", functions.size());
+                functions.add(app.func());
+            }
+        }
+
+        /**
+         * Emit the code that pushes the value of `node`, whose operands (if any) have been
+         * pushed.
+         */
+        @Override
+        public void exit(Expression node) {
+            if (node instanceof Constant c) {
+                emitDouble(c.value);
+            } else if (node instanceof Variable v) {
+                if (unary) {
+                    op(DLOAD_1, 2);
+                } else {
+                    op(ALOAD_1, 1);
+                    emitInt(indices.get(v.name));
+                    op(DALOAD, 0);
+                }
+            } else if (node instanceof Operation operation) {
+                Operator op = operation.op();
+                int opcode = arithmetic(op);
+                if (opcode != 0) {
+                    op(opcode, -2);
+                } else if (op == Operator.POW) {
+                    invokeStatic("java/lang/Math", "pow", "(DD)D", -2);
+                } else {
+                    code.write(INVOKEINTERFACE);
+                    writeShort(code, ref(INTERFACE_METHODREF, "cs2110/Operator", "operate",
+                            "(DD)D"));
+                    code.write(5);
+                    code.write(0);
+                    adjust(-5 + 2);
+                }
+            } else if (node instanceof Application app) {
+                String math = math(app.func());
+                if (math != null) {
+                    invokeStatic("java/lang/Math", math, "(D)D", 0);
+                } else {
+                    code.write(INVOKEVIRTUAL);
+                    writeShort(code, ref(METHODREF, "cs2110/UnaryFunction", "apply", "(D)D"));
+                    adjust(-3 + 2);
+                }
+            } else {
+                throw new IllegalArgumentException(
+                        "Cannot compile expression of " + node.getClass());
+            }
+        }
+
+        /**
+         * Generate the body of an `eval(D)D` method returning the value of `tree`, whose only
+         * variable is the method's argument.  Does not affect the code of `eval([D)D`.
+         */
+        void emitUnary(Expression tree) {
+            ByteArrayOutputStream arrayCode = code;
+            int arrayDepth = depth;
+            int arrayMaxDepth = maxDepth;
+            code = new ByteArrayOutputStream();
+            depth = 0;
+            maxDepth = 0;
+            unary = true;
+            emit(tree);
+            op(DRETURN, -2);
+            unaryCode = code;
+            unaryMaxDepth = maxDepth;
+            code = arrayCode;
+            depth = arrayDepth;
+            maxDepth = arrayMaxDepth;
+            unary = false;
+        }
+
+        /**
+         * Return the JVM instruction computing `op`, or 0 if there is none.
+         */
+        private static int arithmetic(Operator op) {
+            return op == Operator.ADD ? DADD
+                    : op == Operator.SUBTRACT ? DSUB
+                    : op == Operator.MULTIPLY ? DMUL
+                    : op == Operator.DIVIDE ? DDIV
+                    : 0;
+        }
+
+        /**
+         * Return the name of the `java.lang.Math` method computing `f`, or null if there is none.
+         */
+        private static String math(UnaryFunction f) {
+            return f == UnaryFunction.ABS ? "abs"
+                    : f == UnaryFunction.SQRT ? "sqrt"
+                    : f == UnaryFunction.EXP ? "exp"
+                    : f == UnaryFunction.LOG ? "log"
+                    : f == UnaryFunction.SIN ? "sin"
+                    : f == UnaryFunction.COS ? "cos"
+                    : f == UnaryFunction.TAN ? "tan"
+                    : null;
+        }
+
+        /**
+         * Emit code that pushes element `index` of the array in field `name` of `this`.
+         */
+        private void emitTableEntry(String name, String descriptor, int index) {
+            op(ALOAD_0, 1);
+            code.write(GETFIELD);
+            writeShort(code, ref(FIELDREF, SUPER_NAME, name, descriptor));
+            emitInt(index);
+            op(AALOAD, -1);
+        }
+
+        /**
+         * Emit code that pushes the int `value`.
+         */
+        private void emitInt(int value) {
+            if (value <= 5) {
+                op(ICONST_0 + value, 1);
+            } else if (value <= Byte.MAX_VALUE) {
+                op(BIPUSH, 1);
+                code.write(value);
+            } else if (value <= Short.MAX_VALUE) {
+                op(SIPUSH, 1);
+                writeShort(code, value);
+            } else {
+                op(LDC_W, 1);
+                writeShort(code, constant(INTEGER, value));
+            }
+        }
+
+        /**
+         * Emit code that pushes the double `value`.
+         */
+        private void emitDouble(double value) {
+            op(LDC2_W, 2);
+            writeShort(code, constant(DOUBLE, Double.doubleToRawLongBits(value)));
+        }
+
+        /**
+         * Emit a call to the static method `owner.name` with signature `descriptor`, which changes
+         * the stack size by `delta` slots.
+         */
+        private void invokeStatic(String owner, String name, String descriptor, int delta) {
+            op(INVOKESTATIC, delta);
+            writeShort(code, ref(METHODREF, owner, name, descriptor));
+        }
+
+        /**
+         * Emit the single-byte instruction `opcode`, which changes the stack size by `delta`
+         * slots.
+         */
+        private void op(int opcode, int delta) {
+            code.write(opcode);
+            adjust(delta);
+        }
+
+        /**
+         * Record a change of `delta` slots in the operand stack size.
+         */
+        private void adjust(int delta) {
+            depth += delta;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        /**
+         * Return the constant pool index of a UTF8 entry for `s`.
+         */
+        private int utf8(String s) {
+            Integer index = poolIndices.get("U" + s);
+            if (index == null) {
+                index = poolCount++;
+                poolIndices.put("U" + s, index);
+                pool.write(UTF8);
+                writeUtf(s);
+            }
+            return index;
+        }
+
+        /**
+         * Return the constant pool index of a Class entry for internal name `name`.
+         */
+        private int classRef(String name) {
+            String key = "C" + name;
+            Integer index = poolIndices.get(key);
+            if (index == null) {
+                int nameIndex = utf8(name);
+                index = poolCount++;
+                poolIndices.put(key, index);
+                pool.write(CLASS);
+                writeShort(pool, nameIndex);
+            }
+            return index;
+        }
+
+        /**
+         * Return the constant pool index of a field or method reference (of kind `tag`) to member
+         * `name` with descriptor `descriptor` of class `owner`.
+         */
+        private int ref(int tag, String owner, String name, String descriptor) {
+            String key = tag + owner + "." + name + descriptor;
+            Integer index = poolIndices.get(key);
+            if (index == null) {
+                int ownerIndex = classRef(owner);
+                int nameIndex = utf8(name);
+                int descriptorIndex = utf8(descriptor);
+                int natIndex = poolCount++;
+                pool.write(NAME_AND_TYPE);
+                writeShort(pool, nameIndex);
+                writeShort(pool, descriptorIndex);
+                index = poolCount++;
+                poolIndices.put(key, index);
+                pool.write(tag);
+                writeShort(pool, ownerIndex);
+                writeShort(pool, natIndex);
+            }
+            return index;
+        }
+
+        /**
+         * Return the constant pool index of an Integer or Double entry (per `tag`) whose bits are
+         * `bits`.
+         */
+        private int constant(int tag, long bits) {
+            String key = tag + ":" + bits;
+            Integer index = poolIndices.get(key);
+            if (index == null) {
+                index = poolCount;
+                poolIndices.put(key, index);
+                pool.write(tag);
+                if (tag == DOUBLE) {
+                    writeInt(pool, (int) (bits >>> 32));
+                    writeInt(pool, (int) bits);
+                    // Double entries occupy two constant pool slots.
+                    poolCount += 2;
+                } else {
+                    writeInt(pool, (int) bits);
+                    poolCount++;
+                }
+            }
+            return index;
+        }
+
+        /**
+         * Return the bytes of a class file defining a subclass of CompiledExpression whose
+         * `eval([D)D` method runs the code emitted so far (and whose `eval(D)D` method runs the
+         * code emitted by `emitUnary()`, if called).
+         */
+        byte[] toClassFile() {
+            assert depth == 2;
+            op(DRETURN, -2);
+            int thisClass = classRef(SUPER_NAME + "$Generated");
+            int superClass = classRef(SUPER_NAME);
+            int initName = utf8("<init>");
+            int initDescriptor = utf8("()V");
+            int superInit = ref(METHODREF, SUPER_NAME, "<init>", "()V");
+            int evalName = utf8("eval");
+            int evalDescriptor = utf8("([D)D");
+            int unaryDescriptor = unaryCode == null ? 0 : utf8("(D)D");
+            int codeName = utf8("Code");
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                out.writeInt(0xCAFEBABE);
+                out.writeShort(0);
+                out.writeShort(55);
+                out.writeShort(poolCount);
+                pool.writeTo(out);
+                out.writeShort(0x0031); // ACC_PUBLIC | ACC_FINAL | ACC_SUPER
+                out.writeShort(thisClass);
+                out.writeShort(superClass);
+                out.writeShort(0); // interfaces
+                out.writeShort(0); // fields
+                out.writeShort(unaryCode == null ? 2 : 3); // methods
+
+                // <init>()V: super();
+                out.writeShort(0x0001); // ACC_PUBLIC
+                out.writeShort(initName);
+                out.writeShort(initDescriptor);
+                out.writeShort(1);
+                out.writeShort(codeName);
+                out.writeInt(12 + 5);
+                out.writeShort(1); // max_stack
+                out.writeShort(1); // max_locals
+                out.writeInt(5);
+                out.writeByte(ALOAD_0);
+                out.writeByte(INVOKESPECIAL);
+                out.writeShort(superInit);
+                out.writeByte(RETURN);
+                out.writeShort(0); // exception table
+                out.writeShort(0); // attributes
+
+                // public final double eval(double[] args)
+                out.writeShort(0x0011); // ACC_PUBLIC | ACC_FINAL
+                out.writeShort(evalName);
+                out.writeShort(evalDescriptor);
+                out.writeShort(1);
+                out.writeShort(codeName);
+                out.writeInt(12 + code.size());
+                out.writeShort(maxDepth);
+                out.writeShort(2); // max_locals: this, args
+                out.writeInt(code.size());
+                code.writeTo(out);
+                out.writeShort(0); // exception table
+                out.writeShort(0); // attributes
+
+                if (unaryCode != null) {
+                    // public final double eval(double x)
+                    out.writeShort(0x0011); // ACC_PUBLIC | ACC_FINAL
+                    out.writeShort(evalName);
+                    out.writeShort(unaryDescriptor);
+                    out.writeShort(1);
+                    out.writeShort(codeName);
+                    out.writeInt(12 + unaryCode.size());
+                    out.writeShort(unaryMaxDepth);
+                    out.writeShort(3); // max_locals: this, x (two slots)
+                    out.writeInt(unaryCode.size());
+                    unaryCode.writeTo(out);
+                    out.writeShort(0); // exception table
+                    out.writeShort(0); // attributes
+                }
+
+                out.writeShort(0); // class attributes
+            } catch (IOException e) {
+                // Writing to a byte array cannot fail.
+                throw new IllegalStateException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        /**
+         * Write `s` to the constant pool in the JVM's modified UTF-8 encoding.
+         */
+        private void writeUtf(String s) {
+            try {
+                new DataOutputStream(pool).writeUTF(s);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static void writeShort(ByteArrayOutputStream out, int value) {
+            out.write(value >>> 8);
+            out.write(value);
+        }
+
+        private static void writeInt(ByteArrayOutputStream out, int value) {
+            writeShort(out, value >>> 16);
+            writeShort(out, value);
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package cs2110;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Keeps the values of many expressions up to date as the variables of an ObservableVarTable
+ * change, pushing each new value to a listener instead of having callers poll and re-evaluate.
+ * Each subscribed expression is indexed under the variables in its `dependencies()`, so a change
+ * only marks the expressions that depend on the changed variable dirty.
+ * <p>
+ * Recomputation runs on an executor, in micro-batches: the first change after a batch schedules
+ * the next one, and every change made before it runs is coalesced into it, so a burst of updates
+ * to a variable recomputes each dependent expression once, using the latest values.  At most one
+ * batch runs at a time.  A batch evaluates all its expressions against the same values (holding
+ * the table's lock, but not while calling listeners), each through a MemoizedExpression so only
+ * the paths from the changed variables are recomputed, and then calls the listener of each
+ * expression whose value changed.  An expression with an unbound variable has the value NaN, as
+ * in `Expression.evalBatch()`.
+ * <p>
+ * Listeners are called on the executor's threads, one at a time, and never concurrently with each
+ * other.  If one throws, the rest of its batch is still delivered, and the exception is passed
+ * to the failure handler (see `setFailureHandler()`) rather than thrown to the executor, so it
+ * neither ends a worker thread nor stops later batches.
+ */
+public class ExpressionGraph implements AutoCloseable {
+
+    /**
+     * A subscribed expression and its listener.
+     */
+    public final class Subscription {
+
+        /**
+         * The subscribed expression, and its evaluator.  The evaluator is only used by batches.
+         */
+        private final Expression expr;
+        private final MemoizedExpression memo;
+
+        /**
+         * The `SymbolTable` ids of the variables in `expr.dependencies()`.
+         */
+        private final int[] ids;
+
+        private final DoubleConsumer listener;
+
+        /**
+         * Whether this is waiting in `pending`.  Guarded by the graph.
+         */
+        private boolean dirty;
+
+        /**
+         * Whether this has been cancelled.
+         */
+        private volatile boolean cancelled;
+
+        /**
+         * The value last passed to `listener`, or NaN if none has been yet.
+         */
+        private volatile double value = Double.NaN;
+
+        /**
+         * Whether a value has been passed to `listener`.  Only used by batches.
+         */
+        private boolean delivered;
+
+        private Subscription(Expression expr, DoubleConsumer listener) {
+            this.expr = expr;
+            memo = new MemoizedExpression(expr);
+            ids = expr.dependencies().stream().mapToInt(SymbolTable::intern).toArray();
+            this.listener = listener;
+        }
+
+        /**
+         * Return the subscribed expression.
+         */
+        public Expression expression() {
+            return expr;
+        }
+
+        /**
+         * Return the value last pushed to the listener, or NaN if none has been yet.
+         */
+        public double value() {
+            return value;
+        }
+
+        /**
+         * Stop recomputing the expression and notifying the listener.  A batch already running
+         * may still notify it once.  Cancelling a subscription again has no effect.
+         */
+        public void cancel() {
+            synchronized (ExpressionGraph.this) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                for (int id : ids) {
+                    List<Subscription> subs = dependents.get(id);
+                    if (subs == null) {
+                        continue;
+                    }
+                    subs.remove(this);
+                    if (subs.isEmpty()) {
+                        dependents.remove(id);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Return the value of the expression given `values`, or NaN if it has an unbound
+         * variable or this is cancelled.
+         */
+        private double evaluate(ArrayVarTable values) {
+            if (cancelled) {
+                return Double.NaN;
+            }
+            try {
+                return memo.eval(values);
+            } catch (UnboundVariableException e) {
+                return Double.NaN;
+            }
+        }
+
+        /**
+         * Pass `result` to the listener if it differs from the value last passed.
+         */
+        private void deliver(double result) {
+            if (cancelled || delivered && Double.doubleToRawLongBits(result)
+                    == Double.doubleToRawLongBits(value)) {
+                return;
+            }
+            value = result;
+            delivered = true;
+            listener.accept(result);
+        }
+    }
+
+    /**
+     * The table whose variables the expressions depend on.
+     */
+    private final ObservableVarTable vars;
+
+    /**
+     * The executor that batches run on.
+     */
+    private final Executor executor;
+
+    /**
+     * The listener registered with `vars`.
+     */
+    private final ObservableVarTable.Listener onChange = this::changed;
+
+    /**
+     * The subscriptions depending on the variable with each `SymbolTable` id.  Guarded by `this`.
+     */
+    private final Map<Integer, List<Subscription>> dependents = new HashMap<>();
+
+    /**
+     * Subscriptions to recompute in the next batch.  Guarded by `this`.
+     */
+    private List<Subscription> pending = new ArrayList<>();
+
+    /**
+     * Whether a batch is scheduled or running.  Guarded by `this`.
+     */
+    private boolean scheduled;
+
+    /**
+     * The handler for exceptions thrown by listeners, or null to use the default.
+     */
+    private volatile Thread.UncaughtExceptionHandler failureHandler;
+
+    /**
+     * Create a graph of expressions over `vars` that recomputes them on the common ForkJoinPool.
+     */
+    public ExpressionGraph(ObservableVarTable vars) {
+        this(vars, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a graph of expressions over `vars` that recomputes them on `executor`.
+     */
+    public ExpressionGraph(ObservableVarTable vars, Executor executor) {
+        this.vars = vars;
+        this.executor = executor;
+        vars.addListener(onChange);
+    }
+
+    /**
+     * Start keeping the value of `expr` up to date, passing it to `listener` whenever it changes,
+     * beginning with its current value.  `expr` must not be evaluated elsewhere while subscribed
+     * unless its `eval()` may be called concurrently.
+     */
+    public Subscription subscribe(Expression expr, DoubleConsumer listener) {
+        Subscription sub = new Subscription(expr, listener);
+        boolean schedule;
+        synchronized (this) {
+            for (int id : sub.ids) {
+                dependents.computeIfAbsent(id, k -> new ArrayList<>()).add(sub);
+            }
+            schedule = markDirty(sub);
+        }
+        if (schedule) {
+            schedule();
+        }
+        return sub;
+    }
+
+    /**
+     * Pass exceptions thrown by listeners to `handler`, along with the executor thread that ran
+     * the listener.  If `handler` is null, they are passed to
+     * `Thread.getDefaultUncaughtExceptionHandler()` at the time, or if there is none, to the
+     * executor thread's own uncaught exception handler, as if they had ended the thread.
+     */
+    public void setFailureHandler(Thread.UncaughtExceptionHandler handler) {
+        failureHandler = handler;
+    }
+
+    /**
+     * Stop observing the table.  Subscribed expressions are no longer recomputed.
+     */
+    @Override
+    public void close() {
+        vars.removeListener(onChange);
+    }
+
+    /**
+     * Mark the subscriptions depending on the variable with id `id` dirty.
+     */
+    private void changed(int id) {
+        boolean schedule = false;
+        synchronized (this) {
+            List<Subscription> subs = dependents.get(id);
+            if (subs == null) {
+                return;
+            }
+            for (Subscription sub : subs) {
+                schedule |= markDirty(sub);
+            }
+        }
+        if (schedule) {
+            schedule();
+        }
+    }
+
+    /**
+     * Add `sub` to the next batch if it is not already in it, and return whether the batch needs
+     * to be scheduled by the caller.  Requires the caller holds this graph's lock.
+     */
+    private boolean markDirty(Subscription sub) {
+        if (!sub.dirty) {
+            sub.dirty = true;
+            pending.add(sub);
+        }
+        if (scheduled) {
+            return false;
+        }
+        scheduled = true;
+        return true;
+    }
+
+    /**
+     * Submit a batch to the executor.
+     */
+    private void schedule() {
+        try {
+            executor.execute(this::runBatch);
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                scheduled = false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Recompute the pending subscriptions and notify their listeners, then schedule another batch
+     * if more changes arrived meanwhile.
+     */
+    private void runBatch() {
+        List<Subscription> batch;
+        synchronized (this) {
+            batch = pending;
+            pending = new ArrayList<>();
+            for (Subscription sub : batch) {
+                sub.dirty = false;
+            }
+        }
+        try {
+            double[] results = new double[batch.size()];
+            synchronized (vars) {
+                ArrayVarTable values = vars.values();
+                for (int i = 0; i < results.length; i++) {
+                    results[i] = batch.get(i).evaluate(values);
+                }
+            }
+            for (int i = 0; i < results.length; i++) {
+                try {
+                    batch.get(i).deliver(results[i]);
+                } catch (RuntimeException e) {
+                    ObservableVarTable.report(failureHandler, e);
+                }
+            }
+        } finally {
+            boolean again;
+            synchronized (this) {
+                again = !pending.isEmpty();
+                scheduled = again;
+            }
+            if (again) {
+                schedule();
+            }
+        }
+    }
+}
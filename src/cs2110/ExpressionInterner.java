@@ -0,0 +1,182 @@
+package cs2110;
+
+/**
+ * A hash-consing factory for expression nodes: it returns one canonical shared instance for each
+ * distinct subtree, so that formulas with common subexpressions (such as many cells computing
+ * `B5 B6 *`) form a single DAG instead of separately allocated copies.  Sharing is safe because
+ * expression trees are immutable.
+ * <p>
+ * Nodes are only canonical with respect to the interner that created them.  Because the children
+ * of a canonical node are themselves canonical, nodes are compared shallowly: by operator or
+ * function identity, children by identity, variables by name, and constants by their exact bits
+ * (so 0.0 and -0.0 stay distinct, unlike under `Constant.equals()`).  Lookups use the nodes'
+ * cached structural hash codes, so interning a node takes constant time.
+ * <p>
+ * Interned nodes are held strongly until the interner is discarded.  An interner is not
+ * thread-safe.
+ */
+public class ExpressionInterner {
+
+    /**
+     * Canonical nodes, in an open-addressed hash table whose length is a power of two, kept at
+     * least twice the number of nodes.
+     */
+    private Expression[] table = new Expression[64];
+
+    /**
+     * Number of canonical nodes.
+     */
+    private int size;
+
+    /**
+     * Number of requests answered with an existing node.
+     */
+    private long reused;
+
+    /**
+     * Return the canonical Constant with value `value`.
+     */
+    public Expression constant(double value) {
+        return canonical(new Constant(value));
+    }
+
+    /**
+     * Return the canonical Variable named `name`.
+     */
+    public Expression variable(String name) {
+        return canonical(new Variable(name));
+    }
+
+    /**
+     * Return the canonical Operation applying `op` to `left` and `right`, which must be canonical
+     * nodes of this interner.
+     */
+    public Expression operation(Operator op, Expression left, Expression right) {
+        return canonical(new Operation(op, left, right));
+    }
+
+    /**
+     * Return the canonical Application of `func` to `argument`, which must be a canonical node of
+     * this interner.
+     */
+    public Expression application(UnaryFunction func, Expression argument) {
+        return canonical(new Application(func, argument));
+    }
+
+    /**
+     * Return the canonical node structurally equal to `expr`, interning each of its subtrees.
+     * Nodes of kinds other than Constant, Variable, Operation and Application are only shared if
+     * the very same node is interned again.
+     */
+    public Expression intern(Expression expr) {
+        return Traversal.rebuild(expr, new Traversal.Rebuilder() {
+            @Override
+            public Expression operation(Operation node, Expression left, Expression right) {
+                return canonical(node, new Operation(node.op(), left, right));
+            }
+
+            @Override
+            public Expression application(Application node, Expression argument) {
+                return canonical(node, new Application(node.func(), argument));
+            }
+
+            @Override
+            public Expression leaf(Expression node) {
+                return canonical(node);
+            }
+        });
+    }
+
+    /**
+     * Return the canonical node equal to `candidate`, whose children are canonical, or `original`
+     * itself if `candidate` is new and has the same children as `original` (so that already
+     * canonical trees are not copied).
+     */
+    private Expression canonical(Expression original, Expression candidate) {
+        if (sameNode(original, candidate)) {
+            return canonical(original);
+        }
+        return canonical(candidate);
+    }
+
+    /**
+     * Return the canonical node equal to `candidate`, adding `candidate` if there is none yet.
+     * Requires that the children of `candidate` are canonical.
+     */
+    private Expression canonical(Expression candidate) {
+        int mask = table.length - 1;
+        int i = spread(candidate.hashCode()) & mask;
+        for (; table[i] != null; i = (i + 1) & mask) {
+            if (sameNode(table[i], candidate)) {
+                reused++;
+                return table[i];
+            }
+        }
+        table[i] = candidate;
+        size++;
+        if (2 * size > table.length) {
+            resize();
+        }
+        return candidate;
+    }
+
+    /**
+     * Return whether `a` and `b` are the same kind of node with the same operator, function,
+     * variable name or constant bits and identical children.
+     */
+    private static boolean sameNode(Expression a, Expression b) {
+        if (a == b) {
+            return true;
+        } else if (a instanceof Constant ca && b instanceof Constant cb) {
+            return Double.doubleToLongBits(ca.value) == Double.doubleToLongBits(cb.value);
+        } else if (a instanceof Variable va && b instanceof Variable vb) {
+            return va.name.equals(vb.name);
+        } else if (a instanceof Operation oa && b instanceof Operation ob) {
+            return oa.op() == ob.op() && oa.left() == ob.left() && oa.right() == ob.right();
+        } else if (a instanceof Application aa && b instanceof Application ab) {
+            return aa.func() == ab.func() && aa.argument() == ab.argument();
+        }
+        return false;
+    }
+
+    /**
+     * Double the size of the table.
+     */
+    private void resize() {
+        Expression[] old = table;
+        table = new Expression[2 * old.length];
+        int mask = table.length - 1;
+        for (Expression node : old) {
+            if (node != null) {
+                int i = spread(node.hashCode()) & mask;
+                while (table[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = node;
+            }
+        }
+    }
+
+    /**
+     * Return `hash` with its high bits mixed into its low bits, which select the table slot.
+     */
+    private static int spread(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Return the number of distinct nodes interned so far.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return the number of requests for a node that were answered with an existing node, i.e.
+     * the number of node allocations saved by sharing.
+     */
+    public long reused() {
+        return reused;
+    }
+}
@@ -0,0 +1,193 @@
+package cs2110;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A table of named functions that can be used in expressions.  It is a `Map` from function names
+ * (without the "()" suffix) to functions, so it can be passed anywhere function definitions are
+ * expected.  It iterates in the same order as a HashMap to which the same names were added in the
+ * same sequence, so listings are deterministic and match those of a plain HashMap.
+ * <p>
+ * In addition, `lookup()` finds a function by a range of characters in a larger string, hashing
+ * and comparing those characters in place, so a parser can resolve function tokens without
+ * creating a substring for each one.
+ * <p>
+ * The registry is not thread-safe for modification, but may be read by several threads at once
+ * when not being modified.
+ */
+public class FunctionRegistry extends AbstractMap<String, UnaryFunction> {
+
+    /**
+     * The registered functions, keyed by name.
+     */
+    private final HashMap<String, UnaryFunction> entries = new HashMap<>();
+
+    /**
+     * Open-addressed hash index over `entries`: `names[i]` is null or a registered name, and
+     * `functions[i]` its function.  The length is a power of two, kept at least twice the number
+     * of entries.
+     */
+    private String[] names = new String[16];
+    private UnaryFunction[] functions = new UnaryFunction[16];
+
+    /**
+     * Create an empty registry.
+     */
+    public FunctionRegistry() {
+    }
+
+    /**
+     * Create a registry containing the functions of `defs`.
+     */
+    public FunctionRegistry(Map<String, UnaryFunction> defs) {
+        putAll(defs);
+    }
+
+    /**
+     * Return a new registry containing the core math functions of `UnaryFunction`.  They are
+     * always added in the same order (abs, sqrt, exp, log, sin, cos, tan), unlike when copying
+     * `UnaryFunction.mathDefs()`, whose iteration order varies between runs.
+     */
+    public static FunctionRegistry math() {
+        FunctionRegistry ans = new FunctionRegistry();
+        for (UnaryFunction f : new UnaryFunction[]{UnaryFunction.ABS, UnaryFunction.SQRT,
+                UnaryFunction.EXP, UnaryFunction.LOG, UnaryFunction.SIN, UnaryFunction.COS,
+                UnaryFunction.TAN}) {
+            ans.put(f.name(), f);
+        }
+        return ans;
+    }
+
+    /**
+     * Return `defs` itself if it is a FunctionRegistry, or otherwise a new registry containing its
+     * functions.
+     */
+    public static FunctionRegistry of(Map<String, UnaryFunction> defs) {
+        return defs instanceof FunctionRegistry registry ? registry : new FunctionRegistry(defs);
+    }
+
+    /**
+     * Return the function whose name is the characters of `s` in `[start, end)`, or null if no
+     * such function is registered.  Does not allocate.
+     */
+    public UnaryFunction lookup(CharSequence s, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + s.charAt(i);
+        }
+        int mask = names.length - 1;
+        for (int i = spread(hash) & mask; names[i] != null; i = (i + 1) & mask) {
+            if (matches(names[i], s, start, end)) {
+                return functions[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return whether `name` consists of exactly the characters of `s` in `[start, end)`.
+     */
+    private static boolean matches(String name, CharSequence s, int start, int end) {
+        if (name.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (name.charAt(i - start) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return `hash` (a `String.hashCode()`) with its high bits mixed into its low bits, which
+     * select the index slot.
+     */
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public UnaryFunction get(Object key) {
+        return key instanceof String name ? lookup(name, 0, name.length()) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Register `f` under `name`, replacing any function previously registered under that name.
+     * Returns the replaced function, or null.
+     */
+    @Override
+    public UnaryFunction put(String name, UnaryFunction f) {
+        if (name == null || f == null) {
+            throw new NullPointerException();
+        }
+        UnaryFunction old = entries.put(name, f);
+        if (2 * entries.size() > names.length) {
+            rebuildIndex(2 * names.length);
+        } else {
+            index(name, f);
+        }
+        return old;
+    }
+
+    @Override
+    public UnaryFunction remove(Object key) {
+        UnaryFunction old = entries.remove(key);
+        if (old != null) {
+            rebuildIndex(names.length);
+        }
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+        rebuildIndex(names.length);
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Return a read-only view of the registered functions.
+     */
+    @Override
+    public Set<Entry<String, UnaryFunction>> entrySet() {
+        return Collections.unmodifiableMap(entries).entrySet();
+    }
+
+    /**
+     * Add or replace the index slot for `name`.
+     */
+    private void index(String name, UnaryFunction f) {
+        int mask = names.length - 1;
+        int i = spread(name.hashCode()) & mask;
+        while (names[i] != null && !names[i].equals(name)) {
+            i = (i + 1) & mask;
+        }
+        names[i] = name;
+        functions[i] = f;
+    }
+
+    /**
+     * Replace the index with one of `capacity` slots (a power of two) holding every entry.
+     */
+    private void rebuildIndex(int capacity) {
+        names = new String[capacity];
+        functions = new UnaryFunction[capacity];
+        for (Entry<String, UnaryFunction> entry : entries.entrySet()) {
+            index(entry.getKey(), entry.getValue());
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package cs2110;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Computes the gradient of an expression with respect to all of its variables by reverse-mode
+ * automatic differentiation.  `record()` evaluates the expression once, recording every node's
+ * operands and value on a tape of flat arrays; `gradient()` then walks the tape backwards once,
+ * accumulating the derivative of the result with respect to each entry (its adjoint).  This takes
+ * time proportional to the size of the expression however many variables it has, whereas
+ * `Expression.evalWithGradient()` carries one partial per variable through every node, so it is
+ * the better choice for expressions of hundreds of inputs, such as spreadsheet cells.
+ * <p>
+ * Variables are numbered in order of first appearance, as in `RpnProgram.names()`, and
+ * `gradient()` gives each the same partial derivative as `evalWithGradient()` up to rounding.
+ * Only entries that depend on some variable are differentiated, so constant subexpressions never
+ * need the derivative of a function (or yield NaN where it is undefined).  Compiled, let and
+ * memoized expressions are recorded through their source.
+ * <p>
+ * A tape keeps its arrays between recordings, growing them only when an expression is larger than
+ * any before, so evaluating the same expression repeatedly does not allocate (except when
+ * recording an RpnProgram, which is first converted to a tree).  A tape must not be used by
+ * several threads at once.
+ */
+public class GradientTape {
+
+    /**
+     * The kind of each entry on the tape, an `RpnProgram` opcode.
+     */
+    private int[] kinds = new int[16];
+
+    /**
+     * For each entry, the tape index of its first (or only) operand, or the variable number for a
+     * LOAD entry.
+     */
+    private int[] lefts = new int[16];
+
+    /**
+     * For each binary operation entry, the tape index of its second operand.
+     */
+    private int[] rights = new int[16];
+
+    /**
+     * The value computed by each entry.
+     */
+    private double[] values = new double[16];
+
+    /**
+     * Whether each entry depends on some variable.
+     */
+    private boolean[] active = new boolean[16];
+
+    /**
+     * The function of each CALL entry or operator of each OPERATE entry.
+     */
+    private Object[] refs = new Object[16];
+
+    /**
+     * Storage for the adjoint of each entry during `gradient()`.
+     */
+    private double[] adjoints = new double[16];
+
+    /**
+     * Number of entries recorded.  The last is the root of the expression.
+     */
+    private int size;
+
+    /**
+     * `SymbolTable` id of each variable, indexed by its number.
+     */
+    private int[] variableIds = new int[16];
+
+    /**
+     * Number of variables recorded.
+     */
+    private int variableCount;
+
+    /**
+     * The number of the variable with each `SymbolTable` id, or -1 if it has not been recorded.
+     */
+    private int[] numbers = new int[0];
+
+    /**
+     * Traversal stacks for `record()`: nodes being visited, how many of their children have been
+     * visited, and the tape indices of operands computed so far.
+     */
+    private Expression[] nodes = new Expression[16];
+    private int[] visited = new int[16];
+    private int[] operands = new int[16];
+
+    /**
+     * Whether the entries recorded are those of a complete expression.
+     */
+    private boolean recorded;
+
+    /**
+     * Evaluate `expr` given `vars`, recording it on this tape (replacing anything previously
+     * recorded), and return its value.  Throws UnboundVariableException as `expr.eval(vars)`
+     * would, leaving nothing recorded, and UnsupportedOperationException if `expr` contains a kind
+     * of node that cannot be differentiated.
+     */
+    public double record(Expression expr, VarTable vars) throws UnboundVariableException {
+        clear();
+        try {
+            double value = trace(expr, vars);
+            recorded = true;
+            return value;
+        } catch (UnboundVariableException | RuntimeException e) {
+            clear();
+            throw e;
+        }
+    }
+
+    /**
+     * Evaluate `expr` given `vars`, appending its entries to the tape, and return its value.
+     */
+    private double trace(Expression expr, VarTable vars) throws UnboundVariableException {
+        int n = expr.depth() + 1;
+        if (nodes.length < n) {
+            nodes = new Expression[n];
+            visited = new int[n];
+            operands = new int[n];
+        }
+        int sp = 0;
+        int vp = 0;
+        nodes[sp] = expr;
+        visited[sp++] = 0;
+        while (sp > 0) {
+            Expression node = nodes[sp - 1];
+            if (node instanceof Operation op) {
+                int v = visited[sp - 1]++;
+                if (v < 2) {
+                    nodes[sp] = v == 0 ? op.left() : op.right();
+                    visited[sp++] = 0;
+                } else {
+                    sp--;
+                    vp--;
+                    operands[vp - 1] = operate(op.op(), operands[vp - 1], operands[vp]);
+                }
+            } else if (node instanceof Application app) {
+                if (visited[sp - 1]++ == 0) {
+                    nodes[sp] = app.argument();
+                    visited[sp++] = 0;
+                } else {
+                    sp--;
+                    int arg = operands[vp - 1];
+                    operands[vp - 1] = add(RpnProgram.CALL, arg, 0,
+                            app.func().apply(values[arg]), app.func(), active[arg]);
+                }
+            } else if (node instanceof Constant c) {
+                sp--;
+                operands[vp++] = add(RpnProgram.CONST, 0, 0, c.value, null, false);
+            } else if (node instanceof Variable v) {
+                sp--;
+                operands[vp++] = add(RpnProgram.LOAD, number(v.id), 0, v.eval(vars), null,
+                        true);
+            } else {
+                // Record the source in place of the node; it has the same depth.
+                nodes[sp - 1] = source(node);
+            }
+        }
+        Arrays.fill(nodes, 0, n, null);
+        return values[size - 1];
+    }
+
+    /**
+     * Return the expression that the compiled, let or memoized expression `node` was created
+     * from.  Throws UnsupportedOperationException for other kinds of node.
+     */
+    private static Expression source(Expression node) {
+        if (node instanceof LetExpression let) {
+            return let.source();
+        } else if (node instanceof CompiledExpression compiled) {
+            return compiled.source();
+        } else if (node instanceof MemoizedExpression memo) {
+            return memo.source();
+        } else if (node instanceof RpnProgram program) {
+            return program.toExpression();
+        }
+        throw new UnsupportedOperationException("Cannot differentiate expression of "
+                + node.getClass());
+    }
+
+    /**
+     * Discard all recorded entries and variables.
+     */
+    private void clear() {
+        for (int i = 0; i < variableCount; i++) {
+            numbers[variableIds[i]] = -1;
+        }
+        variableCount = 0;
+        size = 0;
+        recorded = false;
+    }
+
+    /**
+     * Return the number of the variable with `SymbolTable` id `id`, numbering it if it has not
+     * been recorded yet.
+     */
+    private int number(int id) {
+        if (id >= numbers.length) {
+            int old = numbers.length;
+            numbers = Arrays.copyOf(numbers, Math.max(id + 1, SymbolTable.size()));
+            Arrays.fill(numbers, old, numbers.length, -1);
+        }
+        if (numbers[id] < 0) {
+            if (variableCount == variableIds.length) {
+                variableIds = Arrays.copyOf(variableIds, 2 * variableCount);
+            }
+            variableIds[variableCount] = id;
+            numbers[id] = variableCount++;
+        }
+        return numbers[id];
+    }
+
+    /**
+     * Record the result of applying `op` to the entries `left` and `right`, and return its index.
+     */
+    private int operate(Operator op, int left, int right) {
+        int kind;
+        Operator ref = null;
+        if (op == Operator.ADD) {
+            kind = RpnProgram.ADD;
+        } else if (op == Operator.SUBTRACT) {
+            kind = RpnProgram.SUBTRACT;
+        } else if (op == Operator.MULTIPLY) {
+            kind = RpnProgram.MULTIPLY;
+        } else if (op == Operator.DIVIDE) {
+            kind = RpnProgram.DIVIDE;
+        } else if (op == Operator.POW) {
+            kind = RpnProgram.POW;
+        } else {
+            kind = RpnProgram.OPERATE;
+            ref = op;
+        }
+        return add(kind, left, right, op.operate(values[left], values[right]), ref,
+                active[left] || active[right]);
+    }
+
+    /**
+     * Append an entry to the tape and return its index.
+     */
+    private int add(int kind, int left, int right, double value, Object ref, boolean isActive) {
+        if (size == kinds.length) {
+            int capacity = 2 * size;
+            kinds = Arrays.copyOf(kinds, capacity);
+            lefts = Arrays.copyOf(lefts, capacity);
+            rights = Arrays.copyOf(rights, capacity);
+            values = Arrays.copyOf(values, capacity);
+            active = Arrays.copyOf(active, capacity);
+            refs = Arrays.copyOf(refs, capacity);
+            adjoints = new double[capacity];
+        }
+        kinds[size] = kind;
+        lefts[size] = left;
+        rights[size] = right;
+        values[size] = value;
+        active[size] = isActive;
+        refs[size] = ref;
+        return size++;
+    }
+
+    /**
+     * Return the number of variables in the recorded expression.
+     */
+    public int variableCount() {
+        return variableCount;
+    }
+
+    /**
+     * Return the name of variable number `i` of the recorded expression.
+     */
+    public String variable(int i) {
+        if (i < 0 || i >= variableCount) {
+            throw new IndexOutOfBoundsException(i);
+        }
+        return SymbolTable.name(variableIds[i]);
+    }
+
+    /**
+     * Return the number of entries on the tape: one per node of the recorded expression.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Set `out[i]` to the partial derivative of the recorded expression with respect to variable
+     * number `i`, for each variable.  Requires `out.length` is at least `variableCount()`.  Does
+     * not allocate.  Throws IllegalStateException if no expression is recorded, and
+     * UnsupportedOperationException if the gradient requires the derivative of a function that is
+     * not `UnaryFunction.isDifferentiable()` or of an operator not defined by `Operator`.
+     */
+    public void gradient(double[] out) {
+        if (!recorded) {
+            throw new IllegalStateException("No expression has been recorded");
+        }
+        Arrays.fill(out, 0, variableCount, 0);
+        Arrays.fill(adjoints, 0, size, 0);
+        adjoints[size - 1] = 1;
+        for (int i = size - 1; i >= 0; i--) {
+            if (!active[i]) {
+                continue;
+            }
+            double g = adjoints[i];
+            int l = lefts[i];
+            int r = rights[i];
+            switch (kinds[i]) {
+                case RpnProgram.LOAD -> out[l] += g;
+                case RpnProgram.ADD -> {
+                    adjoints[l] += g;
+                    adjoints[r] += g;
+                }
+                case RpnProgram.SUBTRACT -> {
+                    adjoints[l] += g;
+                    adjoints[r] -= g;
+                }
+                case RpnProgram.MULTIPLY -> {
+                    adjoints[l] += g * values[r];
+                    adjoints[r] += g * values[l];
+                }
+                case RpnProgram.DIVIDE -> {
+                    adjoints[l] += g / values[r];
+                    adjoints[r] -= g * values[i] / values[r];
+                }
+                case RpnProgram.POW -> {
+                    double x = values[l];
+                    double y = values[r];
+                    if (active[l]) {
+                        adjoints[l] += g * y * Math.pow(x, y - 1);
+                    }
+                    if (active[r]) {
+                        adjoints[r] += g * values[i] * Math.log(x);
+                    }
+                }
+                case RpnProgram.CALL ->
+                        adjoints[l] += g * ((UnaryFunction) refs[i]).derivative(values[l]);
+                default -> throw new UnsupportedOperationException(
+                        "Cannot differentiate operator '" + ((Operator) refs[i]).symbol() + "'");
+            }
+        }
+    }
+
+    /**
+     * Return the partial derivative of the recorded expression with respect to each of its
+     * variables, in order of their numbers.  Throws the same exceptions as `gradient(double[])`.
+     */
+    public Map<String, Double> gradient() {
+        double[] out = new double[variableCount];
+        gradient(out);
+        Map<String, Double> ans = new LinkedHashMap<>();
+        for (int i = 0; i < variableCount; i++) {
+            ans.put(variable(i), out[i]);
+        }
+        return ans;
+    }
+}
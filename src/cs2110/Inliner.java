@@ -0,0 +1,125 @@
+package cs2110;
+
+/**
+ * Replaces applications of functions defined by expressions (see
+ * `UnaryFunction.fromExpression()`) with the functions' bodies, substituting the argument for the
+ * parameter.  Chains of such functions then collapse into a single tree, which can be folded by
+ * `optimize()` and compiled without calls through opaque functions.
+ * <p>
+ * A body that uses its parameter more than once shares the argument subtree between the uses
+ * rather than copying it (trees are immutable, so this is safe), but its size is counted once per
+ * use.  An application is only inlined if the resulting subtree has at most `limit` nodes, which
+ * keeps repeated squaring and the like from growing the tree exponentially.
+ */
+public class Inliner {
+
+    /**
+     * Default maximum number of nodes in a subtree produced by inlining one application.
+     */
+    static final int DEFAULT_LIMIT = 256;
+
+    /**
+     * Return `expr` with every application of an expression-defined function inlined, subject to
+     * `DEFAULT_LIMIT`.
+     */
+    public static Expression inline(Expression expr) {
+        return inline(expr, DEFAULT_LIMIT);
+    }
+
+    /**
+     * Return `expr` with every application of an expression-defined function replaced by the
+     * function's body (itself inlined), unless that would produce a subtree of more than `limit`
+     * nodes.  Returns `expr` itself if nothing was inlined.  Nodes of kinds other than Constant,
+     * Variable, Operation and Application are left as they are.
+     */
+    public static Expression inline(Expression expr, int limit) {
+        return Traversal.rebuild(expr, new Traversal.Rebuilder() {
+            @Override
+            public Expression operation(Operation node, Expression left, Expression right) {
+                if (left == node.left() && right == node.right()) {
+                    return node;
+                }
+                return new Operation(node.op(), left, right);
+            }
+
+            @Override
+            public Expression application(Application node, Expression argument) {
+                Expression expanded = expand(node.func(), argument, limit);
+                if (expanded != null) {
+                    return expanded;
+                } else if (argument == node.argument()) {
+                    return node;
+                }
+                return new Application(node.func(), argument);
+            }
+
+            @Override
+            public Expression leaf(Expression node) {
+                return node;
+            }
+        });
+    }
+
+    /**
+     * Return the (inlined) body of `f` with `argument` substituted for its parameter, or null if
+     * `f` is not defined by an expression or the result would have more than `limit` nodes.
+     */
+    static Expression expand(UnaryFunction f, Expression argument, int limit) {
+        if (f.body() == null) {
+            return null;
+        }
+        Expression body = inline(f.body(), limit);
+        Expression ans = substitute(body, f.param(), argument);
+        return size(ans, limit) <= limit ? ans : null;
+    }
+
+    /**
+     * Return `expr` with every occurrence of the variable `name` replaced by `value`.
+     */
+    private static Expression substitute(Expression expr, String name, Expression value) {
+        return Traversal.rebuild(expr, new Traversal.Rebuilder() {
+            @Override
+            public Expression operation(Operation node, Expression left, Expression right) {
+                return new Operation(node.op(), left, right);
+            }
+
+            @Override
+            public Expression application(Application node, Expression argument) {
+                return new Application(node.func(), argument);
+            }
+
+            @Override
+            public Expression leaf(Expression node) {
+                return node instanceof Variable v && v.name.equals(name) ? value : node;
+            }
+        });
+    }
+
+    /**
+     * Return the number of nodes in `expr`, counting shared subtrees once per use, or any number
+     * greater than `limit` if there are more than `limit`.  Stops counting once `limit` is
+     * exceeded, so the cost is bounded even for trees that share subtrees heavily.
+     */
+    static int size(Expression expr, int limit) {
+        if (limit <= 0) {
+            return 1;
+        }
+        // The order nodes are counted in does not matter, so visit them depth-first, stopping
+        // once `limit` is exceeded; each node pushes at most two, so the stack stays small.
+        Expression[] stack = new Expression[Math.min(limit, expr.depth()) + 2];
+        int sp = 0;
+        int count = 0;
+        stack[sp++] = expr;
+        while (sp > 0 && count <= limit) {
+            Expression node = stack[--sp];
+            count++;
+            if (node instanceof Operation op) {
+                stack[sp++] = op.right();
+                stack[sp++] = op.left();
+            } else if (node instanceof Application app) {
+                stack[sp++] = app.argument();
+            }
+        }
+        return count;
+    }
+}
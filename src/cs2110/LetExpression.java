@@ -0,0 +1,368 @@
+package cs2110;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An expression in which repeated subexpressions are evaluated only once per call to `eval()`.
+ * Created by `of()`, which finds structurally equal pure subtrees of an expression, binds each to
+ * a temporary (as if by "let t = ... in ..."), and replaces its occurrences with references to
+ * the temporary.
+ * <p>
+ * A subtree is pure if it contains only constants, variables, operators, and functions that are
+ * `UnaryFunction.isPure()`; only pure subtrees are shared.  Temporaries are computed when first
+ * needed, in the same order as the original expression would compute them, so evaluation throws
+ * the same UnboundVariableException as the original would.
+ * <p>
+ * All methods other than `eval()` and `opCount()` are answered by the original expression.
+ */
+public class LetExpression implements Expression {
+
+    /**
+     * A reference to the value of a temporary.  Only meaningful within the definitions and body of
+     * the LetExpression that created it.
+     */
+    static class Temp implements Expression {
+
+        /**
+         * Index of the referenced temporary in `definitions`.
+         */
+        final int index;
+
+        Temp(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public double eval(VarTable vars) {
+            throw new IllegalStateException("Temporary evaluated outside its LetExpression");
+        }
+
+        /**
+         * Referring to a temporary performs no operations (they are counted in its definition).
+         */
+        @Override
+        public int opCount() {
+            return 0;
+        }
+
+        @Override
+        public int depth() {
+            return 1;
+        }
+
+        @Override
+        public String infixString() {
+            return "$" + index;
+        }
+
+        @Override
+        public String postfixString() {
+            return "$" + index;
+        }
+
+        @Override
+        public Expression optimize(VarTable vars) {
+            return this;
+        }
+
+        @Override
+        public Set<String> dependencies() {
+            return Set.of();
+        }
+    }
+
+    /**
+     * The expression this was created from.
+     */
+    private final Expression source;
+
+    /**
+     * The expression defining each temporary, which may refer to temporaries with lower indices.
+     */
+    private final Expression[] definitions;
+
+    /**
+     * The expression to evaluate, in terms of the temporaries.
+     */
+    private final Expression body;
+
+    /**
+     * Number of operations performed by one evaluation.
+     */
+    private final int opCount;
+
+    private LetExpression(Expression source, Expression[] definitions, Expression body) {
+        this.source = source;
+        this.definitions = definitions;
+        this.body = body;
+        int count = body.opCount();
+        for (Expression definition : definitions) {
+            count += definition.opCount();
+        }
+        opCount = count;
+    }
+
+    /**
+     * Return an expression equivalent to `expr` that evaluates each repeated pure subexpression
+     * (other than constants and variables) only once per evaluation.
+     */
+    public static LetExpression of(Expression expr) {
+        ExpressionInterner interner = new ExpressionInterner();
+        Expression dag = interner.intern(expr);
+
+        // Count the references to each distinct node; descend into each node only once, so
+        // children of a shared node are counted once for all of its occurrences.
+        Map<Expression, Integer> uses = new IdentityHashMap<>();
+        countUses(dag, uses);
+
+        // Number the shared pure nodes in postorder, so temporaries only refer to earlier ones.
+        Map<Expression, Temp> temps = new IdentityHashMap<>();
+        List<Expression> definitions = new ArrayList<>();
+        Expression body = share(dag, uses, temps, definitions);
+        return new LetExpression(expr, definitions.toArray(new Expression[0]), body);
+    }
+
+    /**
+     * Increment the use count of each node of `root` in `uses`, descending into the children of
+     * a node only on its first use.
+     */
+    private static void countUses(Expression root, Map<Expression, Integer> uses) {
+        // Each node pushes at most two children, one of which is visited next, so the stack
+        // holds at most one pending node per level.
+        Expression[] stack = new Expression[root.depth() + 1];
+        int sp = 0;
+        stack[sp++] = root;
+        while (sp > 0) {
+            Expression node = stack[--sp];
+            Integer count = uses.get(node);
+            uses.put(node, count == null ? 1 : count + 1);
+            if (count != null) {
+                continue;
+            }
+            if (node instanceof Operation op) {
+                stack[sp++] = op.right();
+                stack[sp++] = op.left();
+            } else if (node instanceof Application app) {
+                stack[sp++] = app.argument();
+            }
+        }
+    }
+
+    /**
+     * Return `root` with each shared pure descendant (and `root` itself, if shared and pure)
+     * replaced by a reference to a temporary, adding the definitions of new temporaries to
+     * `definitions` in postorder.
+     */
+    private static Expression share(Expression root, Map<Expression, Integer> uses,
+            Map<Expression, Temp> temps, List<Expression> definitions) {
+        // The rewritten form of each node visited so far that is not a temporary, and whether
+        // each node visited so far is pure.
+        Map<Expression, Expression> rewritten = new IdentityHashMap<>();
+        Map<Expression, Boolean> purity = new IdentityHashMap<>();
+        return Traversal.rebuild(root, new Traversal.Rebuilder() {
+            @Override
+            public Expression known(Expression node) {
+                Temp temp = temps.get(node);
+                return temp != null ? temp : rewritten.get(node);
+            }
+
+            @Override
+            public Expression operation(Operation node, Expression left, Expression right) {
+                purity.put(node, purity.get(node.left()) && purity.get(node.right()));
+                return finish(node, new Operation(node.op(), left, right));
+            }
+
+            @Override
+            public Expression application(Application node, Expression argument) {
+                purity.put(node, node.func().isPure() && purity.get(node.argument()));
+                return finish(node, new Application(node.func(), argument));
+            }
+
+            @Override
+            public Expression leaf(Expression node) {
+                purity.put(node, pure(node));
+                rewritten.put(node, node);
+                return node;
+            }
+
+            /**
+             * Return `ans`, the rewritten form of the operation or application `node`, or a new
+             * temporary defined as `ans` if `node` is shared and pure.
+             */
+            private Expression finish(Expression node, Expression ans) {
+                if (uses.get(node) < 2 || !purity.get(node)) {
+                    rewritten.put(node, ans);
+                    return ans;
+                }
+                Temp temp = new Temp(definitions.size());
+                definitions.add(ans);
+                temps.put(node, temp);
+                return temp;
+            }
+        });
+    }
+
+    /**
+     * Return whether evaluating `expr` has no effects other than computing its value, so that
+     * evaluating it once in place of several times is unobservable.
+     */
+    static boolean pure(Expression expr) {
+        // As in `countUses()`, the stack holds at most one pending node per level.
+        Expression[] stack = new Expression[expr.depth() + 1];
+        int sp = 0;
+        stack[sp++] = expr;
+        while (sp > 0) {
+            Expression node = stack[--sp];
+            if (node instanceof Operation op) {
+                stack[sp++] = op.right();
+                stack[sp++] = op.left();
+            } else if (node instanceof Application app) {
+                if (!app.func().isPure()) {
+                    return false;
+                }
+                stack[sp++] = app.argument();
+            } else if (!(node instanceof Constant || node instanceof Variable)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the number of temporaries, i.e. of distinct repeated subexpressions.
+     */
+    public int tempCount() {
+        return definitions.length;
+    }
+
+    /**
+     * Return the number of operations saved per evaluation compared with the original expression:
+     * the difference between their `opCount()`s.
+     */
+    public int opsSaved() {
+        return source.opCount() - opCount;
+    }
+
+    /**
+     * Return the expression this was created from.
+     */
+    public Expression source() {
+        return source;
+    }
+
+    /**
+     * Return the value of the body given `vars`.  Each temporary is computed when first
+     * referenced, by evaluating its definition in place of the reference, and its value reused for
+     * later references.
+     */
+    @Override
+    public double eval(VarTable vars) throws UnboundVariableException {
+        double[] temps = new double[definitions.length];
+        boolean[] computed = new boolean[definitions.length];
+        // Substituting definitions for references rebuilds paths of the source tree, so the
+        // stacks never grow deeper than it.
+        int n = source.depth() + 1;
+        Expression[] nodes = new Expression[n];
+        int[] visited = new int[n];
+        // The temporary whose definition each node on `nodes` is the root of, or -1.
+        int[] defining = new int[n];
+        Arrays.fill(defining, -1);
+        double[] values = new double[n];
+        int sp = 0;
+        int vp = 0;
+        nodes[sp++] = body;
+        while (sp > 0) {
+            Expression node = nodes[sp - 1];
+            if (node instanceof Temp temp) {
+                if (!computed[temp.index]) {
+                    nodes[sp - 1] = definitions[temp.index];
+                    defining[sp - 1] = temp.index;
+                    continue;
+                }
+                sp--;
+                values[vp++] = temps[temp.index];
+            } else if (node instanceof Operation op) {
+                int v = visited[sp - 1]++;
+                if (v < 2) {
+                    nodes[sp] = v == 0 ? op.left() : op.right();
+                    visited[sp++] = 0;
+                    continue;
+                }
+                sp--;
+                vp--;
+                values[vp - 1] = op.op().operate(values[vp - 1], values[vp]);
+            } else if (node instanceof Application app) {
+                if (visited[sp - 1]++ == 0) {
+                    nodes[sp] = app.argument();
+                    visited[sp++] = 0;
+                    continue;
+                }
+                sp--;
+                values[vp - 1] = app.func().apply(values[vp - 1]);
+            } else {
+                sp--;
+                values[vp++] = node.eval(vars);
+            }
+            // The node at `sp` is done; record it if it defines a temporary.
+            if (defining[sp] >= 0) {
+                temps[defining[sp]] = values[vp - 1];
+                computed[defining[sp]] = true;
+                defining[sp] = -1;
+            }
+        }
+        return values[0];
+    }
+
+    /**
+     * Return the number of operations performed by one evaluation, counting each temporary's
+     * operations once.
+     */
+    @Override
+    public int opCount() {
+        return opCount;
+    }
+
+    /**
+     * Return the depth of the original expression.
+     */
+    @Override
+    public int depth() {
+        return source.depth();
+    }
+
+    @Override
+    public String infixString() {
+        return source.infixString();
+    }
+
+    @Override
+    public String postfixString() {
+        return source.postfixString();
+    }
+
+    @Override
+    public void writeInfix(Appendable out) throws IOException {
+        source.writeInfix(out);
+    }
+
+    @Override
+    public void writePostfix(Appendable out) throws IOException {
+        source.writePostfix(out);
+    }
+
+    @Override
+    public Expression optimize(VarTable vars) {
+        return source.optimize(vars);
+    }
+
+    @Override
+    public Set<String> dependencies() {
+        return source.dependencies();
+    }
+}
@@ -0,0 +1,187 @@
+package cs2110;
+
+/**
+ * A single-pass cursor over the whitespace-separated tokens of an expression string.  Tokens are
+ * classified by inspecting their characters directly (no regular expressions, no exceptions), and
+ * are reported as offsets into the original input rather than as new substrings, so scanning an
+ * expression allocates nothing beyond the Lexer itself.  Numbers are converted while they are
+ * classified, so each is parsed only once.
+ * <p>
+ * Classification follows the same rules as `Token.parse()`: recognized operator symbols yield
+ * OPERATOR, anything `Double.parseDouble()` would accept yields NUMBER, values ending in "()" yield
+ * FUNCTION, and everything else yields VARIABLE.  Whitespace is anything satisfying
+ * `Character.isWhitespace()`, matching the default delimiter of `java.util.Scanner`.
+ * <p>
+ * Example:
+ * <pre>
+ *     Lexer lexer = new Lexer("x 2 ^ sin()");
+ *     while (lexer.next()) {
+ *         switch (lexer.kind()) { ... }
+ *     }
+ * </pre>
+ */
+public class Lexer {
+
+    /**
+     * The categories of token recognized by this lexer.
+     */
+    public enum Kind {
+        NUMBER, OPERATOR, FUNCTION, VARIABLE
+    }
+
+    /**
+     * The text being scanned.
+     */
+    private final CharSequence input;
+
+    /**
+     * Offset of the first character of the current token.
+     */
+    private int start;
+
+    /**
+     * Offset one past the last character of the current token.  Scanning for the next token
+     * resumes here.
+     */
+    private int end;
+
+    /**
+     * The category of the current token, or null if `next()` has not yet returned true.
+     */
+    private Kind kind;
+
+    /**
+     * Parser used to recognize numbers; holds the value of the current token if it is a NUMBER.
+     */
+    private final DecimalParser numbers = new DecimalParser();
+
+    /**
+     * Create a lexer positioned before the first token of `input`.
+     */
+    public Lexer(CharSequence input) {
+        this.input = input;
+    }
+
+    /**
+     * Advance to the next token.  Return false (and leave the lexer exhausted) if no tokens
+     * remain.
+     */
+    public boolean next() {
+        int n = input.length();
+        int i = end;
+        while (i < n && Character.isWhitespace(input.charAt(i))) {
+            i++;
+        }
+        if (i == n) {
+            start = n;
+            end = n;
+            kind = null;
+            return false;
+        }
+        int j = i + 1;
+        while (j < n && !Character.isWhitespace(input.charAt(j))) {
+            j++;
+        }
+        start = i;
+        end = j;
+        kind = classify(input, i, j);
+        return true;
+    }
+
+    /**
+     * Return the category of the current token.
+     */
+    public Kind kind() {
+        return kind;
+    }
+
+    /**
+     * Return the text being scanned.
+     */
+    public CharSequence input() {
+        return input;
+    }
+
+    /**
+     * Return the offset of the first character of the current token.
+     */
+    public int start() {
+        return start;
+    }
+
+    /**
+     * Return the offset one past the last character of the current token.
+     */
+    public int end() {
+        return end;
+    }
+
+    /**
+     * Return the text of the current token as a new String.  Prefer the offset accessors when a
+     * String is not actually needed.
+     */
+    public String text() {
+        return input.subSequence(start, end).toString();
+    }
+
+    /**
+     * Return the operator named by the current token.  Requires the current token is an OPERATOR.
+     */
+    public Operator operator() {
+        assert kind == Kind.OPERATOR;
+        return Operator.fromSymbol(input.charAt(start));
+    }
+
+    /**
+     * Return the numeric value of the current token, in double precision.  Requires the current
+     * token is a NUMBER.
+     */
+    public double numberValue() {
+        assert kind == Kind.NUMBER;
+        return numbers.value();
+    }
+
+    /**
+     * Return the offset one past the last character of the current token's function name (that
+     * is, the offset of its "()" suffix).  The name itself starts at `start()`.  Requires the
+     * current token is a FUNCTION.
+     */
+    public int nameEnd() {
+        assert kind == Kind.FUNCTION;
+        return end - 2;
+    }
+
+    /**
+     * Return a Token object equivalent to the current token, as `Token.parse()` would have
+     * produced from its text.  The token's text is not copied until it is requested.
+     */
+    public Token token() {
+        if (kind == Kind.NUMBER) {
+            return Token.number(input, start, end, numbers.value());
+        }
+        return Token.of(kind, input, start, end);
+    }
+
+    /**
+     * Return the category of the token spanning `[start, end)` in `s`, parsing its value into
+     * `numbers` if it is a NUMBER.  Requires the span is non-empty.
+     */
+    private Kind classify(CharSequence s, int start, int end) {
+        if (end - start == 1 && isOperatorChar(s.charAt(start))) {
+            return Kind.OPERATOR;
+        } else if (numbers.parse(s, start, end)) {
+            return Kind.NUMBER;
+        } else if (end - start >= 2 && s.charAt(end - 2) == '(' && s.charAt(end - 1) == ')') {
+            return Kind.FUNCTION;
+        } else {
+            return Kind.VARIABLE;
+        }
+    }
+
+    /**
+     * Return whether `c` is the symbol of an operator recognized by `Operator.fromSymbol()`.
+     */
+    static boolean isOperatorChar(char c) {
+        return c == '+' || c == '-' || c == '*' || c == '/' || c == '^';
+    }
+}
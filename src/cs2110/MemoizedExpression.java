@@ -0,0 +1,440 @@
+package cs2110;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An expression that remembers the value of every node from its last evaluation, so that
+ * evaluating it again after some variables change recomputes only the nodes on the paths from
+ * those variables to the root.  This suits the usual cycle of setting one variable and then
+ * re-evaluating, where most of the tree is unaffected.
+ * <p>
+ * The tree is flattened once, in postorder, into arrays recording each node's operands and
+ * parent.  Each call to `eval()` reads the variables in `dependencies()` from the table and
+ * compares them with the values last used; for each that differs (in any bit, so a change of sign
+ * of zero counts), the nodes from its occurrences up to the root are marked dirty, and only those
+ * are recomputed, children first.  Applications of functions that are not
+ * `UnaryFunction.isPure()` are recomputed on every evaluation, as are their ancestors.  Compiled
+ * and let expressions are flattened through their source; nodes of other kinds are evaluated as a
+ * whole when any variable in their `dependencies()` changes.
+ * <p>
+ * The results are exactly those of the original expression.  Evaluation does not allocate, but
+ * updates the cache, so `eval()` must not be called concurrently.  All methods other than `eval()`
+ * are answered by the original expression.
+ */
+public class MemoizedExpression implements Expression {
+
+    /**
+     * Kind of an entry that is a node of some other kind, evaluated by its own `eval()`.
+     */
+    private static final int OPAQUE = -1;
+
+    /**
+     * The expression this was created from.
+     */
+    private final Expression source;
+
+    /**
+     * For each entry, in postorder: its kind (an `RpnProgram` opcode or `OPAQUE`); the index of
+     * its first (or only) operand, or its slot for a LOAD; the index of its second operand; the
+     * index of its parent (-1 for the root); and its function, operator or opaque node.
+     */
+    private final int[] kinds, lefts, rights, parents;
+    private final Object[] refs;
+
+    /**
+     * The value of each entry as of the last evaluation.
+     */
+    private final double[] values;
+
+    /**
+     * Whether each entry is waiting to be recomputed during `eval()`.
+     */
+    private final boolean[] dirty;
+
+    /**
+     * The `SymbolTable` id and name of the variable in each slot, in order of first appearance.
+     */
+    private final int[] slotIds;
+    private final String[] slotNames;
+
+    /**
+     * The value of each slot's variable as of the last evaluation, and storage for reading the
+     * new values.
+     */
+    private final double[] slotValues, incoming;
+
+    /**
+     * The entries that read each slot: those of slot `s` are `readers[readerStarts[s]]` up to
+     * (excluding) `readers[readerStarts[s + 1]]`.
+     */
+    private final int[] readerStarts, readers;
+
+    /**
+     * Entries that are recomputed on every evaluation.
+     */
+    private final int[] volatiles;
+
+    /**
+     * Storage for the indices of the entries to recompute during `eval()`.
+     */
+    private final int[] work;
+
+    /**
+     * Whether `values` and `slotValues` hold the results of a completed evaluation.
+     */
+    private boolean valid;
+
+    /**
+     * Number of entries recomputed by the last call to `eval()`.
+     */
+    private int recomputed;
+
+    /**
+     * Create a memoizing wrapper for `expr`.  Nothing is evaluated until `eval()` is called.
+     */
+    public MemoizedExpression(Expression expr) {
+        source = expr;
+        Flattener f = new Flattener();
+        f.flatten(expr);
+        int n = f.size;
+        kinds = Arrays.copyOf(f.kinds, n);
+        lefts = Arrays.copyOf(f.lefts, n);
+        rights = Arrays.copyOf(f.rights, n);
+        parents = Arrays.copyOf(f.parents, n);
+        refs = Arrays.copyOf(f.refs, n);
+        values = new double[n];
+        dirty = new boolean[n];
+        work = new int[n];
+
+        int slots = f.slotIds.size();
+        slotIds = new int[slots];
+        slotNames = new String[slots];
+        for (Map.Entry<Integer, Integer> e : f.slotIds.entrySet()) {
+            slotIds[e.getValue()] = e.getKey();
+            slotNames[e.getValue()] = SymbolTable.name(e.getKey());
+        }
+        slotValues = new double[slots];
+        incoming = new double[slots];
+
+        // Group the (slot, reader) pairs by slot.
+        readerStarts = new int[slots + 1];
+        for (int i = 0; i < f.pairCount; i++) {
+            readerStarts[f.pairs[2 * i] + 1]++;
+        }
+        for (int s = 0; s < slots; s++) {
+            readerStarts[s + 1] += readerStarts[s];
+        }
+        readers = new int[f.pairCount];
+        int[] next = Arrays.copyOf(readerStarts, slots);
+        for (int i = 0; i < f.pairCount; i++) {
+            readers[next[f.pairs[2 * i]]++] = f.pairs[2 * i + 1];
+        }
+        volatiles = Arrays.copyOf(f.volatiles, f.volatileCount);
+    }
+
+    /**
+     * Flattens an expression tree into the entry arrays of a MemoizedExpression, using an
+     * explicit stack so that trees of any depth can be flattened.
+     */
+    private static class Flattener {
+
+        int[] kinds = new int[16];
+        int[] lefts = new int[16];
+        int[] rights = new int[16];
+        int[] parents = new int[16];
+        Object[] refs = new Object[16];
+        int size;
+
+        /**
+         * The slot of each variable id, numbered in order of first appearance.
+         */
+        final Map<Integer, Integer> slotIds = new HashMap<>();
+
+        /**
+         * (slot, entry) pairs recording which entries read which slots.
+         */
+        int[] pairs = new int[16];
+        int pairCount;
+
+        int[] volatiles = new int[4];
+        int volatileCount;
+
+        void flatten(Expression expr) {
+            int n = expr.depth() + 1;
+            Expression[] nodes = new Expression[n];
+            int[] visited = new int[n];
+            int[] operands = new int[n];
+            int sp = 0;
+            int vp = 0;
+            nodes[sp] = expr;
+            visited[sp++] = 0;
+            while (sp > 0) {
+                Expression node = nodes[sp - 1];
+                if (node instanceof Operation op) {
+                    int v = visited[sp - 1]++;
+                    if (v < 2) {
+                        nodes[sp] = v == 0 ? op.left() : op.right();
+                        visited[sp++] = 0;
+                    } else {
+                        sp--;
+                        vp--;
+                        operands[vp - 1] = add(opcode(op.op()), operands[vp - 1], operands[vp],
+                                op.op());
+                    }
+                } else if (node instanceof Application app) {
+                    if (visited[sp - 1]++ == 0) {
+                        nodes[sp] = app.argument();
+                        visited[sp++] = 0;
+                    } else {
+                        sp--;
+                        int e = add(RpnProgram.CALL, operands[vp - 1], -1, app.func());
+                        if (!app.func().isPure()) {
+                            if (volatileCount == volatiles.length) {
+                                volatiles = Arrays.copyOf(volatiles, 2 * volatileCount);
+                            }
+                            volatiles[volatileCount++] = e;
+                        }
+                        operands[vp - 1] = e;
+                    }
+                } else if (node instanceof Constant c) {
+                    sp--;
+                    operands[vp++] = add(RpnProgram.CONST, -1, -1, c);
+                } else if (node instanceof Variable v) {
+                    sp--;
+                    int e = add(RpnProgram.LOAD, slot(v.id), -1, null);
+                    read(lefts[e], e);
+                    operands[vp++] = e;
+                } else if (node instanceof LetExpression let) {
+                    nodes[sp - 1] = let.source();
+                } else if (node instanceof CompiledExpression compiled) {
+                    nodes[sp - 1] = compiled.source();
+                } else if (node instanceof MemoizedExpression memo) {
+                    nodes[sp - 1] = memo.source();
+                } else if (node instanceof RpnProgram program) {
+                    nodes[sp - 1] = program.toExpression();
+                } else {
+                    sp--;
+                    int e = add(OPAQUE, -1, -1, node);
+                    for (String name : node.dependencies()) {
+                        read(slot(SymbolTable.intern(name)), e);
+                    }
+                    operands[vp++] = e;
+                }
+            }
+        }
+
+        /**
+         * Return the opcode of the operator `op`.
+         */
+        private static int opcode(Operator op) {
+            if (op == Operator.ADD) {
+                return RpnProgram.ADD;
+            } else if (op == Operator.SUBTRACT) {
+                return RpnProgram.SUBTRACT;
+            } else if (op == Operator.MULTIPLY) {
+                return RpnProgram.MULTIPLY;
+            } else if (op == Operator.DIVIDE) {
+                return RpnProgram.DIVIDE;
+            } else if (op == Operator.POW) {
+                return RpnProgram.POW;
+            }
+            return RpnProgram.OPERATE;
+        }
+
+        /**
+         * Return the slot of the variable with id `id`, assigning it the next slot if it has none.
+         */
+        private int slot(int id) {
+            Integer slot = slotIds.get(id);
+            if (slot == null) {
+                slot = slotIds.size();
+                slotIds.put(id, slot);
+            }
+            return slot;
+        }
+
+        /**
+         * Record that entry `e` reads slot `slot`.
+         */
+        private void read(int slot, int e) {
+            if (2 * pairCount == pairs.length) {
+                pairs = Arrays.copyOf(pairs, 2 * pairs.length);
+            }
+            pairs[2 * pairCount] = slot;
+            pairs[2 * pairCount + 1] = e;
+            pairCount++;
+        }
+
+        /**
+         * Append an entry whose operands are the entries `left` and `right` (or -1), making it
+         * their parent, and return its index.
+         */
+        private int add(int kind, int left, int right, Object ref) {
+            if (size == kinds.length) {
+                int capacity = 2 * size;
+                kinds = Arrays.copyOf(kinds, capacity);
+                lefts = Arrays.copyOf(lefts, capacity);
+                rights = Arrays.copyOf(rights, capacity);
+                parents = Arrays.copyOf(parents, capacity);
+                refs = Arrays.copyOf(refs, capacity);
+            }
+            kinds[size] = kind;
+            lefts[size] = left;
+            rights[size] = right;
+            parents[size] = -1;
+            refs[size] = ref;
+            if (kind != RpnProgram.LOAD && left >= 0) {
+                parents[left] = size;
+            }
+            if (right >= 0) {
+                parents[right] = size;
+            }
+            return size++;
+        }
+    }
+
+    /**
+     * Return the expression this was created from.
+     */
+    public Expression source() {
+        return source;
+    }
+
+    /**
+     * Return the number of nodes recomputed by the last call to `eval()`, or 0 if it has not been
+     * called.  The first evaluation computes every node.
+     */
+    public int lastRecomputed() {
+        return recomputed;
+    }
+
+    /**
+     * Return the value of the original expression given `vars`, recomputing only nodes that
+     * depend on variables whose values differ from the last evaluation.  Throws
+     * UnboundVariableException if the expression contains a variable whose value is not in
+     * `vars`, leaving the cache unchanged.
+     */
+    @Override
+    public double eval(VarTable vars) throws UnboundVariableException {
+        // Read every variable first (in order of first appearance, as evaluation would), so that
+        // an unbound one throws before the cache is modified.
+        ArrayVarTable table = vars instanceof ArrayVarTable t ? t : null;
+        for (int s = 0; s < slotIds.length; s++) {
+            incoming[s] = table != null ? table.get(slotIds[s]) : vars.get(slotNames[s]);
+        }
+        int count = 0;
+        if (!valid) {
+            for (int e = 0; e < kinds.length; e++) {
+                work[count++] = e;
+            }
+            System.arraycopy(incoming, 0, slotValues, 0, slotValues.length);
+        } else {
+            for (int s = 0; s < slotValues.length; s++) {
+                if (Double.doubleToRawLongBits(incoming[s])
+                        != Double.doubleToRawLongBits(slotValues[s])) {
+                    slotValues[s] = incoming[s];
+                    for (int i = readerStarts[s]; i < readerStarts[s + 1]; i++) {
+                        count = markDirty(readers[i], count);
+                    }
+                }
+            }
+            for (int e : volatiles) {
+                count = markDirty(e, count);
+            }
+            // Postorder puts every entry after its operands.
+            Arrays.sort(work, 0, count);
+        }
+        valid = false;
+        for (int i = 0; i < count; i++) {
+            int e = work[i];
+            dirty[e] = false;
+            values[e] = compute(e, vars);
+        }
+        valid = true;
+        recomputed = count;
+        return values[values.length - 1];
+    }
+
+    /**
+     * Mark entry `e` and its ancestors dirty, stopping at the first that already is, adding them
+     * to `work` from index `count`.  Return the new number of entries in `work`.
+     */
+    private int markDirty(int e, int count) {
+        while (e >= 0 && !dirty[e]) {
+            dirty[e] = true;
+            work[count++] = e;
+            e = parents[e];
+        }
+        return count;
+    }
+
+    /**
+     * Return the value of entry `e`, from the current values of its operands.
+     */
+    private double compute(int e, VarTable vars) throws UnboundVariableException {
+        int l = lefts[e];
+        int r = rights[e];
+        return switch (kinds[e]) {
+            case RpnProgram.CONST -> ((Constant) refs[e]).value;
+            case RpnProgram.LOAD -> slotValues[l];
+            case RpnProgram.ADD -> values[l] + values[r];
+            case RpnProgram.SUBTRACT -> values[l] - values[r];
+            case RpnProgram.MULTIPLY -> values[l] * values[r];
+            case RpnProgram.DIVIDE -> values[l] / values[r];
+            case RpnProgram.POW -> Math.pow(values[l], values[r]);
+            case RpnProgram.CALL -> ((UnaryFunction) refs[e]).apply(values[l]);
+            case RpnProgram.OPERATE -> ((Operator) refs[e]).operate(values[l], values[r]);
+            default -> ((Expression) refs[e]).eval(vars);
+        };
+    }
+
+    @Override
+    public double[] evalWithGradient(VarTable vars, String... wrt)
+            throws UnboundVariableException {
+        return source.evalWithGradient(vars, wrt);
+    }
+
+    @Override
+    public int opCount() {
+        return source.opCount();
+    }
+
+    @Override
+    public int depth() {
+        return source.depth();
+    }
+
+    @Override
+    public String infixString() {
+        return source.infixString();
+    }
+
+    @Override
+    public String postfixString() {
+        return source.postfixString();
+    }
+
+    @Override
+    public void writeInfix(Appendable out) throws IOException {
+        source.writeInfix(out);
+    }
+
+    @Override
+    public void writePostfix(Appendable out) throws IOException {
+        source.writePostfix(out);
+    }
+
+    @Override
+    public Expression optimize(VarTable vars) {
+        return source.optimize(vars);
+    }
+
+    @Override
+    public Set<String> dependencies() {
+        return source.dependencies();
+    }
+}
@@ -0,0 +1,199 @@
+package cs2110;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A thread-safe VarTable that notifies listeners whenever a variable's value changes, so that
+ * computations depending on it (see `ExpressionGraph`) can be updated without polling.  Values
+ * are stored in an ArrayVarTable, guarded by this table's lock.
+ * <p>
+ * Listeners are called on the thread that made the change, after the change is visible and with
+ * no lock held, so they may read this table.  They should return quickly, since they delay the
+ * caller of `set()`.  Setting a variable to the value it already has (the same bits) is not a
+ * change.  Every listener is notified even if some throw; their exceptions are passed to the
+ * failure handler (see `setFailureHandler()`) once all have been notified, and are not thrown by
+ * `set()`, whose change has already been made.
+ */
+public class ObservableVarTable implements VarTable {
+
+    /**
+     * Receives notifications of changes to the variables of an ObservableVarTable.
+     */
+    public interface Listener {
+
+        /**
+         * Called after the variable with `SymbolTable` id `id` is set to a new value or unset.
+         */
+        void changed(int id);
+    }
+
+    /**
+     * The current values.  Guarded by `this`.
+     */
+    private final ArrayVarTable table = new ArrayVarTable();
+
+    /**
+     * The listeners to notify of changes.
+     */
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * The handler for exceptions thrown by listeners, or null to use the default.
+     */
+    private volatile Thread.UncaughtExceptionHandler failureHandler;
+
+    /**
+     * Register `listener` to be notified of all future changes.
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stop notifying `listener` of changes.
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Pass exceptions thrown by listeners to `handler`, along with the thread that made the
+     * change.  If `handler` is null, they are passed to
+     * `Thread.getDefaultUncaughtExceptionHandler()` at the time, or if there is none, to the
+     * calling thread's own uncaught exception handler (which by default prints them), as if they
+     * had ended the thread.
+     */
+    public void setFailureHandler(Thread.UncaughtExceptionHandler handler) {
+        failureHandler = handler;
+    }
+
+    @Override
+    public synchronized double get(String name) throws UnboundVariableException {
+        return table.get(name);
+    }
+
+    @Override
+    public void set(String name, double value) {
+        set(SymbolTable.intern(name), value);
+    }
+
+    /**
+     * Associate `value` with the variable whose id is `id`, notifying listeners if this changes
+     * its value.
+     */
+    public void set(int id, double value) {
+        synchronized (this) {
+            if (table.contains(id) && Double.doubleToRawLongBits(value)
+                    == Double.doubleToRawLongBits(getBound(id))) {
+                return;
+            }
+            table.set(id, value);
+        }
+        fire(id);
+    }
+
+    @Override
+    public void unset(String name) {
+        int id = SymbolTable.lookup(name);
+        if (id >= 0) {
+            unset(id);
+        }
+    }
+
+    /**
+     * Remove any value associated with the variable whose id is `id`, notifying listeners if it
+     * had one.
+     */
+    public void unset(int id) {
+        synchronized (this) {
+            if (!table.contains(id)) {
+                return;
+            }
+            table.unset(id);
+        }
+        fire(id);
+    }
+
+    @Override
+    public synchronized boolean contains(String name) {
+        return table.contains(name);
+    }
+
+    @Override
+    public synchronized int size() {
+        return table.size();
+    }
+
+    /**
+     * Return the names of all variables associated with a value in this table, as of the time of
+     * the call.
+     */
+    @Override
+    public synchronized Set<String> names() {
+        return Set.copyOf(table.names());
+    }
+
+    /**
+     * Return the table holding the current values, for evaluating several expressions against
+     * the same values.  The caller must hold this table's lock while using it, and must not
+     * modify it.
+     */
+    ArrayVarTable values() {
+        return table;
+    }
+
+    /**
+     * Return the value of the bound variable with id `id`.  Requires the caller holds this
+     * table's lock.
+     */
+    private double getBound(int id) {
+        try {
+            return table.get(id);
+        } catch (UnboundVariableException e) {
+            // Only called for variables known to be in the table.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Notify every listener that the variable with id `id` changed, then report any exceptions
+     * they threw.
+     */
+    private void fire(int id) {
+        List<RuntimeException> failures = null;
+        for (Listener listener : listeners) {
+            try {
+                listener.changed(id);
+            } catch (RuntimeException e) {
+                if (failures == null) {
+                    failures = new ArrayList<>();
+                }
+                failures.add(e);
+            }
+        }
+        if (failures != null) {
+            for (RuntimeException e : failures) {
+                report(failureHandler, e);
+            }
+        }
+    }
+
+    /**
+     * Pass `failure`, thrown on the current thread, to `handler`, or if it is null, to the
+     * handler that would receive it if it ended the thread: the default uncaught exception
+     * handler if there is one, and otherwise the thread's own handler.
+     */
+    static void report(Thread.UncaughtExceptionHandler handler, Throwable failure) {
+        Thread thread = Thread.currentThread();
+        if (handler == null) {
+            handler = Thread.getDefaultUncaughtExceptionHandler();
+        }
+        if (handler == null) {
+            handler = thread.getUncaughtExceptionHandler();
+        }
+        handler.uncaughtException(thread, failure);
+    }
+}
@@ -1,16 +1,37 @@
 package cs2110;
 
+import java.io.IOException;
 import java.util.Set;
-import java.util.HashSet;
 
 /**
  * An expression tree node representing the binary operators common in arithmetic
  */
 public class Operation implements Expression {
 
-    private Operator op;
-    private Expression left;
-    private Expression right;
+    private final Operator op;
+    private final Expression left;
+    private final Expression right;
+
+    /**
+     * Structural hash code of this node, computed once from those of its children (which are
+     * themselves cached), so hashing a tree does not traverse it.
+     */
+    private final int hash;
+
+    /**
+     * Metadata of this node, computed once from that of its children (which is itself cached),
+     * so querying it does not traverse the tree.
+     */
+    private final int opCount;
+    private final int depth;
+
+    /**
+     * The variables this node depends on, or null if not yet known.  Computed by
+     * `DependencySet.collect()` on the first call to `dependencies()` rather than with this node,
+     * since storing a complete set at every node of a chain over distinct variables would take
+     * memory quadratic in its length.
+     */
+    private volatile DependencySet dependencies;
 
     /**
      * Creates an Operation node with two operand children, `left` and `right`, and an Operator
@@ -20,6 +41,30 @@ public class Operation implements Expression {
         this.left = left;
         this.right = right;
         this.op = op;
+        hash = 31 * (31 * op.symbol().hashCode() + left.hashCode()) + right.hashCode();
+        opCount = 1 + left.opCount() + right.opCount();
+        depth = 1 + Math.max(left.depth(), right.depth());
+    }
+
+    /**
+     * Return the operator applied by this node.
+     */
+    Operator op() {
+        return op;
+    }
+
+    /**
+     * Return the left operand of this node.
+     */
+    Expression left() {
+        return left;
+    }
+
+    /**
+     * Return the right operand of this node.
+     */
+    Expression right() {
+        return right;
     }
 
     /**
@@ -28,6 +73,9 @@ public class Operation implements Expression {
      */
     @Override
     public double eval(VarTable vars) throws UnboundVariableException {
+        if (depth > Traversal.RECURSION_LIMIT) {
+            return Traversal.eval(this, vars);
+        }
         return op.operate(left.eval(vars), right.eval(vars));
     }
 
@@ -36,7 +84,15 @@ public class Operation implements Expression {
      */
     @Override
     public int opCount() {
-        return 1 + left.opCount() + right.opCount();
+        return opCount;
+    }
+
+    /**
+     * Return one more than the larger depth of the two operands.
+     */
+    @Override
+    public int depth() {
+        return depth;
     }
 
     /**
@@ -47,7 +103,7 @@ public class Operation implements Expression {
      */
     @Override
     public String infixString() {
-        return "(" + left.infixString() + " " + op.symbol() + " " + right.infixString() + ")";
+        return Traversal.infixString(this);
     }
 
     /**
@@ -57,35 +113,78 @@ public class Operation implements Expression {
      */
     @Override
     public String postfixString() {
-        return left.postfixString() + " " + right.postfixString() + " " + op.symbol();
+        return Traversal.postfixString(this);
+    }
+
+    /**
+     * Append the infix representation of this expression to `out`, in time linear in its length.
+     */
+    @Override
+    public void writeInfix(Appendable out) throws IOException {
+        Traversal.writeInfix(this, out);
+    }
+
+    /**
+     * Append the postfix representation of this expression to `out`, in time linear in its
+     * length.
+     */
+    @Override
+    public void writePostfix(Appendable out) throws IOException {
+        Traversal.writePostfix(this, out);
     }
 
     /**
      * Returns an Expression containing the optimized Operation object. An Operation can be fully
      * optimized to a Constant if both operand children in the Operation object can be fully
      * optimized to Constants. Otherwise, Operation can still be partially optimized by creating a
-     * new copy where the children are replaced with their optimized forms.
+     * new copy where the children are replaced with their optimized forms, or this node itself if
+     * neither child changed. This node is not modified.
+     * <p>
+     * Folding is decided from whether the optimized children are Constants, so each node is
+     * visited once and no subtree is evaluated, making this linear in the size of the tree.
      */
     @Override
     public Expression optimize(VarTable vars) {
-        left = left.optimize(vars);
-        right = right.optimize(vars);
-        try {
-            return new Constant(this.eval(vars));
-        } catch (UnboundVariableException e) {
-            return new Operation(op, left, right);
+        if (depth > Traversal.RECURSION_LIMIT) {
+            return Traversal.optimize(this, vars);
+        }
+        return fold(left.optimize(vars), right.optimize(vars));
+    }
+
+    /**
+     * Return the optimized form of this node given the optimized forms `l` and `r` of its
+     * operands.
+     */
+    Expression fold(Expression l, Expression r) {
+        if (l instanceof Constant cl && r instanceof Constant cr) {
+            return new Constant(op.operate(cl.value, cr.value));
         }
+        return l == left && r == right ? this : new Operation(op, l, r);
     }
 
     /**
-     * Returns a Set containing all the Variable objects that the function depends on.
+     * Returns a Set containing all the Variable objects that the function depends on. The set is
+     * computed on the first call, without recursion, and is not modifiable.
      */
     @Override
     public Set<String> dependencies() {
-        Set<String> deps = new HashSet<String>();
-        deps.addAll(left.dependencies());
-        deps.addAll(right.dependencies());
-        return deps;
+        DependencySet deps = dependencies;
+        return deps != null ? deps : DependencySet.collect(this);
+    }
+
+    /**
+     * Return the set of variables this node depends on if it is known, or null otherwise.
+     */
+    DependencySet knownDependencies() {
+        return dependencies;
+    }
+
+    /**
+     * Record `deps` as the set of variables this node depends on.  Called by
+     * `DependencySet.collect()`.
+     */
+    void knownDependencies(DependencySet deps) {
+        dependencies = deps;
     }
 
     /**
@@ -93,10 +192,27 @@ public class Operation implements Expression {
      * are considered equal if both their operator and operand nodes are equal.
      */
     public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
         if (o instanceof Operation) {
             Operation var = (Operation) o;
+            if (hash != var.hash) {
+                return false;
+            } else if (depth > Traversal.RECURSION_LIMIT) {
+                return Traversal.equal(this, var);
+            }
             return op.equals(var.op) && left.equals(var.left) && right.equals(var.right);
         }
         return false;
     }
+
+    /**
+     * Return a hash code consistent with `equals()`, combining the operator's symbol with the
+     * hash codes of the operands.
+     */
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
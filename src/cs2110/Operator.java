@@ -12,6 +12,17 @@ public interface Operator {
      */
     double operate(double operand1, double operand2);
 
+    /**
+     * Set `result[i]` to the result of evaluating the operation on left operand `operands1[i]`
+     * and right operand `operands2[i]`, for each `i` in `[0, n)`.  `result` may be the same array
+     * as either operand.
+     */
+    default void operate(double[] operands1, double[] operands2, double[] result, int n) {
+        for (int i = 0; i < n; i++) {
+            result[i] = operate(operands1[i], operands2[i]);
+        }
+    }
+
     /**
      * Return the symbol used to represent this operator in expression strings.  For example, the
      * "plus" operator would have symbol "+".
@@ -33,6 +44,21 @@ public interface Operator {
         };
     }
 
+    /**
+     * Return a known operator given its single-character symbol, `op`.  Equivalent to
+     * `fromString(String.valueOf(op))` but does not allocate.
+     */
+    static Operator fromSymbol(char op) {
+        return switch (op) {
+            case '+' -> ADD;
+            case '-' -> SUBTRACT;
+            case '*' -> MULTIPLY;
+            case '/' -> DIVIDE;
+            case '^' -> POW;
+            default -> throw new IllegalArgumentException("Unknown operator: " + op);
+        };
+    }
+
     /**
      * Return whether `symbol` is a recognized operator symbol (i.e., one that could be passed to
      * `fromString()`). Guaranteed to recognize "+", "-", "*", "/", "^".
@@ -61,6 +87,10 @@ public interface Operator {
             return operand1 + operand2;
         }
 
+        public void operate(double[] operands1, double[] operands2, double[] result, int n) {
+            ArrayKernels.DEFAULT.add(operands1, operands2, result, n);
+        }
+
         public String symbol() {
             return ADD_SYMBOL;
         }
@@ -74,6 +104,10 @@ public interface Operator {
             return operand1 - operand2;
         }
 
+        public void operate(double[] operands1, double[] operands2, double[] result, int n) {
+            ArrayKernels.DEFAULT.subtract(operands1, operands2, result, n);
+        }
+
         public String symbol() {
             return SUBTRACT_SYMBOL;
         }
@@ -87,6 +121,10 @@ public interface Operator {
             return operand1 * operand2;
         }
 
+        public void operate(double[] operands1, double[] operands2, double[] result, int n) {
+            ArrayKernels.DEFAULT.multiply(operands1, operands2, result, n);
+        }
+
         public String symbol() {
             return MULTIPLY_SYMBOL;
         }
@@ -100,6 +138,10 @@ public interface Operator {
             return operand1 / operand2;
         }
 
+        public void operate(double[] operands1, double[] operands2, double[] result, int n) {
+            ArrayKernels.DEFAULT.divide(operands1, operands2, result, n);
+        }
+
         public String symbol() {
             return DIVIDE_SYMBOL;
         }
@@ -113,6 +155,10 @@ public interface Operator {
             return Math.pow(operand1, operand2);
         }
 
+        public void operate(double[] operands1, double[] operands2, double[] result, int n) {
+            ArrayKernels.DEFAULT.pow(operands1, operands2, result, n);
+        }
+
         public String symbol() {
             return POW_SYMBOL;
         }
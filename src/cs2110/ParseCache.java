@@ -0,0 +1,249 @@
+package cs2110;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of parsed expressions in front of `RpnParser.parse()`, for callers that parse
+ * the same formulas repeatedly.  Entries are keyed by the formula's token sequence (so formulas
+ * differing only in whitespace share an entry) and by the identity of the function definitions
+ * they were parsed with.  Expression trees are immutable, so a cached tree may be returned to any
+ * number of callers.
+ * <p>
+ * The least recently used entries are evicted once the cache holds more than `maxEntries`
+ * formulas or more than `maxWeight` characters of formula text.  Formulas that fail to parse are
+ * not cached.  A definitions map that is modified after formulas were parsed with it must be
+ * passed to `invalidate()`, since the cache cannot detect the change.
+ * <p>
+ * All methods are thread-safe.  Parsing happens outside the cache's lock, so concurrent misses on
+ * different formulas do not wait for each other.
+ */
+public class ParseCache {
+
+    /**
+     * Default maximum number of cached formulas.
+     */
+    static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    /**
+     * Default maximum total length of cached formula text.
+     */
+    static final long DEFAULT_MAX_WEIGHT = 1 << 22;
+
+    /**
+     * Identifies a cache entry: a normalized formula and the definitions it was parsed with
+     * (compared by identity).
+     */
+    private static final class Key {
+
+        final String text;
+        final Map<String, UnaryFunction> defs;
+        final int hash;
+
+        Key(String text, Map<String, UnaryFunction> defs) {
+            this.text = text;
+            this.defs = defs;
+            hash = 31 * text.hashCode() + System.identityHashCode(defs);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && defs == other.defs && text.equals(other.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Cached expressions, from least to most recently used.  Guarded by itself.
+     */
+    private final LinkedHashMap<Key, Expression> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Total length of the formula text of all entries.  Guarded by `entries`.
+     */
+    private long weight;
+
+    /**
+     * Number of calls to `invalidate()` or `clear()` so far.  A parse that started before an
+     * invalidation is not cached, since it may have used stale definitions.  Guarded by
+     * `entries`.
+     */
+    private long generation;
+
+    private final int maxEntries;
+    private final long maxWeight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Create an empty cache with the default limits.
+     */
+    public ParseCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_WEIGHT);
+    }
+
+    /**
+     * Create an empty cache holding at most `maxEntries` formulas with a total length of at most
+     * `maxWeight` characters.  Requires both limits to be positive.
+     */
+    public ParseCache(int maxEntries, long maxWeight) {
+        if (maxEntries <= 0 || maxWeight <= 0) {
+            throw new IllegalArgumentException("Cache limits must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Return the expression represented by the RPN string `exprString` with functions defined by
+     * `funcDefs`, as `RpnParser.parse()` would, reusing the tree from an earlier call if
+     * possible.  Throws the same exceptions as `RpnParser.parse()`.
+     */
+    public Expression parse(String exprString, Map<String, UnaryFunction> funcDefs)
+            throws IncompleteRpnException, UndefinedFunctionException {
+        Key key = new Key(normalize(exprString), funcDefs);
+        Expression ans;
+        long startGeneration;
+        synchronized (entries) {
+            ans = entries.get(key);
+            startGeneration = generation;
+        }
+        if (ans != null) {
+            hits.increment();
+            return ans;
+        }
+        misses.increment();
+        ans = RpnParser.parse(key.text, funcDefs);
+        synchronized (entries) {
+            if (generation != startGeneration) {
+                return ans;
+            }
+            Expression prev = entries.putIfAbsent(key, ans);
+            if (prev != null) {
+                return prev;
+            }
+            weight += key.text.length();
+            evict();
+        }
+        return ans;
+    }
+
+    /**
+     * Remove least recently used entries until the cache is within its limits, keeping at least
+     * the most recent entry.  Requires the lock on `entries`.
+     */
+    private void evict() {
+        Iterator<Key> it = entries.keySet().iterator();
+        while (entries.size() > 1 && (entries.size() > maxEntries || weight > maxWeight)) {
+            Key eldest = it.next();
+            it.remove();
+            weight -= eldest.text.length();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Remove all entries parsed with the definitions `funcDefs`.  Must be called whenever
+     * `funcDefs` is modified.
+     */
+    public void invalidate(Map<String, UnaryFunction> funcDefs) {
+        synchronized (entries) {
+            generation++;
+            Iterator<Key> it = entries.keySet().iterator();
+            while (it.hasNext()) {
+                Key key = it.next();
+                if (key.defs == funcDefs) {
+                    it.remove();
+                    weight -= key.text.length();
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        synchronized (entries) {
+            generation++;
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    /**
+     * Return the number of formulas currently cached.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Return the number of calls to `parse()` that returned a cached tree.
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Return the number of calls to `parse()` that had to parse their formula.
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Return the number of entries removed to keep the cache within its limits (not counting
+     * invalidations).
+     */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Return `exprString` with leading and trailing whitespace removed and each run of whitespace
+     * between tokens replaced by a single space (whitespace as understood by `Lexer`).  Returns
+     * `exprString` itself if it is already in this form.
+     */
+    static String normalize(String exprString) {
+        int n = exprString.length();
+        boolean normal = n == 0 || !Character.isWhitespace(exprString.charAt(0))
+                && !Character.isWhitespace(exprString.charAt(n - 1));
+        for (int i = 1; normal && i < n; i++) {
+            char c = exprString.charAt(i);
+            normal = !Character.isWhitespace(c)
+                    || c == ' ' && !Character.isWhitespace(exprString.charAt(i - 1));
+        }
+        if (normal) {
+            return exprString;
+        }
+        StringBuilder ans = new StringBuilder(n);
+        for (int i = 0; i < n; ) {
+            while (i < n && Character.isWhitespace(exprString.charAt(i))) {
+                i++;
+            }
+            int j = i;
+            while (j < n && !Character.isWhitespace(exprString.charAt(j))) {
+                j++;
+            }
+            if (j > i) {
+                if (ans.length() > 0) {
+                    ans.append(' ');
+                }
+                ans.append(exprString, i, j);
+            }
+            i = j;
+        }
+        return ans.toString();
+    }
+}
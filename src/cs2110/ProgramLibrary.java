@@ -0,0 +1,400 @@
+package cs2110;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A read-only collection of compiled programs stored in a binary file, which is memory-mapped
+ * rather than read.  Opening a library decodes only its symbol and function tables, and programs
+ * are evaluated directly from the mapped bytes without creating any objects for them, so a
+ * service can start without tokenizing or parsing any RPN.  Libraries are created by `write()`,
+ * typically from expressions parsed once by `RpnParser`, and opened by `open()`.
+ * <p>
+ * A library file (version 1) consists of big-endian 32-bit ints and 64-bit doubles:
+ * <pre>
+ *   header:   MAGIC, VERSION
+ *   strings:  count, then for each: byte length, UTF-8 bytes
+ *   functions: count, then for each: index of its name in strings
+ *   programs: count, then for each: byte offset of its body in the file
+ *   body:     maxDepth, slot count, string index of each slot's variable name,
+ *             instruction count, instructions, constant count, constants
+ * </pre>
+ * Instructions are those of `RpnProgram`, except that the operand of a CALL instruction indexes
+ * the library's function table.  Functions are stored by name only, and are resolved against a
+ * table of definitions when the library is opened, just as `RpnParser` resolves them when parsing.
+ * Programs using operators other than those defined by `Operator` cannot be stored.
+ * <p>
+ * Every program is validated when the library is opened, so a corrupt file is reported then
+ * rather than when it is evaluated.  Evaluation only reads the mapped buffer, so `eval()` may be
+ * called concurrently.
+ */
+public class ProgramLibrary {
+
+    /**
+     * The first int of every library file: "RPNL" in ASCII.
+     */
+    static final int MAGIC = 0x52504E4C;
+
+    /**
+     * The version of the format written by `write()`, and the only one `open()` accepts.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The mapped contents of the library file.
+     */
+    private final ByteBuffer buf;
+
+    /**
+     * The string table, and the `SymbolTable` id of each string.
+     */
+    private final String[] strings;
+    private final int[] ids;
+
+    /**
+     * The definition of each function in the function table.
+     */
+    private final UnaryFunction[] functions;
+
+    /**
+     * Position in `buf` of the offset of the first program's body, and the number of programs.
+     */
+    private final int offsets, size;
+
+    private ProgramLibrary(ByteBuffer buf, String[] strings, UnaryFunction[] functions,
+            int offsets, int size) {
+        this.buf = buf;
+        this.strings = strings;
+        ids = new int[strings.length];
+        for (int i = 0; i < strings.length; i++) {
+            ids[i] = SymbolTable.intern(strings[i]);
+        }
+        this.functions = functions;
+        this.offsets = offsets;
+        this.size = size;
+    }
+
+    /**
+     * Write a library containing the programs compiled from `exprs`, in order, to `file`,
+     * replacing any existing file.  Throws IllegalArgumentException if an expression cannot be
+     * compiled by `RpnProgram.of()` or uses an operator not defined by `Operator`.
+     */
+    public static void write(List<? extends Expression> exprs, Path file) throws IOException {
+        List<RpnProgram> programs = new ArrayList<>(exprs.size());
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        Map<String, Integer> functions = new LinkedHashMap<>();
+        for (Expression expr : exprs) {
+            RpnProgram program = RpnProgram.of(expr);
+            for (int insn : program.code()) {
+                if (RpnProgram.opcode(insn) == RpnProgram.OPERATE) {
+                    throw new IllegalArgumentException("Cannot store custom operators: "
+                            + program.postfixString());
+                }
+            }
+            for (String name : program.names()) {
+                strings.putIfAbsent(name, strings.size());
+            }
+            for (UnaryFunction f : program.functions()) {
+                strings.putIfAbsent(f.name(), strings.size());
+                functions.putIfAbsent(f.name(), functions.size());
+            }
+            programs.add(program);
+        }
+
+        List<byte[]> encoded = new ArrayList<>(strings.size());
+        int offset = 4 * 5 + 4 * functions.size() + 4 * programs.size();
+        for (String s : strings.keySet()) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            offset += 4 + bytes.length;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(encoded.size());
+            for (byte[] bytes : encoded) {
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.writeInt(functions.size());
+            for (String name : functions.keySet()) {
+                out.writeInt(strings.get(name));
+            }
+            out.writeInt(programs.size());
+            for (RpnProgram program : programs) {
+                out.writeInt(offset);
+                offset += 4 * 4 + 4 * program.names().length + 4 * program.code().length
+                        + 8 * program.constants().length;
+            }
+            for (RpnProgram program : programs) {
+                out.writeInt(program.maxDepth());
+                out.writeInt(program.names().length);
+                for (String name : program.names()) {
+                    out.writeInt(strings.get(name));
+                }
+                UnaryFunction[] funcs = program.functions();
+                out.writeInt(program.code().length);
+                for (int insn : program.code()) {
+                    if (RpnProgram.opcode(insn) == RpnProgram.CALL) {
+                        int index = functions.get(funcs[RpnProgram.operand(insn)].name());
+                        insn = RpnProgram.instruction(RpnProgram.CALL, index);
+                    }
+                    out.writeInt(insn);
+                }
+                out.writeInt(program.constants().length);
+                for (double c : program.constants()) {
+                    out.writeDouble(c);
+                }
+            }
+        }
+    }
+
+    /**
+     * Map the library `file` into memory, resolving its functions with `funcDefs`.  Throws
+     * IOException if the file cannot be read or is not a valid library of a supported version,
+     * and UndefinedFunctionException if it uses a function not in `funcDefs`.
+     */
+    public static ProgramLibrary open(Path file, Map<String, UnaryFunction> funcDefs)
+            throws IOException, UndefinedFunctionException {
+        ByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Program library too large: " + file);
+            }
+            // The mapping remains valid after the channel is closed.
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            if (buf.getInt(0) != MAGIC) {
+                throw new IOException("Not a program library: " + file);
+            }
+            int version = buf.getInt(4);
+            if (version != VERSION) {
+                throw new IOException("Unsupported program library version " + version + ": "
+                        + file);
+            }
+            int pos = 8;
+            String[] strings = new String[count(buf, pos, 4)];
+            pos += 4;
+            for (int i = 0; i < strings.length; i++) {
+                int length = count(buf, pos, 1);
+                byte[] bytes = new byte[length];
+                buf.get(pos + 4, bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+                pos += 4 + length;
+            }
+            UnaryFunction[] functions = new UnaryFunction[count(buf, pos, 4)];
+            pos += 4;
+            for (int i = 0; i < functions.length; i++) {
+                String name = strings[index(buf, pos, strings.length)];
+                functions[i] = funcDefs.get(name);
+                if (functions[i] == null) {
+                    throw new UndefinedFunctionException(name);
+                }
+                pos += 4;
+            }
+            int size = count(buf, pos, 4);
+            ProgramLibrary library = new ProgramLibrary(buf, strings, functions, pos + 4, size);
+            for (int i = 0; i < size; i++) {
+                library.validate(i);
+            }
+            return library;
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Truncated program library: " + file, e);
+        }
+    }
+
+    /**
+     * Return the nonnegative int at position `pos` of `buf`, which counts items of at least
+     * `itemSize` bytes that follow it.  Throws IOException if they cannot fit in `buf`.
+     */
+    private static int count(ByteBuffer buf, int pos, int itemSize) throws IOException {
+        int n = buf.getInt(pos);
+        if (n < 0 || (long) n * itemSize > buf.limit() - pos - 4) {
+            throw new IOException("Corrupt program library: bad count at " + pos);
+        }
+        return n;
+    }
+
+    /**
+     * Return the int at position `pos` of `buf`.  Throws IOException if it is not an index into
+     * a table of length `length`.
+     */
+    private static int index(ByteBuffer buf, int pos, int length) throws IOException {
+        int i = buf.getInt(pos);
+        if (i < 0 || i >= length) {
+            throw new IOException("Corrupt program library: bad index at " + pos);
+        }
+        return i;
+    }
+
+    /**
+     * Check that the body of program `i` lies within the file, refers only to valid table
+     * entries, and executes with exactly its recorded maximum stack depth, leaving one value.
+     * Throws IOException if not.  Requiring the exact depth means `eval()` never allocates a
+     * larger stack than the program needs, however large the recorded depth is.
+     */
+    private void validate(int i) throws IOException {
+        int pos = body(i);
+        int maxDepth = buf.getInt(pos);
+        int slotCount = count(buf, pos + 4, 4);
+        for (int s = 0; s < slotCount; s++) {
+            index(buf, pos + 8 + 4 * s, strings.length);
+        }
+        int code = pos + 8 + 4 * slotCount;
+        int codeLength = count(buf, code, 4);
+        int constants = code + 4 + 4 * codeLength;
+        int constantCount = count(buf, constants, 8);
+        int depth = 0;
+        int deepest = 0;
+        for (int k = 0; k < codeLength; k++) {
+            int insn = buf.getInt(code + 4 + 4 * k);
+            int operand = RpnProgram.operand(insn);
+            int limit;
+            switch (RpnProgram.opcode(insn)) {
+                case RpnProgram.CONST -> {
+                    limit = constantCount;
+                    depth++;
+                }
+                case RpnProgram.LOAD -> {
+                    limit = slotCount;
+                    depth++;
+                }
+                case RpnProgram.CALL -> limit = depth < 1 ? 0 : functions.length;
+                case RpnProgram.ADD, RpnProgram.SUBTRACT, RpnProgram.MULTIPLY,
+                        RpnProgram.DIVIDE, RpnProgram.POW -> {
+                    limit = depth < 2 ? 0 : 1;
+                    depth--;
+                }
+                default -> limit = 0;
+            }
+            if (operand >= limit || depth > maxDepth) {
+                throw new IOException("Corrupt program library: bad instruction in program "
+                        + i);
+            }
+            deepest = Math.max(deepest, depth);
+        }
+        if (deepest != maxDepth) {
+            throw new IOException("Corrupt program library: program " + i
+                    + " has the wrong maximum depth");
+        } else if (depth != 1) {
+            throw new IOException("Corrupt program library: program " + i
+                    + " does not leave one value");
+        }
+    }
+
+    /**
+     * Return the position in `buf` of the body of program `i`.
+     */
+    private int body(int i) {
+        return buf.getInt(offsets + 4 * i);
+    }
+
+    /**
+     * Return the number of programs in this library.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return the result of evaluating program `i`, substituting any variables with their value in
+     * `vars`.  Throws UnboundVariableException if the program contains a variable whose value is
+     * not in `vars`.  Allocates only the program's variable slots and operand stack.
+     */
+    public double eval(int i, VarTable vars) throws UnboundVariableException {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException(i);
+        }
+        int pos = body(i);
+        double[] stack = new double[buf.getInt(pos)];
+        double[] slotValues = new double[buf.getInt(pos + 4)];
+        int slots = pos + 8;
+        for (int s = 0; s < slotValues.length; s++) {
+            int name = buf.getInt(slots + 4 * s);
+            slotValues[s] = vars instanceof ArrayVarTable table ? table.get(ids[name])
+                    : vars.get(strings[name]);
+        }
+        int code = slots + 4 * slotValues.length;
+        int end = code + 4 + 4 * buf.getInt(code);
+        // The constant pool follows its count, just after the instructions.
+        int constants = end + 4;
+        int sp = 0;
+        for (int k = code + 4; k < end; k += 4) {
+            int insn = buf.getInt(k);
+            int operand = RpnProgram.operand(insn);
+            switch (RpnProgram.opcode(insn)) {
+                case RpnProgram.CONST -> stack[sp++] = buf.getDouble(constants + 8 * operand);
+                case RpnProgram.LOAD -> stack[sp++] = slotValues[operand];
+                case RpnProgram.ADD -> {
+                    sp--;
+                    stack[sp - 1] = stack[sp - 1] + stack[sp];
+                }
+                case RpnProgram.SUBTRACT -> {
+                    sp--;
+                    stack[sp - 1] = stack[sp - 1] - stack[sp];
+                }
+                case RpnProgram.MULTIPLY -> {
+                    sp--;
+                    stack[sp - 1] = stack[sp - 1] * stack[sp];
+                }
+                case RpnProgram.DIVIDE -> {
+                    sp--;
+                    stack[sp - 1] = stack[sp - 1] / stack[sp];
+                }
+                case RpnProgram.POW -> {
+                    sp--;
+                    stack[sp - 1] = Math.pow(stack[sp - 1], stack[sp]);
+                }
+                case RpnProgram.CALL -> stack[sp - 1] = functions[operand].apply(stack[sp - 1]);
+                default -> throw new IllegalStateException("Bad instruction: " + insn);
+            }
+        }
+        return stack[0];
+    }
+
+    /**
+     * Return program `i` as an RpnProgram, equal to the one compiled from the expression it was
+     * written from (given the same function definitions).
+     */
+    public RpnProgram load(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException(i);
+        }
+        int pos = body(i);
+        int slots = pos + 8;
+        int code = slots + 4 * buf.getInt(pos + 4);
+        int end = code + 4 + 4 * buf.getInt(code);
+        int constants = end + 4;
+        RpnProgram.Assembler asm = new RpnProgram.Assembler();
+        for (int k = code + 4; k < end; k += 4) {
+            int insn = buf.getInt(k);
+            int operand = RpnProgram.operand(insn);
+            switch (RpnProgram.opcode(insn)) {
+                case RpnProgram.CONST -> asm.constant(buf.getDouble(constants + 8 * operand));
+                case RpnProgram.LOAD -> asm.variable(strings[buf.getInt(slots + 4 * operand)]);
+                case RpnProgram.ADD -> asm.operator(Operator.ADD);
+                case RpnProgram.SUBTRACT -> asm.operator(Operator.SUBTRACT);
+                case RpnProgram.MULTIPLY -> asm.operator(Operator.MULTIPLY);
+                case RpnProgram.DIVIDE -> asm.operator(Operator.DIVIDE);
+                case RpnProgram.POW -> asm.operator(Operator.POW);
+                case RpnProgram.CALL -> asm.function(functions[operand]);
+                default -> throw new IllegalStateException("Bad instruction: " + insn);
+            }
+        }
+        return asm.build();
+    }
+}
@@ -1,12 +1,15 @@
 package cs2110;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
-import java.util.HashMap;
+import java.io.Writer;
 import java.util.InputMismatchException;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -26,13 +29,25 @@ public class RpnCalc {
     /**
      * Function names that are allowed in expressions, paired with their implementations.
      */
-    private final Map<String, UnaryFunction> defs;
+    private final FunctionRegistry defs;
+
+    /**
+     * Expressions previously parsed with `defs`, so that re-entering a formula does not re-parse
+     * it.
+     */
+    private final ParseCache parseCache = new ParseCache();
 
     /**
      * The user's current expression to be used in commands.
      */
     private Expression expr;
 
+    /**
+     * A memoizing wrapper for `expr`, created when it is first evaluated, so that evaluating it
+     * again after "set" only recomputes the nodes depending on the changed variables.
+     */
+    private MemoizedExpression memo;
+
     /**
      * Whether the user has entered an "exit" command.
      */
@@ -44,11 +59,10 @@ public class RpnCalc {
      */
     public RpnCalc() {
         // Initially no variables are set.
-        vars = new MapVarTable();
+        vars = new ArrayVarTable();
 
         // Initially only core math functions are registered.
-        defs = new HashMap<>();
-        defs.putAll(UnaryFunction.mathDefs());
+        defs = FunctionRegistry.math();
 
         // Initially set the user's expression to "0" (so it's never null).
         expr = new Constant(0);
@@ -61,6 +75,8 @@ public class RpnCalc {
     private void registerDef(UnaryFunction f) {
         // Register the function in `defs` under its own name.
         defs.put(f.name(), f);
+        // Expressions parsed with the old definitions may no longer be valid.
+        parseCache.invalidate(defs);
     }
 
     /**
@@ -75,7 +91,7 @@ public class RpnCalc {
     private void updateExpr(Scanner scanner)
             throws IncompleteRpnException, UndefinedFunctionException {
         if (scanner.hasNext()) {
-            expr = RpnParser.parse(scanner.nextLine(), defs);
+            expr = parseCache.parse(scanner.nextLine(), defs);
         }
         // If there are no tokens, leave `expr` unchanged.
     }
@@ -165,7 +181,7 @@ public class RpnCalc {
                 deps [<expr>]\t\t\t\tPrint the variables that <expr> (or the last expression) depends on
                 opcount [<expr>]\t\t\tCount the number of operations needed to evaluate <expr> (or the last expression)
                 optimize [<expr>]\t\t\tReplace the user's expression with the optimized form of <expr> (or the last expression)
-                tabulate <var> <lo> <hi> <n> [<expr>]\tEvaluate <expr> (or the last expression) at <n> values of <var> between <lo> and <hi>
+                tabulate <var> <lo> <hi> <n> [> <file>] [<expr>]\tEvaluate <expr> (or the last expression) at <n> values of <var> between <lo> and <hi>, optionally writing the table to <file>
                 def <name> <var> [<expr>]\t\tDefine a new function named <name> that evaluates <expr> (or the last expression) with <var> set to its argument
                 exit\t\t\t\t\tExit the program""");
     }
@@ -235,7 +251,7 @@ public class RpnCalc {
         }
 
         // Replace the variable table with an empty one.
-        vars = new MapVarTable();
+        vars = new ArrayVarTable();
     }
 
     /**
@@ -292,7 +308,10 @@ public class RpnCalc {
     public void doEval(Scanner scanner) {
         try {
             updateExpr(scanner);
-            System.out.println(expr.eval(vars));
+            if (memo == null || memo.source() != expr) {
+                memo = new MemoizedExpression(expr);
+            }
+            System.out.println(memo.eval(vars));
         } catch (IncompleteRpnException e) {
             System.err.println(e.getMessage());
         } catch (UndefinedFunctionException e) {
@@ -397,18 +416,68 @@ public class RpnCalc {
      *     <li>hi: The maximum value of the abscissa (floating-point number)</li>
      *     <li>n: The number of abscissa to sample at (integer)</li>
      * </ol>
-     * If additional arguments are provided in `scanner`, parse them as an RPN expression and update
-     * the current expression.
+     * These may be followed by "&gt; file" to write the table to the named file instead of
+     * printing it.  If additional arguments are provided in `scanner`, parse them as an RPN
+     * expression and update the current expression.
      * <p>
      * The `n` sampled abscissa are evenly spaced between `lo` and `hi`.  After executing this
      * command,`var` should be assigned the value `hi`.  Prints  to `System.err` and returns if
      * improper arguments are passed, if expression cannot be parsed, or if expression depends on
      * variables that have not been assigned a value.
+     * <p>
+     * The expression is compiled once and sampled in parallel by a `Tabulator`, and the table is
+     * written through a buffered writer rather than printed line by line.
      */
     public void doTabulate(Scanner scanner) {
-        // TODO (challenge extension): Implement this method according to its specification.
-        // Use the helper function `updateExpr()` when appropriate.
-        System.err.println("Sorry, this command is not yet supported.");
+        String usage = "Expected: <var> <lo> <hi> <n> [> <file>] [<expr>]";
+        try {
+            // Parse arguments (may throw)
+            String var = scanner.next();
+            double lo = scanner.nextDouble();
+            double hi = scanner.nextDouble();
+            int n = scanner.nextInt();
+            String filename = null;
+            if (scanner.hasNext(">")) {
+                scanner.next();
+                filename = scanner.next();
+            }
+            updateExpr(scanner);
+
+            if (n < 1) {
+                System.err.println("Number of samples must be positive");
+                return;
+            }
+
+            Tabulator table = new Tabulator(expr, var, vars);
+            if (filename == null) {
+                // Do not close the writer, since that would close `System.out`.
+                Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+                table.write(lo, hi, n, out);
+                out.flush();
+            } else {
+                try (Writer out = new BufferedWriter(new FileWriter(filename), 1 << 16)) {
+                    table.write(lo, hi, n, out);
+                }
+            }
+            vars.set(var, hi);
+        } catch (NoSuchElementException e) {
+            // Includes InputMismatchException for non-numeric bounds or counts.
+            System.err.println(usage);
+        } catch (IncompleteRpnException e) {
+            System.err.println(e.getMessage());
+        } catch (UndefinedFunctionException e) {
+            printUndefinedFunctionError(e.name());
+        } catch (UnboundVariableException e) {
+            printUnboundVariableError(e.name());
+        } catch (IOException e) {
+            System.err.println("Could not write table: " + e.getMessage());
+        } catch (RuntimeException e) {
+            // A function failed for some sample.  If it failed on a worker thread, `join()` threw
+            // a copy of its exception, with the original as the cause.
+            Throwable failure = e.getCause() != null && e.getCause().getClass() == e.getClass()
+                    ? e.getCause() : e;
+            System.err.println("Could not tabulate expression: " + failure);
+        }
     }
 
     /**
@@ -426,9 +495,32 @@ public class RpnCalc {
      * already been defined (in the latter two cases, the current expression is still updated).
      */
     public void doDef(Scanner scanner) {
-        // TODO (challenge extension): Implement this method according to its specification.
-        // Use the helper functions `updateExpr()` and `registerDef()` when appropriate.
-        System.err.println("Sorry, this command is not yet supported.");
+        try {
+            // Parse arguments (may throw)
+            String name = scanner.next();
+            String var = scanner.next();
+            updateExpr(scanner);
+
+            for (String dep : expr.dependencies()) {
+                if (!dep.equals(var)) {
+                    System.err.println("Function body may only depend on " + var
+                            + ", but depends on " + dep);
+                    return;
+                }
+            }
+            if (defs.containsKey(name)) {
+                System.err.println("A function named " + name + " is already defined");
+                return;
+            }
+
+            registerDef(UnaryFunction.fromExpression(name, expr, var));
+        } catch (NoSuchElementException e) {
+            System.err.println("Expected: <name> <var> [<expr>]");
+        } catch (IncompleteRpnException e) {
+            System.err.println(e.getMessage());
+        } catch (UndefinedFunctionException e) {
+            printUndefinedFunctionError(e.name());
+        }
     }
 
 
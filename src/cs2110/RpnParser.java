@@ -13,6 +13,8 @@ public class RpnParser {
      * allowed), arithmetic operators (+, -, *, /, ^), function names (with the suffix "()"), and
      * variable names (anything else).  When a function name is encountered, the corresponding
      * function will be retrieved from `funcDefs` using the name (without "()" suffix) as the key.
+     * If `funcDefs` is a FunctionRegistry, function names are looked up without allocating;
+     * otherwise its contents are copied into one first.
      *
      * @throws IncompleteRpnException     if the expression has too few or too many operands
      *                                    relative to operators and functions.
@@ -21,61 +23,181 @@ public class RpnParser {
      */
     public static Expression parse(String exprString, Map<String, UnaryFunction> funcDefs)
             throws IncompleteRpnException, UndefinedFunctionException {
+        return parse(exprString, funcDefs, null);
+    }
+
+    /**
+     * Parse the RPN expression in `exprString` as `parse(exprString, funcDefs)` does, but build
+     * the tree from the canonical nodes of `interner` (if not null), so that subtrees equal to
+     * ones parsed earlier with the same interner are shared rather than allocated again.
+     *
+     * @throws IncompleteRpnException     if the expression has too few or too many operands
+     *                                    relative to operators and functions.
+     * @throws UndefinedFunctionException if a function name applied in `exprString` is not present
+     *                                    in `funcDefs`.
+     */
+    public static Expression parse(String exprString, Map<String, UnaryFunction> funcDefs,
+            ExpressionInterner interner)
+            throws IncompleteRpnException, UndefinedFunctionException {
         // Each token will result in a subexpression being pushed onto this stack.  If the
         // subexpression requires arguments, they are first popped off of this stack.
         Deque<Expression> stack = new ArrayDeque<>();
+        FunctionRegistry functions = FunctionRegistry.of(funcDefs);
+
+        if (Token.SCANNER_TOKENIZER) {
+            parseTokens(exprString, functions, interner, stack);
+        } else {
+            // Loop over each token in the expression string from left to right, classifying it in
+            // place without materializing a Token object.
+            Lexer lexer = new Lexer(exprString);
+            while (lexer.next()) {
+                switch (lexer.kind()) {
+                    case NUMBER -> stack.push(interner == null ? new Constant(lexer.numberValue())
+                            : interner.constant(lexer.numberValue()));
+                    case OPERATOR -> pushOperation(stack, lexer.operator(), interner);
+                    case FUNCTION -> pushApplication(stack, functions, exprString,
+                            lexer.start(), lexer.nameEnd(), interner);
+                    case VARIABLE -> stack.push(interner == null ? new Variable(lexer.text())
+                            : interner.variable(lexer.text()));
+                }
+            }
+        }
 
+        if (stack.size() != 1) {
+            throw new IncompleteRpnException("The final expression does not leave exactly one expression left in the stack",
+                    stack.size());
+        }
+        return stack.pop();
+    }
+
+    /**
+     * Compile the RPN expression in `exprString` to a flat stack-machine program.  Accepts the
+     * same syntax as `parse()` and throws the same exceptions; the resulting program evaluates and
+     * formats identically to the expression tree `parse()` would return, but without allocating
+     * or recursing during evaluation.
+     *
+     * @throws IncompleteRpnException     if the expression has too few or too many operands
+     *                                    relative to operators and functions.
+     * @throws UndefinedFunctionException if a function name applied in `exprString` is not present
+     *                                    in `funcDefs`.
+     */
+    public static RpnProgram compile(String exprString, Map<String, UnaryFunction> funcDefs)
+            throws IncompleteRpnException, UndefinedFunctionException {
+        RpnProgram.Assembler asm = new RpnProgram.Assembler();
+        FunctionRegistry functions = FunctionRegistry.of(funcDefs);
+        Lexer lexer = new Lexer(exprString);
+        while (lexer.next()) {
+            switch (lexer.kind()) {
+                case NUMBER -> asm.constant(lexer.numberValue());
+                case VARIABLE -> asm.variable(lexer.text());
+                case OPERATOR -> {
+                    if (asm.depth() < 2) {
+                        throw new IncompleteRpnException("There are not enough expressions left in the stack for the operand to perform"
+                                + "the operation.", asm.depth());
+                    }
+                    asm.operator(lexer.operator());
+                }
+                case FUNCTION -> {
+                    if (asm.depth() < 1) {
+                        throw new IncompleteRpnException("There are not enough expressions left in the stack for the function to execute."
+                                , asm.depth());
+                    }
+                    asm.function(lookupFunction(functions, exprString, lexer.start(),
+                            lexer.nameEnd()));
+                }
+            }
+        }
+
+        if (asm.depth() != 1) {
+            throw new IncompleteRpnException("The final expression does not leave exactly one expression left in the stack",
+                    asm.depth());
+        }
+        return asm.build();
+    }
+
+    /**
+     * Push the expression node for each token of `exprString`, as produced by
+     * `Token.tokenizer()`, onto `stack`.  This is the original token-object-based parsing loop,
+     * used when `Token.SCANNER_TOKENIZER` is enabled.
+     */
+    private static void parseTokens(String exprString, FunctionRegistry functions,
+            ExpressionInterner interner, Deque<Expression> stack)
+            throws IncompleteRpnException, UndefinedFunctionException {
         // Loop over each token in the expression string from left to right
         for (Token token : Token.tokenizer(exprString)) {
-            // TODO: Based on the dynamic type of the token, create the appropriate Expression node
+            // Based on the dynamic type of the token, create the appropriate Expression node
             // and push it onto the stack, popping arguments as needed.
-            // The "number" token is done for you as an example.
             if (token instanceof Token.Number) {
                 Token.Number numToken = (Token.Number) token;
-                stack.push(new Constant(numToken.doubleValue()));
+                stack.push(interner == null ? new Constant(numToken.doubleValue())
+                        : interner.constant(numToken.doubleValue()));
             }
             if (token instanceof Token.Operator) {
-                // When the current token is an Operator, there must exist at least two expressions left on the stack to be
-                // the two operands for the operation to continue
-                if (stack.size() < 2) {
-                    throw new IncompleteRpnException("There are not enough expressions left in the stack for the operand to perform"
-                            + "the operation.", stack.size());
-                }
-                Expression right = stack.pop();
-                Expression left = stack.pop();
                 Token.Operator opToken = (Token.Operator) token;
-                Operation op = new Operation(opToken.opValue(), left, right);
-                stack.push(op);
-
+                pushOperation(stack, opToken.opValue(), interner);
             }
             if (token instanceof Token.Function) {
-
-                // When the current token is an Application node, there must exist at least one expression left on the stack for
-                // the argument to execute the Function
-                if (stack.size() < 1) {
-                    throw new IncompleteRpnException("There are not enough expressions left in the stack for the function to execute."
-                            , stack.size());
-                }
-                Expression expr = stack.pop();
                 Token.Function funcToken = (Token.Function) token;
-                funcDefs = UnaryFunction.mathDefs();
-                if (!funcDefs.containsKey(funcToken.name())) {
-                    throw new UndefinedFunctionException("This function is not defined.");
-                }
-                UnaryFunction un = funcDefs.get(funcToken.name());
-                Application a = new Application(un, expr);
-                stack.push(a);
+                String name = funcToken.name();
+                pushApplication(stack, functions, name, 0, name.length(), interner);
             }
             if (token instanceof Token.Variable) {
-                Token.Variable varToken = (Token.Variable) token;
-                stack.push(new Variable((token.value())));
+                stack.push(interner == null ? new Variable(token.value())
+                        : interner.variable(token.value()));
             }
         }
+    }
 
-        if (stack.size() != 1) {
-            throw new IncompleteRpnException("The final expression does not leave exactly one expression left in the stack",
-                    stack.size());
+    /**
+     * Pop the right and then left operands of `op` off of `stack` and push the resulting
+     * Operation node, which is canonical in `interner` if not null.
+     */
+    private static void pushOperation(Deque<Expression> stack, Operator op,
+            ExpressionInterner interner)
+            throws IncompleteRpnException {
+        // When the current token is an Operator, there must exist at least two expressions left on the stack to be
+        // the two operands for the operation to continue
+        if (stack.size() < 2) {
+            throw new IncompleteRpnException("There are not enough expressions left in the stack for the operand to perform"
+                    + "the operation.", stack.size());
         }
-        return stack.pop();
+        Expression right = stack.pop();
+        Expression left = stack.pop();
+        stack.push(interner == null ? new Operation(op, left, right)
+                : interner.operation(op, left, right));
+    }
+
+    /**
+     * Pop the argument of the function named by the characters of `s` in `[start, end)` off of
+     * `stack` and push the resulting Application node, which is canonical in `interner` if not
+     * null.
+     */
+    private static void pushApplication(Deque<Expression> stack, FunctionRegistry functions,
+            CharSequence s, int start, int end, ExpressionInterner interner)
+            throws IncompleteRpnException, UndefinedFunctionException {
+        // When the current token is an Application node, there must exist at least one expression left on the stack for
+        // the argument to execute the Function
+        if (stack.size() < 1) {
+            throw new IncompleteRpnException("There are not enough expressions left in the stack for the function to execute."
+                    , stack.size());
+        }
+        Expression expr = stack.pop();
+        UnaryFunction f = lookupFunction(functions, s, start, end);
+        stack.push(interner == null ? new Application(f, expr) : interner.application(f, expr));
+    }
+
+    /**
+     * Return the function named by the characters of `s` in `[start, end)` for use in an
+     * expression.  Only allocates if the function is undefined, to name it in the exception.
+     *
+     * @throws UndefinedFunctionException if no such function is registered in `functions`.
+     */
+    private static UnaryFunction lookupFunction(FunctionRegistry functions, CharSequence s,
+            int start, int end) throws UndefinedFunctionException {
+        UnaryFunction f = functions.lookup(s, start, end);
+        if (f == null) {
+            throw new UndefinedFunctionException(s.subSequence(start, end).toString());
+        }
+        return f;
     }
 }
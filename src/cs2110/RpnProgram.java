@@ -0,0 +1,664 @@
+package cs2110;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An expression compiled to a flat sequence of stack-machine instructions, as an alternative to a
+ * tree of Expression nodes.  Since RPN is already a postfix encoding, each token becomes exactly
+ * one instruction: constants and variables push a value, operators pop two values and push their
+ * result, and functions replace the top value with their result.  The operators defined by
+ * `Operator` have dedicated opcodes; any others are called through an operator table.
+ * <p>
+ * Instructions are packed into an `int[]`, each holding an opcode in its low 8 bits and an operand
+ * (an index into the constant pool, variable slot table, or function table) in its upper bits.
+ * Evaluation runs over preallocated arrays and does not allocate.  Because those arrays are reused,
+ * `eval()` must not be called concurrently on the same program; concurrent callers should provide
+ * their own arrays to `execute()`.
+ */
+public class RpnProgram implements Expression {
+
+    /* Opcodes. */
+    static final int CONST = 0;
+    static final int LOAD = 1;
+    static final int ADD = 2;
+    static final int SUBTRACT = 3;
+    static final int MULTIPLY = 4;
+    static final int DIVIDE = 5;
+    static final int POW = 6;
+    static final int CALL = 7;
+    static final int OPERATE = 8;
+
+    /**
+     * Number of low bits of an instruction holding its opcode.
+     */
+    private static final int OPCODE_BITS = 8;
+
+    /**
+     * The instructions of this program, in execution order.
+     */
+    private final int[] code;
+
+    /**
+     * Values pushed by CONST instructions, indexed by operand.
+     */
+    private final double[] constants;
+
+    /**
+     * Names of the variables loaded by LOAD instructions, indexed by operand (slot).  Each distinct
+     * variable occupies one slot, in order of first appearance.
+     */
+    private final String[] names;
+
+    /**
+     * The `SymbolTable` id of each name in `names`, indexed by slot.
+     */
+    private final int[] ids;
+
+    /**
+     * Functions applied by CALL instructions, indexed by operand.
+     */
+    private final UnaryFunction[] functions;
+
+    /**
+     * Operators applied by OPERATE instructions, indexed by operand.
+     */
+    private final Operator[] operators;
+
+    /**
+     * The largest number of values on the stack at any point during execution.
+     */
+    private final int maxDepth;
+
+    /**
+     * Reusable storage for variable values and the operand stack during `eval()`.
+     */
+    private final double[] slotValues, stack;
+
+    /**
+     * The names in `names`, as returned by `dependencies()`.
+     */
+    private final DependencySet dependencies;
+
+    /**
+     * Number of operations and unary functions, and depth of the equivalent expression tree.
+     */
+    private final int opCount, depth;
+
+    /**
+     * Create a program from its instruction stream and tables.  Requires `code` is a valid
+     * instruction sequence leaving exactly one value on the stack, whose maximum depth is
+     * `maxDepth`.
+     */
+    private RpnProgram(int[] code, double[] constants, String[] names, UnaryFunction[] functions,
+            Operator[] operators, int maxDepth) {
+        this.code = code;
+        this.constants = constants;
+        this.names = names;
+        ids = new int[names.length];
+        DependencySet deps = DependencySet.EMPTY;
+        for (int i = 0; i < names.length; i++) {
+            ids[i] = SymbolTable.intern(names[i]);
+            deps = deps.union(DependencySet.of(ids[i]));
+        }
+        this.functions = functions;
+        this.operators = operators;
+        this.maxDepth = maxDepth;
+        slotValues = new double[names.length];
+        stack = new double[maxDepth];
+        dependencies = deps;
+
+        // Simulate the stack, tracking the tree depth of each value instead of the value.
+        int[] depths = new int[maxDepth];
+        int sp = 0;
+        int count = 0;
+        for (int insn : code) {
+            int op = opcode(insn);
+            if (op == CONST || op == LOAD) {
+                depths[sp++] = 1;
+            } else if (op == CALL) {
+                depths[sp - 1]++;
+                count++;
+            } else {
+                sp--;
+                depths[sp - 1] = 1 + Math.max(depths[sp - 1], depths[sp]);
+                count++;
+            }
+        }
+        opCount = count;
+        depth = depths[0];
+    }
+
+    /**
+     * Return a program equivalent to the expression tree `expr`.  Throws IllegalArgumentException
+     * if `expr` contains a kind of node (or operator) that cannot be compiled.
+     */
+    public static RpnProgram of(Expression expr) {
+        if (expr instanceof RpnProgram) {
+            return (RpnProgram) expr;
+        }
+        Assembler asm = new Assembler();
+        assemble(expr, asm);
+        return asm.build();
+    }
+
+    /**
+     * Append instructions evaluating `expr` to `asm`, in postfix order.
+     */
+    private static void assemble(Expression expr, Assembler asm) {
+        Traversal.walk(expr, node -> {
+            if (node instanceof Constant c) {
+                asm.constant(c.value);
+            } else if (node instanceof Variable v) {
+                asm.variable(v.name);
+            } else if (node instanceof Operation op) {
+                asm.operator(op.op());
+            } else if (node instanceof Application app) {
+                asm.function(app.func());
+            } else if (node instanceof CompiledExpression compiled) {
+                assemble(compiled.source(), asm);
+            } else {
+                throw new IllegalArgumentException("Cannot compile expression of "
+                        + node.getClass());
+            }
+        });
+    }
+
+    /**
+     * Return the result of evaluating this program, substituting any variables with their value
+     * in `vars`.  Each variable is looked up once, regardless of how many times it appears.  Throws
+     * UnboundVariableException if this program contains a variable whose value is not in `vars`.
+     */
+    @Override
+    public double eval(VarTable vars) throws UnboundVariableException {
+        if (vars instanceof ArrayVarTable) {
+            ArrayVarTable table = (ArrayVarTable) vars;
+            for (int i = 0; i < ids.length; i++) {
+                slotValues[i] = table.get(ids[i]);
+            }
+        } else {
+            for (int i = 0; i < names.length; i++) {
+                slotValues[i] = vars.get(names[i]);
+            }
+        }
+        return execute(slotValues, stack);
+    }
+
+    /**
+     * Return the result of evaluating this program with the value of variable `names()[i]` given
+     * by `slotValues[i]`, using `stack` as the operand stack.  Requires `stack` has length at
+     * least `maxDepth()`.  Does not allocate.
+     */
+    public double execute(double[] slotValues, double[] stack) {
+        int sp = 0;
+        for (int insn : code) {
+            int operand = operand(insn);
+            switch (opcode(insn)) {
+                case CONST -> stack[sp++] = constants[operand];
+                case LOAD -> stack[sp++] = slotValues[operand];
+                case ADD -> {
+                    sp--;
+                    stack[sp - 1] = stack[sp - 1] + stack[sp];
+                }
+                case SUBTRACT -> {
+                    sp--;
+                    stack[sp - 1] = stack[sp - 1] - stack[sp];
+                }
+                case MULTIPLY -> {
+                    sp--;
+                    stack[sp - 1] = stack[sp - 1] * stack[sp];
+                }
+                case DIVIDE -> {
+                    sp--;
+                    stack[sp - 1] = stack[sp - 1] / stack[sp];
+                }
+                case POW -> {
+                    sp--;
+                    stack[sp - 1] = Math.pow(stack[sp - 1], stack[sp]);
+                }
+                case CALL -> stack[sp - 1] = functions[operand].apply(stack[sp - 1]);
+                case OPERATE -> {
+                    sp--;
+                    stack[sp - 1] = operators[operand].operate(stack[sp - 1], stack[sp]);
+                }
+                default -> throw new IllegalStateException("Bad instruction: " + insn);
+            }
+        }
+        return stack[0];
+    }
+
+    /**
+     * Return the names of the variables this program loads, indexed by slot.  The returned array
+     * must not be modified.
+     */
+    public String[] names() {
+        return names;
+    }
+
+    /**
+     * Return the operand stack size required to execute this program.
+     */
+    public int maxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Return the instructions of this program.  The returned array must not be modified.
+     */
+    int[] code() {
+        return code;
+    }
+
+    /**
+     * Return the constant pool of this program.  The returned array must not be modified.
+     */
+    double[] constants() {
+        return constants;
+    }
+
+    /**
+     * Return the function table of this program.  The returned array must not be modified.
+     */
+    UnaryFunction[] functions() {
+        return functions;
+    }
+
+    /**
+     * Return the number of operations and unary functions contained in this program.
+     */
+    @Override
+    public int opCount() {
+        return opCount;
+    }
+
+    /**
+     * Return the depth of the expression tree equivalent to this program.
+     */
+    @Override
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * Return the infix representation of this program, formatted exactly as the equivalent
+     * expression tree would be.
+     */
+    @Override
+    public String infixString() {
+        Deque<String> parts = new ArrayDeque<>();
+        for (int insn : code) {
+            int op = opcode(insn);
+            if (op == CALL) {
+                parts.push(functions[operand(insn)].name() + "(" + parts.pop() + ")");
+            } else if (op >= ADD) {
+                String right = parts.pop();
+                String left = parts.pop();
+                parts.push("(" + left + " " + operator(insn).symbol() + " " + right + ")");
+            } else {
+                parts.push(leafString(insn));
+            }
+        }
+        return parts.pop();
+    }
+
+    /**
+     * Return the postfix representation of this program, separating every token with spaces.
+     */
+    @Override
+    public String postfixString() {
+        StringBuilder sb = new StringBuilder();
+        for (int insn : code) {
+            if (!sb.isEmpty()) {
+                sb.append(' ');
+            }
+            int op = opcode(insn);
+            if (op == CALL) {
+                sb.append(functions[operand(insn)].name()).append("()");
+            } else if (op >= ADD) {
+                sb.append(operator(insn).symbol());
+            } else {
+                sb.append(leafString(insn));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Return the text of the CONST or LOAD instruction `insn`.
+     */
+    private String leafString(int insn) {
+        return opcode(insn) == CONST ? DecimalFormatter.toString(constants[operand(insn)])
+                : names[operand(insn)];
+    }
+
+    /**
+     * Return a program where all operations and function applications that only depend on
+     * constants or variables in `vars` are replaced by constants equal to their evaluated value,
+     * folding in a single pass over the instructions.
+     */
+    @Override
+    public Expression optimize(VarTable vars) {
+        Assembler asm = new Assembler();
+        // For each value on the simulated stack, the index of the first instruction that computes
+        // it in `asm` and, if it is constant, its value.
+        int[] starts = new int[maxDepth];
+        boolean[] known = new boolean[maxDepth];
+        double[] values = new double[maxDepth];
+        int sp = 0;
+        for (int insn : code) {
+            int op = opcode(insn);
+            int start = asm.size();
+            if (op == CONST || (op == LOAD && vars.contains(names[operand(insn)]))) {
+                double value = op == CONST ? constants[operand(insn)]
+                        : lookup(vars, names[operand(insn)]);
+                asm.constant(value);
+                starts[sp] = start;
+                known[sp] = true;
+                values[sp++] = value;
+            } else if (op == LOAD) {
+                asm.variable(names[operand(insn)]);
+                starts[sp] = start;
+                known[sp++] = false;
+            } else if (op == CALL) {
+                UnaryFunction f = functions[operand(insn)];
+                if (known[sp - 1]) {
+                    asm.truncate(starts[sp - 1], 1);
+                    values[sp - 1] = f.apply(values[sp - 1]);
+                    asm.constant(values[sp - 1]);
+                } else {
+                    asm.function(f);
+                }
+            } else {
+                sp--;
+                if (known[sp - 1] && known[sp]) {
+                    asm.truncate(starts[sp - 1], 2);
+                    values[sp - 1] = operator(insn).operate(values[sp - 1], values[sp]);
+                    asm.constant(values[sp - 1]);
+                } else {
+                    asm.operator(operator(insn));
+                    known[sp - 1] = false;
+                }
+            }
+        }
+        return asm.build();
+    }
+
+    /**
+     * Return the value of `name` in `vars`.  Requires `vars` contains `name`.
+     */
+    private static double lookup(VarTable vars, String name) {
+        try {
+            return vars.get(name);
+        } catch (UnboundVariableException e) {
+            // Only called for variables known to be in the table.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Return the names of all variables that this program depends on.  The returned set is not
+     * modifiable.
+     */
+    @Override
+    public Set<String> dependencies() {
+        return dependencies;
+    }
+
+    /**
+     * Return an expression tree equivalent to this program.
+     */
+    public Expression toExpression() {
+        Deque<Expression> nodes = new ArrayDeque<>();
+        for (int insn : code) {
+            int op = opcode(insn);
+            if (op == CONST) {
+                nodes.push(new Constant(constants[operand(insn)]));
+            } else if (op == LOAD) {
+                nodes.push(new Variable(names[operand(insn)]));
+            } else if (op == CALL) {
+                nodes.push(new Application(functions[operand(insn)], nodes.pop()));
+            } else {
+                Expression right = nodes.pop();
+                Expression left = nodes.pop();
+                nodes.push(new Operation(operator(insn), left, right));
+            }
+        }
+        return nodes.pop();
+    }
+
+    /**
+     * Return whether `other` is a program with the same instructions and tables.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (other == this) {
+            return true;
+        }
+        if (!(other instanceof RpnProgram)) {
+            return false;
+        }
+        RpnProgram p = (RpnProgram) other;
+        return Arrays.equals(code, p.code) && Arrays.equals(constants, p.constants)
+                && Arrays.equals(names, p.names) && Arrays.equals(functions, p.functions)
+                && Arrays.equals(operators, p.operators);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(code) + Arrays.hashCode(constants);
+    }
+
+    /**
+     * Return the instruction with opcode `opcode` and operand `operand`.
+     */
+    static int instruction(int opcode, int operand) {
+        return operand << OPCODE_BITS | opcode;
+    }
+
+    /**
+     * Return the opcode of instruction `insn`.
+     */
+    static int opcode(int insn) {
+        return insn & ((1 << OPCODE_BITS) - 1);
+    }
+
+    /**
+     * Return the operand of instruction `insn`.
+     */
+    static int operand(int insn) {
+        return insn >>> OPCODE_BITS;
+    }
+
+    /**
+     * Return the operator performed by the binary operation instruction `insn`.
+     */
+    private Operator operator(int insn) {
+        return switch (opcode(insn)) {
+            case ADD -> Operator.ADD;
+            case SUBTRACT -> Operator.SUBTRACT;
+            case MULTIPLY -> Operator.MULTIPLY;
+            case DIVIDE -> Operator.DIVIDE;
+            case POW -> Operator.POW;
+            case OPERATE -> operators[operand(insn)];
+            default -> throw new IllegalArgumentException("Not an operator: " + insn);
+        };
+    }
+
+    /**
+     * Incrementally builds an RpnProgram, one token at a time, while tracking the depth of the
+     * operand stack.  Constants, variable slots, and functions are pooled when the program is
+     * built, so instructions discarded by `truncate()` leave no trace in the tables.
+     */
+    static class Assembler {
+
+        /**
+         * Opcode of each instruction added so far.
+         */
+        private int[] ops = new int[16];
+
+        /**
+         * Constant value of each CONST instruction added so far (unused for other opcodes).
+         */
+        private double[] values = new double[16];
+
+        /**
+         * Variable name of each LOAD instruction, function of each CALL instruction, or operator of
+         * each OPERATE instruction added so far (null for other opcodes).
+         */
+        private Object[] refs = new Object[16];
+
+        /**
+         * Number of instructions added so far.
+         */
+        private int size;
+
+        /**
+         * Number of values the instructions added so far leave on the stack, and the largest
+         * such number at any point.
+         */
+        private int depth, maxDepth;
+
+        /**
+         * Return the number of instructions added so far.
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Return the number of values left on the stack by the instructions added so far.
+         */
+        int depth() {
+            return depth;
+        }
+
+        /**
+         * Add an instruction pushing `value`.
+         */
+        void constant(double value) {
+            add(CONST, value, null, 1);
+        }
+
+        /**
+         * Add an instruction pushing the value of the variable `name`.
+         */
+        void variable(String name) {
+            add(LOAD, 0, name, 1);
+        }
+
+        /**
+         * Add an instruction applying `op` to the top two values.
+         */
+        void operator(Operator op) {
+            int opcode;
+            Operator ref = null;
+            if (op == Operator.ADD) {
+                opcode = ADD;
+            } else if (op == Operator.SUBTRACT) {
+                opcode = SUBTRACT;
+            } else if (op == Operator.MULTIPLY) {
+                opcode = MULTIPLY;
+            } else if (op == Operator.DIVIDE) {
+                opcode = DIVIDE;
+            } else if (op == Operator.POW) {
+                opcode = POW;
+            } else {
+                opcode = OPERATE;
+                ref = op;
+            }
+            add(opcode, 0, ref, -1);
+        }
+
+        /**
+         * Add an instruction applying `f` to the top value.
+         */
+        void function(UnaryFunction f) {
+            add(CALL, 0, f, 0);
+        }
+
+        /**
+         * Discard all instructions from index `newSize` onwards.  Requires those instructions
+         * push exactly `count` values in total.
+         */
+        void truncate(int newSize, int count) {
+            size = newSize;
+            depth -= count;
+        }
+
+        /**
+         * Append an instruction and adjust the stack depth by `delta`.
+         */
+        private void add(int opcode, double value, Object ref, int delta) {
+            if (size == ops.length) {
+                ops = Arrays.copyOf(ops, 2 * size);
+                values = Arrays.copyOf(values, 2 * size);
+                refs = Arrays.copyOf(refs, 2 * size);
+            }
+            ops[size] = opcode;
+            values[size] = value;
+            refs[size] = ref;
+            size++;
+            depth += delta;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        /**
+         * Return a program consisting of the instructions added so far.  Requires they leave
+         * exactly one value on the stack.
+         */
+        RpnProgram build() {
+            assert depth == 1;
+            int[] code = new int[size];
+            double[] constants = new double[size];
+            int constantCount = 0;
+            Map<Object, Integer> slots = new HashMap<>();
+            String[] names = new String[size];
+            int nameCount = 0;
+            Map<Object, Integer> funcIndices = new HashMap<>();
+            UnaryFunction[] functions = new UnaryFunction[size];
+            int funcCount = 0;
+            Map<Object, Integer> opIndices = new HashMap<>();
+            Operator[] operators = new Operator[size];
+            int opCount = 0;
+            for (int i = 0; i < size; i++) {
+                int operand = 0;
+                if (ops[i] == CONST) {
+                    operand = constantCount;
+                    constants[constantCount++] = values[i];
+                } else if (ops[i] == LOAD) {
+                    Integer slot = slots.get(refs[i]);
+                    if (slot == null) {
+                        slot = nameCount;
+                        slots.put(refs[i], slot);
+                        names[nameCount++] = (String) refs[i];
+                    }
+                    operand = slot;
+                } else if (ops[i] == CALL) {
+                    Integer index = funcIndices.get(refs[i]);
+                    if (index == null) {
+                        index = funcCount;
+                        funcIndices.put(refs[i], index);
+                        functions[funcCount++] = (UnaryFunction) refs[i];
+                    }
+                    operand = index;
+                } else if (ops[i] == OPERATE) {
+                    Integer index = opIndices.get(refs[i]);
+                    if (index == null) {
+                        index = opCount;
+                        opIndices.put(refs[i], index);
+                        operators[opCount++] = (Operator) refs[i];
+                    }
+                    operand = index;
+                }
+                code[i] = instruction(ops[i], operand);
+            }
+            return new RpnProgram(code, Arrays.copyOf(constants, constantCount),
+                    Arrays.copyOf(names, nameCount), Arrays.copyOf(functions, funcCount),
+                    Arrays.copyOf(operators, opCount), maxDepth);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package cs2110;
+
+/**
+ * Array kernels that process one element per iteration.  C2 auto-vectorizes the arithmetic, abs
+ * and sqrt loops; the others call the `Math` method for each element directly, avoiding a
+ * megamorphic call per element.  Used when the Vector API is not available.
+ */
+final class ScalarKernels implements ArrayKernels {
+
+    @Override
+    public void add(double[] a, double[] b, double[] r, int n) {
+        for (int i = 0; i < n; i++) {
+            r[i] = a[i] + b[i];
+        }
+    }
+
+    @Override
+    public void subtract(double[] a, double[] b, double[] r, int n) {
+        for (int i = 0; i < n; i++) {
+            r[i] = a[i] - b[i];
+        }
+    }
+
+    @Override
+    public void multiply(double[] a, double[] b, double[] r, int n) {
+        for (int i = 0; i < n; i++) {
+            r[i] = a[i] * b[i];
+        }
+    }
+
+    @Override
+    public void divide(double[] a, double[] b, double[] r, int n) {
+        for (int i = 0; i < n; i++) {
+            r[i] = a[i] / b[i];
+        }
+    }
+
+    @Override
+    public void pow(double[] a, double[] b, double[] r, int n) {
+        for (int i = 0; i < n; i++) {
+            r[i] = Math.pow(a[i], b[i]);
+        }
+    }
+
+    @Override
+    public void abs(double[] a, double[] r, int n) {
+        for (int i = 0; i < n; i++) {
+            r[i] = Math.abs(a[i]);
+        }
+    }
+
+    @Override
+    public void sqrt(double[] a, double[] r, int n) {
+        for (int i = 0; i < n; i++) {
+            r[i] = Math.sqrt(a[i]);
+        }
+    }
+
+    @Override
+    public void exp(double[] a, double[] r, int n) {
+        for (int i = 0; i < n; i++) {
+            r[i] = Math.exp(a[i]);
+        }
+    }
+
+    @Override
+    public void log(double[] a, double[] r, int n) {
+        for (int i = 0; i < n; i++) {
+            r[i] = Math.log(a[i]);
+        }
+    }
+
+    @Override
+    public void sin(double[] a, double[] r, int n) {
+        for (int i = 0; i < n; i++) {
+            r[i] = Math.sin(a[i]);
+        }
+    }
+
+    @Override
+    public void cos(double[] a, double[] r, int n) {
+        for (int i = 0; i < n; i++) {
+            r[i] = Math.cos(a[i]);
+        }
+    }
+
+    @Override
+    public void tan(double[] a, double[] r, int n) {
+        for (int i = 0; i < n; i++) {
+            r[i] = Math.tan(a[i]);
+        }
+    }
+}
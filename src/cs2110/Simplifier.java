@@ -0,0 +1,247 @@
+package cs2110;
+
+/**
+ * Rewrites expressions using algebraic identities, in addition to folding constant
+ * subexpressions, to reduce the cost of evaluating them.  Works bottom-up, rewriting each node
+ * after its children until no rule applies.
+ * <p>
+ * In `Mode.STRICT`, only rewrites that give bit-identical results for every input (including
+ * NaN, infinities and signed zeros) are applied, and no subexpression is dropped or duplicated
+ * (other than a variable), so evaluation also throws the same exceptions and has the same side
+ * effects.  These are:
+ * <ul>
+ *     <li>folding operations on constants, and pure functions of constants</li>
+ *     <li>`x * 1`, `1 * x`, `x / 1`, `x ^ 1`, `x + -0.0`, `-0.0 + x`, `x - 0.0` to `x`</li>
+ *     <li>`v ^ 2` to `v * v` for a variable `v` (`Math.pow()` computes exactly this)</li>
+ *     <li>`x / c` to `x * (1/c)` when `c` is a power of two, whose reciprocal is exact</li>
+ * </ul>
+ * `Mode.FAST` additionally applies rewrites that are exact for finite, non-NaN inputs but may
+ * differ in rounding, in the sign of zero, or for NaN and infinite values, and that may drop a
+ * pure subexpression (and with it a variable from `dependencies()`):
+ * <ul>
+ *     <li>`x + 0`, `0 + x`, `x - 0` to `x`; `x * 0`, `0 * x`, `x - x` to `0`; `x / x` and
+ *         `x ^ 0` to `1`</li>
+ *     <li>`v ^ n` to a chain of multiplications for a variable `v` and small integer `n`
+ *         (divided into 1 if `n` is negative), and `v ^ 0.5` to `sqrt(v)`</li>
+ *     <li>`x / c` to `x * (1/c)` for any nonzero finite constant `c`, and `x - c` to
+ *         `x + (-c)`</li>
+ *     <li>combining constants in chains of `+` or of `*`, such as `(x + 2) + 3` to `x + 5`</li>
+ * </ul>
+ */
+public class Simplifier {
+
+    /**
+     * How closely simplified expressions must match the results of the original.
+     */
+    public enum Mode {
+        /**
+         * Bit-identical results, exceptions and side effects for all inputs.
+         */
+        STRICT,
+        /**
+         * Results may differ in rounding, in the sign of zero, and for NaN and infinite values.
+         */
+        FAST
+    }
+
+    /**
+     * Largest magnitude of an integer exponent replaced by multiplications in fast mode.
+     */
+    static final int MAX_POW_CHAIN = 16;
+
+    /**
+     * Return a simplified form of `expr` under the rules of `mode`.  `expr` is not modified.
+     * Nodes of kinds other than Constant, Variable, Operation and Application are left as they
+     * are.
+     */
+    public static Expression simplify(Expression expr, Mode mode) {
+        return Traversal.rebuild(expr, new Traversal.Rebuilder() {
+            @Override
+            public Expression operation(Operation node, Expression left, Expression right) {
+                Expression ans = left == node.left() && right == node.right() ? node
+                        : new Operation(node.op(), left, right);
+                return rewrite(ans, mode);
+            }
+
+            @Override
+            public Expression application(Application node, Expression argument) {
+                if (argument instanceof Constant c && node.func().isPure()) {
+                    return new Constant(node.func().apply(c.value));
+                }
+                return argument == node.argument() ? node
+                        : new Application(node.func(), argument);
+            }
+
+            @Override
+            public Expression leaf(Expression node) {
+                return node;
+            }
+        });
+    }
+
+    /**
+     * Return `node`, whose children are simplified, rewritten until no rule applies at its root.
+     */
+    private static Expression rewrite(Expression node, Mode mode) {
+        while (node instanceof Operation) {
+            Expression next = rewriteOnce((Operation) node, mode == Mode.FAST);
+            if (next == node) {
+                break;
+            }
+            node = next;
+        }
+        return node;
+    }
+
+    /**
+     * Return the result of applying one rule to `node`, or `node` itself if none applies.
+     */
+    private static Expression rewriteOnce(Operation node, boolean fast) {
+        Operator op = node.op();
+        Expression left = node.left();
+        Expression right = node.right();
+        Double l = left instanceof Constant c ? c.value : null;
+        Double r = right instanceof Constant c ? c.value : null;
+
+        if (l != null && r != null) {
+            return new Constant(op.operate(l, r));
+        }
+        if (op == Operator.ADD) {
+            if (isBits(r, -0.0) || fast && is(r, 0)) {
+                return left;
+            }
+            if (isBits(l, -0.0) || fast && is(l, 0)) {
+                return right;
+            }
+            if (fast) {
+                return combine(node);
+            }
+        } else if (op == Operator.SUBTRACT) {
+            if (isBits(r, 0.0) || fast && is(r, 0)) {
+                return left;
+            }
+            if (fast && r != null) {
+                return new Operation(Operator.ADD, left, new Constant(-r));
+            }
+            if (fast && left.equals(right) && LetExpression.pure(left)) {
+                return new Constant(0);
+            }
+        } else if (op == Operator.MULTIPLY) {
+            if (is(r, 1)) {
+                return left;
+            }
+            if (is(l, 1)) {
+                return right;
+            }
+            if (fast && (is(r, 0) && LetExpression.pure(left)
+                    || is(l, 0) && LetExpression.pure(right))) {
+                return new Constant(0);
+            }
+            if (fast) {
+                return combine(node);
+            }
+        } else if (op == Operator.DIVIDE) {
+            if (is(r, 1)) {
+                return left;
+            }
+            if (r != null && (isPowerOfTwo(r) || fast && r != 0 && Double.isFinite(1 / r))) {
+                return new Operation(Operator.MULTIPLY, left, new Constant(1 / r));
+            }
+            if (fast && left.equals(right) && LetExpression.pure(left)) {
+                return new Constant(1);
+            }
+        } else if (op == Operator.POW) {
+            if (is(r, 1)) {
+                return left;
+            }
+            if (left instanceof Variable && is(r, 2)) {
+                return new Operation(Operator.MULTIPLY, left, left);
+            }
+            if (fast && is(r, 0) && LetExpression.pure(left)) {
+                return new Constant(1);
+            }
+            if (fast && left instanceof Variable && r != null) {
+                if (r == 0.5) {
+                    return new Application(UnaryFunction.SQRT, left);
+                }
+                int n = (int) (double) r;
+                if (n == r && n != 0 && Math.abs(n) <= MAX_POW_CHAIN) {
+                    Expression power = power(left, Math.abs(n));
+                    return n > 0 ? power
+                            : new Operation(Operator.DIVIDE, new Constant(1), power);
+                }
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Return `node`, an ADD or MULTIPLY node, with a constant operand merged into a constant
+     * operand of an operand that is a node of the same operator, or `node` itself if there is no
+     * such pair.  For example, `(x + 2) + 3` becomes `x + 5` and `2 * (3 * x)` becomes `6 * x`.
+     */
+    private static Expression combine(Operation node) {
+        Operator op = node.op();
+        Constant constant;
+        Expression other;
+        if (node.right() instanceof Constant c) {
+            constant = c;
+            other = node.left();
+        } else if (node.left() instanceof Constant c) {
+            constant = c;
+            other = node.right();
+        } else {
+            return node;
+        }
+        if (!(other instanceof Operation inner) || inner.op() != op) {
+            return node;
+        }
+        if (inner.right() instanceof Constant d) {
+            return new Operation(op, inner.left(), new Constant(op.operate(d.value,
+                    constant.value)));
+        } else if (inner.left() instanceof Constant d) {
+            return new Operation(op, new Constant(op.operate(d.value, constant.value)),
+                    inner.right());
+        }
+        return node;
+    }
+
+    /**
+     * Return `v` multiplied by itself `n` times (`n >= 1`), by repeated squaring.  Squares share
+     * their operand rather than copying it.
+     */
+    private static Expression power(Expression v, int n) {
+        if (n == 1) {
+            return v;
+        }
+        Expression half = power(v, n / 2);
+        Expression square = new Operation(Operator.MULTIPLY, half, half);
+        return n % 2 == 0 ? square : new Operation(Operator.MULTIPLY, square, v);
+    }
+
+    /**
+     * Return whether `value` is not null and is numerically equal to `target` (so 0 matches both
+     * signed zeros).
+     */
+    private static boolean is(Double value, double target) {
+        return value != null && value == target;
+    }
+
+    /**
+     * Return whether `value` is not null and has exactly the bits of `target`.
+     */
+    private static boolean isBits(Double value, double target) {
+        return value != null
+                && Double.doubleToRawLongBits(value) == Double.doubleToRawLongBits(target);
+    }
+
+    /**
+     * Return whether `c` is a normal power of two (of either sign), so that `1 / c` is exact and
+     * `x / c == x * (1 / c)` for all `x`.
+     */
+    private static boolean isPowerOfTwo(double c) {
+        long bits = Double.doubleToRawLongBits(c);
+        int exponent = (int) (bits >>> 52) & 0x7ff;
+        return exponent != 0 && exponent != 0x7ff && (bits & 0x000fffffffffffffL) == 0;
+    }
+}
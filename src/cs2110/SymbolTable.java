@@ -0,0 +1,76 @@
+package cs2110;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns each distinct variable name a small, dense, non-negative integer id (its "slot") that
+ * stays fixed for the lifetime of the program.  Resolving a name once, when the Variable node that
+ * refers to it is created, lets tables like `ArrayVarTable` look up values by array index instead
+ * of by hashing the name on every evaluation.
+ * <p>
+ * Ids are never reclaimed, so the table grows with the number of distinct names ever used.  All
+ * methods are safe to call from multiple threads.
+ */
+public class SymbolTable {
+
+    /**
+     * The id of each name interned so far.
+     */
+    private static final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+
+    /**
+     * The name with each id, indexed by id.  Only grown while holding the class lock.
+     */
+    private static volatile String[] names = new String[64];
+
+    /**
+     * The number of ids assigned so far.
+     */
+    private static volatile int count = 0;
+
+    /**
+     * Return the id of `name`, assigning it the next unused id if it has none yet.
+     */
+    public static int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (SymbolTable.class) {
+            id = ids.get(name);
+            if (id == null) {
+                id = count;
+                if (id == names.length) {
+                    names = Arrays.copyOf(names, 2 * id);
+                }
+                names[id] = name;
+                count = id + 1;
+                ids.put(name, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Return the id of `name`, or -1 if it has not been interned.
+     */
+    public static int lookup(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Return the name with id `id`.  Requires `id` was returned by `intern()`.
+     */
+    public static String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * Return the number of names interned so far (one more than the largest id).
+     */
+    public static int size() {
+        return count;
+    }
+}
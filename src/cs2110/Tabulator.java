@@ -0,0 +1,158 @@
+package cs2110;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Samples an expression at evenly spaced values of one of its variables (the abscissa) and writes
+ * each abscissa and ordinate pair as a line of text.  The expression is compiled once, with every
+ * other variable bound to its value at construction.  Samples are evaluated and formatted in
+ * chunks of `CHUNK_SIZE` on a ForkJoinPool, while the calling thread writes finished chunks in
+ * order; at most a few chunks per worker are in flight at once, so memory use does not grow with
+ * the number of samples.
+ */
+public class Tabulator {
+
+    /**
+     * Number of samples evaluated and formatted by one task.
+     */
+    static final int CHUNK_SIZE = 8192;
+
+    /**
+     * The compiled expression.  Its parameter 0 is the abscissa.
+     */
+    private final CompiledExpression compiled;
+
+    /**
+     * Argument values for `compiled`, with every parameter but the abscissa bound.
+     */
+    private final double[] bindings;
+
+    /**
+     * Pool that chunks are evaluated on.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Create a tabulator for `expr` with abscissa variable `var`, binding any other variables
+     * `expr` depends on to their values in `vars`, and evaluating on the common ForkJoinPool.
+     * Throws UnboundVariableException if `expr` depends on a variable other than `var` that has
+     * no value in `vars`.
+     */
+    public Tabulator(Expression expr, String var, VarTable vars) throws UnboundVariableException {
+        this(expr, var, vars, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a tabulator for `expr` with abscissa variable `var` that evaluates on `pool`, binding
+     * any other variables `expr` depends on to their values in `vars`.  Throws
+     * UnboundVariableException if `expr` depends on a variable other than `var` that has no value
+     * in `vars`.
+     */
+    public Tabulator(Expression expr, String var, VarTable vars, ForkJoinPool pool)
+            throws UnboundVariableException {
+        List<String> params = new ArrayList<>();
+        params.add(var);
+        for (String name : expr.dependencies()) {
+            if (!name.equals(var)) {
+                params.add(name);
+            }
+        }
+        bindings = new double[params.size()];
+        for (int i = 1; i < params.size(); i++) {
+            bindings[i] = vars.get(params.get(i));
+        }
+        compiled = ExpressionCompiler.compile(expr, params);
+        this.pool = pool;
+    }
+
+    /**
+     * Return the `i`th of `n` evenly spaced abscissa from `lo` to `hi`.  The first is exactly
+     * `lo` and, if `n > 1`, the last is exactly `hi`.  Requires `0 <= i < n`.
+     */
+    public static double abscissa(double lo, double hi, int n, int i) {
+        if (i == 0) {
+            return lo;
+        } else if (i == n - 1) {
+            return hi;
+        }
+        return lo + (hi - lo) * i / (n - 1);
+    }
+
+    /**
+     * Return the value of the expression when the abscissa is `x`.
+     */
+    public double eval(double x) {
+        double[] args = bindings.clone();
+        args[0] = x;
+        return compiled.eval(args);
+    }
+
+    /**
+     * Evaluate the expression at `n` evenly spaced abscissa from `lo` to `hi` and append a line
+     * "x y" to `out` for each abscissa `x` and its ordinate `y`, in order of increasing index.
+     * Numbers are formatted by `DecimalFormatter`, in the layout of `Double.toString()`.  Does
+     * not flush or close `out`.
+     */
+    public void write(double lo, double hi, int n, Appendable out) throws IOException {
+        if (n <= CHUNK_SIZE) {
+            out.append(new Chunk(lo, hi, n, 0, n).compute());
+            return;
+        }
+        int maxInFlight = 2 * pool.getParallelism();
+        Deque<Chunk> inFlight = new ArrayDeque<>(maxInFlight);
+        for (int from = 0; from < n; from += CHUNK_SIZE) {
+            if (inFlight.size() == maxInFlight) {
+                out.append(inFlight.removeFirst().join());
+            }
+            Chunk chunk = new Chunk(lo, hi, n, from, Math.min(n, from + CHUNK_SIZE));
+            pool.execute(chunk);
+            inFlight.addLast(chunk);
+        }
+        while (!inFlight.isEmpty()) {
+            out.append(inFlight.removeFirst().join());
+        }
+    }
+
+    /**
+     * Evaluates and formats the samples with indices in `[from, to)`.
+     */
+    @SuppressWarnings("serial") // Tasks are never serialized.
+    private class Chunk extends RecursiveTask<StringBuilder> {
+
+        private final double lo;
+        private final double hi;
+        private final int n;
+        private final int from;
+        private final int to;
+
+        Chunk(double lo, double hi, int n, int from, int to) {
+            this.lo = lo;
+            this.hi = hi;
+            this.n = n;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected StringBuilder compute() {
+            String newline = System.lineSeparator();
+            double[] args = bindings.clone();
+            StringBuilder lines = new StringBuilder(48 * (to - from));
+            for (int i = from; i < to; i++) {
+                double x = abscissa(lo, hi, n, i);
+                args[0] = x;
+                DecimalFormatter.append(x, lines);
+                lines.append(' ');
+                DecimalFormatter.append(compiled.eval(args), lines);
+                lines.append(newline);
+            }
+            return lines;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package cs2110;
 
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Scanner;
 
 /**
@@ -10,24 +11,76 @@ import java.util.Scanner;
 public abstract class Token {
 
     /**
-     * The substring corresponding to the token.
+     * Whether `tokenizer()` should fall back to the original `java.util.Scanner`-based
+     * implementation instead of `Lexer`.  Set the system property "cs2110.scannerTokenizer" to
+     * "true" to enable it (e.g., for comparing the two implementations).
      */
-    protected final String value;
+    public static final boolean SCANNER_TOKENIZER = Boolean.getBoolean("cs2110.scannerTokenizer");
+
+    /**
+     * The text containing this token.
+     */
+    private final CharSequence source;
+
+    /**
+     * Offsets of the first character of this token and one past its last character in `source`.
+     */
+    private final int start, end;
+
+    /**
+     * The substring corresponding to the token, or null if it has not been requested yet.
+     */
+    private String value;
 
     /**
      * Initialize inherited value field to `value`.
      */
     protected Token(String value) {
+        this(value, 0, value.length());
         this.value = value;
     }
 
+    /**
+     * Initialize this token to span `[start, end)` of `source`.  The text is not copied until
+     * `value()` is called.
+     */
+    protected Token(CharSequence source, int start, int end) {
+        this.source = source;
+        this.start = start;
+        this.end = end;
+    }
+
     /**
      * Return the substring that this token corresponds to.
      */
     public String value() {
+        if (value == null) {
+            value = source.subSequence(start, end).toString();
+        }
         return value;
     }
 
+    /**
+     * Return the text containing this token.  The token itself spans `[start(), end())`.
+     */
+    public CharSequence source() {
+        return source;
+    }
+
+    /**
+     * Return the offset of the first character of this token in `source()`.
+     */
+    public int start() {
+        return start;
+    }
+
+    /**
+     * Return the offset one past the last character of this token in `source()`.
+     */
+    public int end() {
+        return end;
+    }
+
     /**
      * Create a new Token of the appropriate class corresponding to the substring `value`. Valid
      * decimal numbers will yield a Number token; recognized operator symbols will yield an Operator
@@ -35,10 +88,11 @@ public abstract class Token {
      * Variable token.
      */
     public static Token parse(String value) {
+        DecimalParser numbers = new DecimalParser();
         if (Operator.validOperator(value)) {
             return new Operator(value);
-        } else if (Number.validNumber(value)) {
-            return new Number(value);
+        } else if (numbers.parse(value)) {
+            return new Number(value, numbers.value());
         } else if (value.endsWith("()")) {
             return new Function(value);
         } else {
@@ -46,10 +100,68 @@ public abstract class Token {
         }
     }
 
+    /**
+     * Create a new Token of class `kind` spanning `[start, end)` of `source`.  Requires `kind` is
+     * the classification `Lexer` assigns to that span.
+     */
+    static Token of(Lexer.Kind kind, CharSequence source, int start, int end) {
+        return switch (kind) {
+            case OPERATOR -> new Operator(source, start, end);
+            case NUMBER -> {
+                DecimalParser numbers = new DecimalParser();
+                numbers.parse(source, start, end);
+                yield new Number(source, start, end, numbers.value());
+            }
+            case FUNCTION -> new Function(source, start, end);
+            case VARIABLE -> new Variable(source, start, end);
+        };
+    }
+
+    /**
+     * Create a new Number token spanning `[start, end)` of `source`, whose text has already been
+     * parsed to yield `doubleValue`.
+     */
+    static Token number(CharSequence source, int start, int end, double doubleValue) {
+        return new Number(source, start, end, doubleValue);
+    }
+
     /**
      * Return the sequence of whitespace-separated tokens contained in `str`.
      */
     public static Iterable<Token> tokenizer(String str) {
+        if (SCANNER_TOKENIZER) {
+            return scannerTokenizer(str);
+        }
+        return () -> {
+            Lexer lexer = new Lexer(str);
+            return new Iterator<>() {
+                /**
+                 * Whether `lexer` is positioned on a token that has not been returned yet.
+                 */
+                private boolean ready = lexer.next();
+
+                public boolean hasNext() {
+                    return ready;
+                }
+
+                public Token next() {
+                    if (!ready) {
+                        throw new NoSuchElementException();
+                    }
+                    Token token = lexer.token();
+                    ready = lexer.next();
+                    return token;
+                }
+            };
+        };
+    }
+
+    /**
+     * Return the sequence of whitespace-separated tokens contained in `str`, as split by a
+     * `java.util.Scanner`.  This is the original implementation of `tokenizer()`, retained for
+     * comparison.
+     */
+    public static Iterable<Token> scannerTokenizer(String str) {
         return new Iterable<>() {
             public Iterator<Token> iterator() {
                 Scanner scanner = new Scanner(str);
@@ -77,6 +189,13 @@ public abstract class Token {
         private Variable(String value) {
             super(value);
         }
+
+        /**
+         * Construct a Variable token whose name spans `[start, end)` of `source`.
+         */
+        private Variable(CharSequence source, int start, int end) {
+            super(source, start, end);
+        }
     }
 
     /**
@@ -92,12 +211,21 @@ public abstract class Token {
             assert value.endsWith("()");
         }
 
+        /**
+         * Construct a Function token spanning `[start, end)` of `source`, which must end with the
+         * suffix "()".
+         */
+        private Function(CharSequence source, int start, int end) {
+            super(source, start, end);
+            assert source.charAt(end - 2) == '(' && source.charAt(end - 1) == ')';
+        }
+
         /**
          * Return the name of the function represented by this token.  The name will not include the
          * "()" suffix.
          */
         public String name() {
-            return value.substring(0, value.length() - 2);
+            return source().subSequence(start(), end() - 2).toString();
         }
     }
 
@@ -107,19 +235,36 @@ public abstract class Token {
     public static class Number extends Token {
 
         /**
-         * Construct a new Number token whose value is represented by `value`.  Requires `value` is
-         * a valid representation of a floating-point number (as determined by `validNumber()`).
+         * The numeric value represented by this token.
          */
-        private Number(String value) {
+        private final double doubleValue;
+
+        /**
+         * Construct a new Number token whose value is represented by `value`, which has already
+         * been parsed to yield `doubleValue`.  Requires `value` is a valid representation of a
+         * floating-point number (as determined by `validNumber()`).
+         */
+        private Number(String value, double doubleValue) {
             super(value);
             assert validNumber(value);
+            this.doubleValue = doubleValue;
+        }
+
+        /**
+         * Construct a new Number token spanning `[start, end)` of `source`, which has already been
+         * parsed to yield `doubleValue`.
+         */
+        private Number(CharSequence source, int start, int end, double doubleValue) {
+            super(source, start, end);
+            assert DecimalParser.isNumber(source, start, end);
+            this.doubleValue = doubleValue;
         }
 
         /**
          * Return the numeric value represented by this token, in double precision.
          */
         public double doubleValue() {
-            return Double.parseDouble(value);
+            return doubleValue;
         }
 
         /**
@@ -127,12 +272,7 @@ public abstract class Token {
          * `Double.valueOf()`).
          */
         public static boolean validNumber(String value) {
-            try {
-                Double.parseDouble(value);
-                return true;
-            } catch (NumberFormatException e) {
-                return false;
-            }
+            return DecimalParser.isNumber(value, 0, value.length());
         }
     }
 
@@ -150,11 +290,20 @@ public abstract class Token {
             assert validOperator(value);
         }
 
+        /**
+         * Construct an Operator token spanning the single character at `start` in `source`, which
+         * must be a valid operator symbol.
+         */
+        private Operator(CharSequence source, int start, int end) {
+            super(source, start, end);
+            assert end - start == 1 && Lexer.isOperatorChar(source.charAt(start));
+        }
+
         /**
          * Return the operator represented by this token.
          */
         public cs2110.Operator opValue() {
-            return cs2110.Operator.fromString(value);
+            return cs2110.Operator.fromSymbol(source().charAt(start()));
         }
 
         /**
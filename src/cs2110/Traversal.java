@@ -0,0 +1,393 @@
+package cs2110;
+
+import java.io.IOException;
+
+/**
+ * Explicit-stack implementations of the operations on expression trees, which work on trees of any
+ * depth without risking a StackOverflowError.  Generated formulas with hundreds of thousands of
+ * chained operators produce trees far deeper than the JVM's call stack allows.
+ * <p>
+ * Operation and Application nodes only use these for trees deeper than `RECURSION_LIMIT`; since
+ * every node knows its depth, shallower trees are handled by ordinary recursion, which the JIT
+ * compiles well, and so are not slowed down.  The stacks are arrays sized by the root's `depth()`,
+ * so they never need to grow.  Nodes of other kinds are treated as leaves and handled by their own
+ * methods.
+ * <p>
+ * Passes over whole trees, such as simplifying, inlining and compiling them, are written against
+ * `walk()` (for passes that emit something for each node in postorder) or `rebuild()` (for passes
+ * that build a new tree bottom-up), and so are also safe for trees of any depth.
+ */
+final class Traversal {
+
+    /**
+     * Largest tree depth handled by recursion, small enough to be safe on any thread's stack.
+     */
+    static final int RECURSION_LIMIT = 512;
+
+    /**
+     * Receives the nodes of a tree in the order of `walk()`.
+     */
+    interface Visitor {
+
+        /**
+         * Called for each Operation and Application before any of its children.  Does nothing by
+         * default.
+         */
+        default void enter(Expression node) {
+        }
+
+        /**
+         * Called for each node after all of its children (if any), i.e. in postorder.
+         */
+        void exit(Expression node);
+    }
+
+    /**
+     * Computes the results of a bottom-up pass over a tree, such as a rewrite, from the results for
+     * each node's children.  See `rebuild()`.
+     */
+    interface Rebuilder {
+
+        /**
+         * Return the result for `node` if it is already known, so that its children need not be
+         * visited, or null otherwise.  Returns null by default.
+         */
+        default Expression known(Expression node) {
+            return null;
+        }
+
+        /**
+         * Return the result for `node` given the results for its children.
+         */
+        Expression operation(Operation node, Expression left, Expression right);
+
+        /**
+         * Return the result for `node` given the result for its argument.
+         */
+        Expression application(Application node, Expression argument);
+
+        /**
+         * Return the result for `node`, which is neither an Operation nor an Application.
+         */
+        Expression leaf(Expression node);
+    }
+
+    /**
+     * Visit the nodes of `expr`, calling `visitor.enter()` for each Operation and Application on
+     * the way down and `visitor.exit()` for every node in postorder, left operands first.
+     */
+    static void walk(Expression expr, Visitor visitor) {
+        int n = expr.depth() + 1;
+        Expression[] nodes = new Expression[n];
+        int[] visited = new int[n];
+        int sp = 0;
+        nodes[sp++] = expr;
+        while (sp > 0) {
+            Expression node = nodes[sp - 1];
+            if (node instanceof Operation op) {
+                int v = visited[sp - 1]++;
+                if (v == 0) {
+                    visitor.enter(node);
+                }
+                if (v < 2) {
+                    nodes[sp] = v == 0 ? op.left() : op.right();
+                    visited[sp++] = 0;
+                } else {
+                    sp--;
+                    visitor.exit(node);
+                }
+            } else if (node instanceof Application app) {
+                if (visited[sp - 1]++ == 0) {
+                    visitor.enter(node);
+                    nodes[sp] = app.argument();
+                    visited[sp++] = 0;
+                } else {
+                    sp--;
+                    visitor.exit(node);
+                }
+            } else {
+                sp--;
+                visitor.exit(node);
+            }
+        }
+    }
+
+    /**
+     * Return the result of `rebuilder` for `expr`, computing the results for the children of each
+     * node before the node itself, left operands first, unless `rebuilder.known()` gives it.
+     */
+    static Expression rebuild(Expression expr, Rebuilder rebuilder) {
+        int n = expr.depth() + 1;
+        Expression[] nodes = new Expression[n];
+        int[] visited = new int[n];
+        Expression[] results = new Expression[n];
+        int sp = 0;
+        int rp = 0;
+        nodes[sp++] = expr;
+        while (sp > 0) {
+            Expression node = nodes[sp - 1];
+            if (visited[sp - 1] == 0) {
+                Expression known = rebuilder.known(node);
+                if (known != null) {
+                    sp--;
+                    results[rp++] = known;
+                    continue;
+                }
+            }
+            if (node instanceof Operation op) {
+                int v = visited[sp - 1]++;
+                if (v < 2) {
+                    nodes[sp] = v == 0 ? op.left() : op.right();
+                    visited[sp++] = 0;
+                } else {
+                    sp--;
+                    rp--;
+                    results[rp - 1] = rebuilder.operation(op, results[rp - 1], results[rp]);
+                    results[rp] = null;
+                }
+            } else if (node instanceof Application app) {
+                if (visited[sp - 1]++ == 0) {
+                    nodes[sp] = app.argument();
+                    visited[sp++] = 0;
+                } else {
+                    sp--;
+                    results[rp - 1] = rebuilder.application(app, results[rp - 1]);
+                }
+            } else {
+                sp--;
+                results[rp++] = rebuilder.leaf(node);
+            }
+        }
+        return results[0];
+    }
+
+    /**
+     * Return the value of `expr` given `vars`, evaluating operands in the same order (and so
+     * throwing the same exception) as recursive evaluation.
+     */
+    static double eval(Expression expr, VarTable vars) throws UnboundVariableException {
+        int n = expr.depth() + 1;
+        Expression[] nodes = new Expression[n];
+        // How many children of each node on `nodes` have been visited.
+        int[] visited = new int[n];
+        double[] values = new double[n];
+        int sp = 0;
+        int vp = 0;
+        nodes[sp++] = expr;
+        while (sp > 0) {
+            Expression node = nodes[sp - 1];
+            if (node instanceof Operation op) {
+                int v = visited[sp - 1]++;
+                if (v < 2) {
+                    nodes[sp] = v == 0 ? op.left() : op.right();
+                    visited[sp++] = 0;
+                } else {
+                    sp--;
+                    vp--;
+                    values[vp - 1] = op.op().operate(values[vp - 1], values[vp]);
+                }
+            } else if (node instanceof Application app) {
+                if (visited[sp - 1]++ == 0) {
+                    nodes[sp] = app.argument();
+                    visited[sp++] = 0;
+                } else {
+                    sp--;
+                    values[vp - 1] = app.func().apply(values[vp - 1]);
+                }
+            } else {
+                sp--;
+                values[vp++] = node.eval(vars);
+            }
+        }
+        return values[0];
+    }
+
+    /**
+     * Return `expr` optimized with `vars`, as its `optimize()` method specifies.
+     */
+    static Expression optimize(Expression expr, VarTable vars) {
+        int n = expr.depth() + 1;
+        Expression[] nodes = new Expression[n];
+        int[] visited = new int[n];
+        Expression[] results = new Expression[n];
+        int sp = 0;
+        int rp = 0;
+        nodes[sp++] = expr;
+        while (sp > 0) {
+            Expression node = nodes[sp - 1];
+            if (node instanceof Operation op) {
+                int v = visited[sp - 1]++;
+                if (v < 2) {
+                    nodes[sp] = v == 0 ? op.left() : op.right();
+                    visited[sp++] = 0;
+                } else {
+                    sp--;
+                    rp--;
+                    results[rp - 1] = op.fold(results[rp - 1], results[rp]);
+                    results[rp] = null;
+                }
+            } else if (node instanceof Application app) {
+                if (visited[sp - 1]++ == 0) {
+                    nodes[sp] = app.argument();
+                    visited[sp++] = 0;
+                } else {
+                    sp--;
+                    results[rp - 1] = app.fold(results[rp - 1], vars);
+                }
+            } else {
+                sp--;
+                results[rp++] = node.optimize(vars);
+            }
+        }
+        return results[0];
+    }
+
+    /**
+     * Return whether `a` and `b` are equal as defined by Operation and Application, comparing
+     * nodes of other kinds with their own `equals()`.
+     */
+    static boolean equal(Expression a, Expression b) {
+        // Pairs of nodes still to compare; there is at most one pending pair per level of `a`.
+        int n = 2 * (a.depth() + 1);
+        Expression[] pairs = new Expression[n];
+        int sp = 0;
+        pairs[sp++] = a;
+        pairs[sp++] = b;
+        while (sp > 0) {
+            Expression y = pairs[--sp];
+            Expression x = pairs[--sp];
+            if (x == y) {
+                continue;
+            } else if (x instanceof Operation ox) {
+                if (!(y instanceof Operation oy) || ox.hashCode() != oy.hashCode()
+                        || !ox.op().equals(oy.op())) {
+                    return false;
+                }
+                pairs[sp++] = ox.right();
+                pairs[sp++] = oy.right();
+                pairs[sp++] = ox.left();
+                pairs[sp++] = oy.left();
+            } else if (x instanceof Application ax) {
+                if (!(y instanceof Application ay) || ax.hashCode() != ay.hashCode()
+                        || !ax.func().equals(ay.func())) {
+                    return false;
+                }
+                pairs[sp++] = ax.argument();
+                pairs[sp++] = ay.argument();
+            } else if (!x.equals(y)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the infix representation of `expr`, as specified by `Expression.infixString()`.
+     * Takes time linear in the length of the result.
+     */
+    static String infixString(Expression expr) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            writeInfix(expr, sb);
+        } catch (IOException e) {
+            // A StringBuilder does not throw.
+            throw new IllegalStateException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Return the postfix representation of `expr`, as specified by
+     * `Expression.postfixString()`.  Takes time linear in the length of the result.
+     */
+    static String postfixString(Expression expr) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            writePostfix(expr, sb);
+        } catch (IOException e) {
+            // A StringBuilder does not throw.
+            throw new IllegalStateException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Append the infix representation of `expr` to `out`.  Throws IOException if `out` does.
+     */
+    static void writeInfix(Expression expr, Appendable out) throws IOException {
+        int n = expr.depth() + 1;
+        Expression[] nodes = new Expression[n];
+        int[] visited = new int[n];
+        int sp = 0;
+        nodes[sp++] = expr;
+        while (sp > 0) {
+            Expression node = nodes[sp - 1];
+            if (node instanceof Operation op) {
+                int v = visited[sp - 1]++;
+                if (v == 0) {
+                    out.append('(');
+                    nodes[sp] = op.left();
+                    visited[sp++] = 0;
+                } else if (v == 1) {
+                    out.append(' ').append(op.op().symbol()).append(' ');
+                    nodes[sp] = op.right();
+                    visited[sp++] = 0;
+                } else {
+                    out.append(')');
+                    sp--;
+                }
+            } else if (node instanceof Application app) {
+                if (visited[sp - 1]++ == 0) {
+                    out.append(app.func().name()).append('(');
+                    nodes[sp] = app.argument();
+                    visited[sp++] = 0;
+                } else {
+                    out.append(')');
+                    sp--;
+                }
+            } else {
+                node.writeInfix(out);
+                sp--;
+            }
+        }
+    }
+
+    /**
+     * Append the postfix representation of `expr` to `out`.  Throws IOException if `out` does.
+     */
+    static void writePostfix(Expression expr, Appendable out) throws IOException {
+        int n = expr.depth() + 1;
+        Expression[] nodes = new Expression[n];
+        int[] visited = new int[n];
+        int sp = 0;
+        nodes[sp++] = expr;
+        while (sp > 0) {
+            Expression node = nodes[sp - 1];
+            if (node instanceof Operation op) {
+                int v = visited[sp - 1]++;
+                if (v == 0) {
+                    nodes[sp] = op.left();
+                    visited[sp++] = 0;
+                } else if (v == 1) {
+                    out.append(' ');
+                    nodes[sp] = op.right();
+                    visited[sp++] = 0;
+                } else {
+                    out.append(' ').append(op.op().symbol());
+                    sp--;
+                }
+            } else if (node instanceof Application app) {
+                if (visited[sp - 1]++ == 0) {
+                    nodes[sp] = app.argument();
+                    visited[sp++] = 0;
+                } else {
+                    out.append(' ').append(app.func().name()).append("()");
+                    sp--;
+                }
+            } else {
+                node.writePostfix(out);
+                sp--;
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package cs2110;
 
+import java.util.List;
 import java.util.Map;
 import java.util.function.DoubleUnaryOperator;
 
@@ -18,9 +19,59 @@ public class UnaryFunction {
      */
     private final DoubleUnaryOperator f;
 
+    /**
+     * The derivative of `f`, or null if it is not known.
+     */
+    private final DoubleUnaryOperator derivative;
+
+    /**
+     * The expression this function evaluates, in terms of the variable `param`, or null if this
+     * function is not defined by an expression.
+     */
+    private final Expression body;
+
+    /**
+     * The variable in `body` that is bound to this function's argument, or null if `body` is null.
+     */
+    private final String param;
+
+    /**
+     * Whether applying this function has no effects besides computing its result (which depends
+     * only on the argument).
+     */
+    private final boolean pure;
+
     public UnaryFunction(String name, DoubleUnaryOperator f) {
+        this(name, f, false);
+    }
+
+    /**
+     * Create a function named `name` that computes `f`, which is pure (has no side effects, and
+     * its result depends only on its argument) if `pure` is true.  Optimizations such as
+     * `LetExpression` may evaluate pure functions fewer times than they are applied.
+     */
+    public UnaryFunction(String name, DoubleUnaryOperator f, boolean pure) {
+        this(name, f, null, null, null, pure);
+    }
+
+    /**
+     * Create a function named `name` that computes `f`, whose derivative is computed by
+     * `derivative`, and which is pure if `pure` is true.  Expressions applying such a function can
+     * be differentiated by `Expression.evalWithGradient()`.
+     */
+    public UnaryFunction(String name, DoubleUnaryOperator f, DoubleUnaryOperator derivative,
+            boolean pure) {
+        this(name, f, derivative, null, null, pure);
+    }
+
+    private UnaryFunction(String name, DoubleUnaryOperator f, DoubleUnaryOperator derivative,
+            Expression body, String param, boolean pure) {
         this.name = name;
         this.f = f;
+        this.derivative = derivative;
+        this.body = body;
+        this.param = param;
+        this.pure = pure;
     }
 
     /**
@@ -30,6 +81,38 @@ public class UnaryFunction {
         return f.applyAsDouble(x);
     }
 
+    /**
+     * Set `results[i]` to this function evaluated for the argument value `args[i]`, for each `i`
+     * in `[0, n)`.  `results` may be the same array as `args`.
+     */
+    public void apply(double[] args, double[] results, int n) {
+        for (int i = 0; i < n; i++) {
+            results[i] = f.applyAsDouble(args[i]);
+        }
+    }
+
+    /**
+     * Return the derivative of this function at the argument value `x`.  Throws
+     * UnsupportedOperationException if this function is not `isDifferentiable()`.
+     */
+    public double derivative(double x) {
+        if (derivative == null) {
+            throw new UnsupportedOperationException("Function '" + name
+                    + "' has no derivative.");
+        }
+        return derivative.applyAsDouble(x);
+    }
+
+    /**
+     * Return whether the derivative of this function is known: it was given one when created,
+     * or was created by `fromExpression()` from a body that only applies differentiable functions
+     * to arguments depending on the parameter (and only uses the operators defined by
+     * `Operator`).
+     */
+    public boolean isDifferentiable() {
+        return derivative != null;
+    }
+
     /**
      * Return this function's name.  Does not include the "()" suffix that would be appended in an
      * expression context.
@@ -38,30 +121,100 @@ public class UnaryFunction {
         return name;
     }
 
+    /**
+     * Return the expression this function evaluates with its argument bound to `param()`, or null
+     * if this function was not created by `fromExpression()`.
+     */
+    public Expression body() {
+        return body;
+    }
+
+    /**
+     * Return the name of the variable in `body()` bound to this function's argument, or null if
+     * this function was not created by `fromExpression()`.
+     */
+    public String param() {
+        return param;
+    }
+
+    /**
+     * Return whether this function is pure: whether applying it has no side effects and gives a
+     * result that depends only on its argument.
+     */
+    public boolean isPure() {
+        return pure;
+    }
+
     /**
      * Create a UnaryFunction with name `name` that, when applied, will evaluate `expr`, with its
      * argument value bound to the variable `param`.  Requires that expr contain at most one
      * variable name (which must be `param`).
+     * <p>
+     * The optimized body is compiled with `param` as its only parameter, so applying the function
+     * passes the argument straight to generated code without allocating a variable table.  The
+     * body is also kept (see `body()`) so that `Inliner` can substitute it at call sites, and
+     * the function's derivative is that of the body with respect to `param`, which is prepared
+     * once here, so it is differentiable (see `isDifferentiable()`) if every function the body
+     * applies to an argument depending on `param` is.
      */
     public static UnaryFunction fromExpression(String name, Expression expr, String param) {
         Expression opt = expr.optimize(MapVarTable.empty());
-        return new UnaryFunction(name, x -> {
-            try {
-                return opt.eval(MapVarTable.of(param, x));
-            } catch (UnboundVariableException e) {
-                throw new RuntimeException(e);
-            }
-        });
+        CompiledExpression compiled = ExpressionCompiler.compile(opt, List.of(param));
+        return new UnaryFunction(name, compiled::eval, DualEvaluator.derivative(opt, param), opt,
+                param, LetExpression.pure(opt));
     }
 
-    /* Define some common math functions for convenience */
-    public static final UnaryFunction ABS = new UnaryFunction("abs", Math::abs);
-    public static final UnaryFunction SQRT = new UnaryFunction("sqrt", Math::sqrt);
-    public static final UnaryFunction EXP = new UnaryFunction("exp", Math::exp);
-    public static final UnaryFunction LOG = new UnaryFunction("log", Math::log);
-    public static final UnaryFunction SIN = new UnaryFunction("sin", Math::sin);
-    public static final UnaryFunction COS = new UnaryFunction("cos", Math::cos);
-    public static final UnaryFunction TAN = new UnaryFunction("tan", Math::tan);
+    /* Define some common math functions for convenience.  Each overrides the array form of
+     * `apply()` with its `ArrayKernels` loop, which uses the Vector API when it is available. */
+    public static final UnaryFunction ABS = new UnaryFunction("abs", Math::abs,
+            Math::signum, true) {
+        @Override
+        public void apply(double[] args, double[] results, int n) {
+            ArrayKernels.DEFAULT.abs(args, results, n);
+        }
+    };
+    public static final UnaryFunction SQRT = new UnaryFunction("sqrt", Math::sqrt,
+            x -> 0.5 / Math.sqrt(x), true) {
+        @Override
+        public void apply(double[] args, double[] results, int n) {
+            ArrayKernels.DEFAULT.sqrt(args, results, n);
+        }
+    };
+    public static final UnaryFunction EXP = new UnaryFunction("exp", Math::exp,
+            Math::exp, true) {
+        @Override
+        public void apply(double[] args, double[] results, int n) {
+            ArrayKernels.DEFAULT.exp(args, results, n);
+        }
+    };
+    public static final UnaryFunction LOG = new UnaryFunction("log", Math::log,
+            x -> 1 / x, true) {
+        @Override
+        public void apply(double[] args, double[] results, int n) {
+            ArrayKernels.DEFAULT.log(args, results, n);
+        }
+    };
+    public static final UnaryFunction SIN = new UnaryFunction("sin", Math::sin,
+            Math::cos, true) {
+        @Override
+        public void apply(double[] args, double[] results, int n) {
+            ArrayKernels.DEFAULT.sin(args, results, n);
+        }
+    };
+    public static final UnaryFunction COS = new UnaryFunction("cos", Math::cos,
+            x -> -Math.sin(x), true) {
+        @Override
+        public void apply(double[] args, double[] results, int n) {
+            ArrayKernels.DEFAULT.cos(args, results, n);
+        }
+    };
+    public static final UnaryFunction TAN = new UnaryFunction("tan", Math::tan,
+            x -> 1 / (Math.cos(x) * Math.cos(x)), true) {
+        @Override
+        public void apply(double[] args, double[] results, int n) {
+            ArrayKernels.DEFAULT.tan(args, results, n);
+        }
+    };
 
     /**
      * Return a collection of core mathematical functions, each mapped to their name in
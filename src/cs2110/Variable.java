@@ -1,6 +1,6 @@
 package cs2110;
 
-import java.util.HashSet;
+import java.io.IOException;
 import java.util.Set;
 
 /**
@@ -8,23 +8,38 @@ import java.util.Set;
  */
 public class Variable implements Expression {
 
-    private static int count = 0;
-    String name;
+    final String name;
+
+    /**
+     * The `SymbolTable` id of `name`, resolved when this node is created.
+     */
+    final int id;
+
+    /**
+     * The set containing only `name`, as returned by `dependencies()`.
+     */
+    private final DependencySet dependencies;
 
     /**
      * Creates a variable node with the name `name`.
      */
     public Variable(String name) {
         this.name = name;
+        id = SymbolTable.intern(name);
+        dependencies = DependencySet.of(id);
     }
 
     /**
      * Return the value of a Variable object if it exists in VarTable `vars`. Throws
      * UnboundVariableExpression if this expression contains a variable whose value is not in
-     * `vars`. A call to this function does not count as an `operation`.
+     * `vars`. A call to this function does not count as an `operation`. When `vars` is an
+     * ArrayVarTable, the value is loaded by this variable's id without hashing its name.
      */
     @Override
     public double eval(VarTable vars) throws UnboundVariableException {
+        if (vars instanceof ArrayVarTable) {
+            return ((ArrayVarTable) vars).get(id);
+        }
         return vars.get(name);
     }
 
@@ -34,7 +49,15 @@ public class Variable implements Expression {
      */
     @Override
     public int opCount() {
-        return count;
+        return 0;
+    }
+
+    /**
+     * A Variable is a leaf, with depth 1.
+     */
+    @Override
+    public int depth() {
+        return 1;
     }
 
     /**
@@ -55,30 +78,43 @@ public class Variable implements Expression {
         return name;
     }
 
+    @Override
+    public void writeInfix(Appendable out) throws IOException {
+        out.append(name);
+    }
+
+    @Override
+    public void writePostfix(Appendable out) throws IOException {
+        out.append(name);
+    }
+
     /**
      * Returns an Expression containing the optimized Variable object. If the Variable object has an
      * assigned value within the provided Variable Table, then optimize() will return a Constant
-     * object representing that value. Otherwise, it will optimize to itself.
+     * object representing that value. Otherwise, it will optimize to itself.  Whether the variable
+     * is bound is checked with `contains()`, so no exception is thrown and caught.
      */
     @Override
     public Expression optimize(VarTable vars) {
+        if (!vars.contains(name)) {
+            return this;
+        }
         try {
             return new Constant(vars.get(name));
         } catch (UnboundVariableException e) {
-            return this;
+            // `vars` was just found to contain `name`.
+            throw new IllegalStateException(e);
         }
     }
 
 
     /**
      * Returns a Set containing all the Variable objects that a formula depends on. A Variable node
-     * will depend only on itself.
+     * will depend only on itself. The set is created once, with this node, and is not modifiable.
      */
     @Override
     public Set<String> dependencies() {
-        Set<String> deps = new HashSet<String>();
-        deps.add(name);
-        return deps;
+        return dependencies;
     }
 
     /**
@@ -93,4 +129,12 @@ public class Variable implements Expression {
         }
         return false;
     }
+
+    /**
+     * Return a hash code consistent with `equals()`: that of the variable's name.
+     */
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
 }
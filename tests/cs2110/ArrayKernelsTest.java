@@ -0,0 +1,85 @@
+package cs2110;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ArrayKernelsTest {
+
+    /**
+     * Assert that `actual` is within 2 units in the last place of `expected`, or that both are
+     * NaN.
+     */
+    private static void assertClose(double expected, double actual) {
+        if (Double.isNaN(expected)) {
+            assertTrue(Double.isNaN(actual));
+        } else {
+            assertEquals(expected, actual, 2 * Math.ulp(expected));
+        }
+    }
+
+    @Test
+    @DisplayName("The Vector API kernels should be used exactly when the incubator module is " +
+            "present and they are on the class path")
+    void testFallback() {
+        boolean module = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+        boolean compiled;
+        try {
+            Class.forName("cs2110.VectorKernels", false, ArrayKernels.class.getClassLoader());
+            compiled = true;
+        } catch (ClassNotFoundException e) {
+            compiled = false;
+        }
+        assertEquals(module && compiled, ArrayKernels.DEFAULT != ArrayKernels.SCALAR);
+        assertInstanceOf(ScalarKernels.class, ArrayKernels.SCALAR);
+    }
+
+    @Test
+    @DisplayName("Array forms of the standard operators and functions should match their scalar " +
+            "forms for every length, including the elements after the last whole vector")
+    void testKernels() {
+        Random rng = new Random(2110);
+        List<Operator> ops = List.of(Operator.ADD, Operator.SUBTRACT, Operator.MULTIPLY,
+                Operator.DIVIDE, Operator.POW);
+        List<UnaryFunction> exact = List.of(UnaryFunction.ABS, UnaryFunction.SQRT);
+        List<UnaryFunction> approximate = List.of(UnaryFunction.EXP, UnaryFunction.LOG,
+                UnaryFunction.SIN, UnaryFunction.COS, UnaryFunction.TAN);
+        for (int n = 0; n <= 40; n++) {
+            double[] a = new double[n + 1];
+            double[] b = new double[n + 1];
+            for (int i = 0; i < n; i++) {
+                a[i] = rng.nextDouble() * 10 - 2;
+                b[i] = rng.nextDouble() * 4 - 2;
+            }
+            a[n] = 42;
+            double[] out = new double[n + 1];
+            for (Operator op : ops) {
+                op.operate(a, b, out, n);
+                for (int i = 0; i < n; i++) {
+                    if (op == Operator.POW) {
+                        assertClose(op.operate(a[i], b[i]), out[i]);
+                    } else {
+                        assertEquals(op.operate(a[i], b[i]), out[i]);
+                    }
+                }
+                assertEquals(0, out[n]);
+            }
+            for (UnaryFunction f : exact) {
+                f.apply(a, out, n);
+                for (int i = 0; i < n; i++) {
+                    assertEquals(f.apply(a[i]), out[i]);
+                }
+            }
+            for (UnaryFunction f : approximate) {
+                f.apply(a, out, n);
+                for (int i = 0; i < n; i++) {
+                    assertClose(f.apply(a[i]), out[i]);
+                }
+                assertEquals(0, out[n]);
+            }
+        }
+    }
+}
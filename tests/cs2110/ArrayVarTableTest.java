@@ -0,0 +1,69 @@
+package cs2110;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ArrayVarTableTest {
+
+    @Test
+    @DisplayName("An ArrayVarTable should support the same operations as a MapVarTable")
+    void testNameOperations() throws UnboundVariableException {
+        ArrayVarTable vars = new ArrayVarTable();
+        assertEquals(0, vars.size());
+        assertFalse(vars.contains("x"));
+        assertThrows(UnboundVariableException.class, () -> vars.get("x"));
+
+        vars.set("x", 1.5);
+        vars.set("y", 2);
+        vars.set("x", 3);
+        assertEquals(2, vars.size());
+        assertEquals(3, vars.get("x"));
+        assertEquals(2, vars.get("y"));
+        assertEquals(Set.of("x", "y"), vars.names());
+
+        vars.unset("x");
+        vars.unset("never seen before");
+        assertEquals(1, vars.size());
+        assertFalse(vars.contains("x"));
+        assertEquals(Set.of("y"), vars.names());
+    }
+
+    @Test
+    @DisplayName("An ArrayVarTable should grow to hold variables with large ids")
+    void testManyVariables() throws UnboundVariableException {
+        ArrayVarTable vars = new ArrayVarTable();
+        for (int i = 0; i < 1000; i++) {
+            vars.set("v" + i, i);
+        }
+        assertEquals(1000, vars.size());
+        assertEquals(999, vars.get("v999"));
+        assertEquals(999, vars.get(SymbolTable.intern("v999")));
+        assertEquals(1000, vars.names().size());
+    }
+
+    @Test
+    @DisplayName("Expressions should evaluate the same with an ArrayVarTable as with a " +
+            "MapVarTable, including reporting unbound variables")
+    void testEval()
+            throws UnboundVariableException, IncompleteRpnException, UndefinedFunctionException {
+        for (String rpn : List.of("x", "x y * x +", "y sqrt() x /")) {
+            Expression tree = RpnParser.parse(rpn, UnaryFunction.mathDefs());
+            Expression program = RpnParser.compile(rpn, UnaryFunction.mathDefs());
+            ArrayVarTable vars = ArrayVarTable.of("x", 2);
+            vars.set("y", 9);
+            VarTable map = MapVarTable.of("x", 2, "y", 9);
+            assertEquals(tree.eval(map), tree.eval(vars));
+            assertEquals(tree.eval(map), program.eval(vars));
+
+            vars.unset("x");
+            UnboundVariableException e = assertThrows(UnboundVariableException.class,
+                    () -> tree.eval(vars));
+            assertEquals("x", e.name());
+            assertThrows(UnboundVariableException.class, () -> program.eval(vars));
+        }
+    }
+}
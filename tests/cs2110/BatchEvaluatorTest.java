@@ -0,0 +1,109 @@
+package cs2110;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class BatchEvaluatorTest {
+
+    /**
+     * Return a column of `n` rows whose value in row `i` is `scale * i + offset`.
+     */
+    private static double[] column(int n, double scale, double offset) {
+        double[] ans = new double[n];
+        for (int i = 0; i < n; i++) {
+            ans[i] = scale * i + offset;
+        }
+        return ans;
+    }
+
+    @Test
+    @DisplayName("Evaluating a batch should give the same result for each row as evaluating " +
+            "that row on its own")
+    void testMatchesEval()
+            throws UnboundVariableException, IncompleteRpnException, UndefinedFunctionException {
+        // Use more rows than fit in one block.
+        int n = 2 * BatchEvaluator.BLOCK_SIZE + 17;
+        Map<String, double[]> columns = Map.of("x", column(n, 0.25, -3), "y", column(n, -1, 7));
+        String[] cases = {"2", "x", "x y * 1 +", "x abs() sqrt() y 2 ^ / x -",
+                "1 x - y x / cos() * exp()"};
+        for (String rpn : cases) {
+            Expression expr = RpnParser.parse(rpn, UnaryFunction.mathDefs());
+            double[] out = new double[n];
+            expr.evalBatch(columns, out);
+            for (int i = 0; i < n; i++) {
+                VarTable vars = MapVarTable.of("x", columns.get("x")[i], "y", columns.get("y")[i]);
+                assertEquals(expr.eval(vars), out[i], rpn + " row " + i);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Rows with a missing input should evaluate to NaN and be flagged in the error " +
+            "mask")
+    void testMissing() throws IncompleteRpnException, UndefinedFunctionException {
+        Expression expr = RpnParser.parse("x 0 ^ y +", Map.of());
+        double[] x = {1, Double.NaN, 3};
+        double[] y = {1, 2, 3};
+        double[] out = new double[3];
+        boolean[] errors = new boolean[3];
+        expr.evalBatch(Map.of("x", x, "y", y), out, errors);
+        assertArrayEquals(new double[]{2, Double.NaN, 4}, out);
+        assertArrayEquals(new boolean[]{false, true, false}, errors);
+
+        expr.evalBatch(Map.of("y", y), out, errors);
+        assertArrayEquals(new double[]{Double.NaN, Double.NaN, Double.NaN}, out);
+        assertArrayEquals(new boolean[]{true, true, true}, errors);
+    }
+
+    @Test
+    @DisplayName("Evaluating a range of rows should only write those rows")
+    void testRange() throws IncompleteRpnException, UndefinedFunctionException {
+        BatchEvaluator evaluator = new BatchEvaluator(RpnParser.compile("x 10 *", Map.of()));
+        double[] out = new double[4];
+        evaluator.eval(Map.of("x", new double[]{1, 2, 3, 4}), out, null, 1, 3);
+        assertArrayEquals(new double[]{0, 20, 30, 0}, out);
+    }
+
+    @Test
+    @DisplayName("A parallel evaluator should give the same results as a sequential one, " +
+            "including for ranges that are not a whole number of blocks")
+    void testParallel() throws IncompleteRpnException, UndefinedFunctionException {
+        int n = 10 * BatchEvaluator.BLOCK_SIZE + 5;
+        double[] x = column(n, 0.5, -100);
+        x[3 * BatchEvaluator.BLOCK_SIZE + 1] = Double.NaN;
+        Map<String, double[]> columns = Map.of("x", x, "y", column(n, 2, 1));
+        BatchEvaluator sequential = new BatchEvaluator(
+                RpnParser.parse("x sin() y * x abs() sqrt() +", UnaryFunction.mathDefs()));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            BatchEvaluator parallel = sequential.parallel(pool, 1);
+            assertTrue(parallel.isParallel());
+            assertFalse(parallel.sequential().isParallel());
+
+            double[] expected = new double[n];
+            boolean[] expectedErrors = new boolean[n];
+            sequential.eval(columns, expected, expectedErrors, 7, n - 3);
+            double[] out = new double[n];
+            boolean[] errors = new boolean[n];
+            parallel.eval(columns, out, errors, 7, n - 3);
+            assertArrayEquals(expected, out);
+            assertArrayEquals(expectedErrors, errors);
+            assertTrue(errors[3 * BatchEvaluator.BLOCK_SIZE + 1]);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Optimizing an expression should not modify it")
+    void testOptimizeDoesNotMutate() throws IncompleteRpnException, UndefinedFunctionException {
+        Expression expr = RpnParser.parse("x 2 3 * + sqrt()", UnaryFunction.mathDefs());
+        Expression opt = expr.optimize(MapVarTable.empty());
+        assertEquals("sqrt((x + (2.0 * 3.0)))", expr.infixString());
+        assertEquals("sqrt((x + 6.0))", opt.infixString());
+    }
+}
@@ -0,0 +1,108 @@
+package cs2110;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class DecimalFormatterTest {
+
+    @Test
+    @DisplayName("Doubles should be formatted in the layout of Double.toString()")
+    void testLayout() {
+        assertEquals("0.0", DecimalFormatter.toString(0.0));
+        assertEquals("-0.0", DecimalFormatter.toString(-0.0));
+        assertEquals("2.0", DecimalFormatter.toString(2));
+        assertEquals("-1.5", DecimalFormatter.toString(-1.5));
+        assertEquals("0.001", DecimalFormatter.toString(0.001));
+        assertEquals("1.0E-4", DecimalFormatter.toString(1e-4));
+        assertEquals("9999999.0", DecimalFormatter.toString(9999999));
+        assertEquals("1.0E7", DecimalFormatter.toString(1e7));
+        assertEquals("1.2345678E7", DecimalFormatter.toString(12345678));
+        assertEquals("0.30000000000000004", DecimalFormatter.toString(0.1 + 0.2));
+        assertEquals("1.7976931348623157E308", DecimalFormatter.toString(Double.MAX_VALUE));
+        assertEquals("4.9E-324", DecimalFormatter.toString(Double.MIN_VALUE));
+        assertEquals("NaN", DecimalFormatter.toString(Double.NaN));
+        assertEquals("-Infinity", DecimalFormatter.toString(Double.NEGATIVE_INFINITY));
+    }
+
+    @Test
+    @DisplayName("Doubles should be formatted with the fewest digits that parse back to the " +
+            "same value, even where Double.toString() uses more")
+    void testShortest() {
+        assertEquals("2.0E23", DecimalFormatter.toString(2.0E23));
+        assertEquals("1.0E23", DecimalFormatter.toString(1.0E23));
+        assertEquals("2.82879384806159E17", DecimalFormatter.toString(2.82879384806159E17));
+
+        Random rng = new Random(2110);
+        for (int i = 0; i < 100_000; i++) {
+            double v = Double.longBitsToDouble(rng.nextLong());
+            if (Double.isNaN(v)) {
+                continue;
+            }
+            String s = DecimalFormatter.toString(v);
+            String expected = Double.toString(v);
+            assertEquals(v, Double.parseDouble(s), s);
+            assertTrue(s.length() <= expected.length(), s + " longer than " + expected);
+            assertEquals(expected.contains("E"), s.contains("E"), s);
+            StringBuilder sb = new StringBuilder("x");
+            DecimalFormatter.append(v, sb);
+            assertEquals("x" + s, sb.toString());
+        }
+    }
+
+    @Test
+    @DisplayName("Appending to a StringBuilder or Writer should not allocate once warmed up, " +
+            "and threads should not share scratch space")
+    void testAllocation() throws Exception {
+        assumeTrue(ManagementFactory.getThreadMXBean()
+                instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported()
+                && threads.isThreadAllocatedMemoryEnabled());
+        int n = 100_000;
+        StringBuilder sb = new StringBuilder(64 * n);
+        StringWriter writer = new StringWriter(64 * n);
+        long allocated = 0;
+        for (int rep = 0; rep < 5; rep++) {
+            sb.setLength(0);
+            writer.getBuffer().setLength(0);
+            long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            for (int i = 0; i < n; i++) {
+                DecimalFormatter.append(i * 0.37, sb);
+                DecimalFormatter.append(i * 1.1e-5, writer);
+            }
+            allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+        }
+        // A buffer per call would be over 100 bytes per call.
+        assertTrue(allocated < n, "Allocated " + allocated + " bytes for " + 2 * n + " calls");
+        assertEquals(DecimalFormatter.toString((n - 1) * 0.37),
+                sb.substring(sb.length() - DecimalFormatter.toString((n - 1) * 0.37).length()));
+
+        Thread[] workers = new Thread[4];
+        boolean[] ok = new boolean[workers.length];
+        for (int t = 0; t < workers.length; t++) {
+            int id = t;
+            workers[t] = new Thread(() -> {
+                boolean same = true;
+                for (int i = 0; i < n; i++) {
+                    double v = (id + 1) * 1.7e-3 * i;
+                    StringBuilder out = new StringBuilder();
+                    DecimalFormatter.append(v, out);
+                    same &= Double.parseDouble(out.toString()) == v;
+                }
+                ok[id] = same;
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertArrayEquals(new boolean[]{true, true, true, true}, ok);
+    }
+}
@@ -0,0 +1,71 @@
+package cs2110;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class DecimalParserTest {
+
+    /**
+     * Assert that `parser` accepts `s` exactly when `Double.parseDouble()` does, and that it
+     * produces the same bits when it does.
+     */
+    private static void assertParsesLikeJava(DecimalParser parser, String s) {
+        Double expected;
+        try {
+            expected = Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            expected = null;
+        }
+        assertEquals(expected != null, parser.parse(s), s);
+        if (expected != null) {
+            assertEquals(Double.doubleToRawLongBits(expected),
+                    Double.doubleToRawLongBits(parser.value()), s);
+        }
+    }
+
+    @Test
+    @DisplayName("The parser should accept the same syntax as Double.parseDouble()")
+    void testSyntax() {
+        DecimalParser parser = new DecimalParser();
+        String[] cases = {"1.5", "-1", "+.5", "1.", ".", "", "-", "1e5", "1e", "1e+", "1E-3d",
+                "2f", "1dd", "NaN", "-NaN", "-Infinity", "Inf", "0x1p3", "0X.8P-1f", "0x1",
+                " 1.5 ", "1 5", "x", "Dough per pizza", "12abc"};
+        for (String s : cases) {
+            assertParsesLikeJava(parser, s);
+        }
+    }
+
+    @Test
+    @DisplayName("The parser should round to the same value as Double.parseDouble(), including " +
+            "near halfway points, subnormals, and overflow")
+    void testRounding() {
+        DecimalParser parser = new DecimalParser();
+        String[] cases = {"0.1", "1e23", "8.41e21", "9007199254740993",
+                "9007199254740993.0000000000001", "2.2250738585072011e-308", "4.9e-324",
+                "2.4703282292062327e-324", "2.4703282292062328e-324", "1.7976931348623157e308",
+                "1.7976931348623159e308", "1e-400", "1e400", "-0", "123456789012345678901234567890",
+                "0.000000000000000000000000000001e30", "18446744073709551615"};
+        for (String s : cases) {
+            assertParsesLikeJava(parser, s);
+        }
+
+        Random rng = new Random(2110);
+        for (int i = 0; i < 10000; i++) {
+            double d = Double.longBitsToDouble(rng.nextLong());
+            assertParsesLikeJava(parser, Double.toString(d));
+            assertParsesLikeJava(parser, String.format("%.25e", d));
+        }
+    }
+
+    @Test
+    @DisplayName("The parser should only parse the requested span of its input")
+    void testSpan() {
+        DecimalParser parser = new DecimalParser();
+        assertTrue(parser.parse("x 2.5 y", 2, 5));
+        assertEquals(2.5, parser.value());
+        assertFalse(parser.parse("x 2.5 y", 0, 3));
+    }
+}
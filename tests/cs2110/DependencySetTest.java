@@ -0,0 +1,183 @@
+package cs2110;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class DependencySetTest {
+
+    @Test
+    @DisplayName("A union should contain the names of both sets, and be one of them if it " +
+            "contains the other")
+    void testUnion() {
+        DependencySet a = DependencySet.of(SymbolTable.intern("depA"));
+        DependencySet b = DependencySet.of(SymbolTable.intern("depB"));
+        DependencySet ab = a.union(b);
+        assertEquals(Set.of("depA", "depB"), ab);
+        assertEquals(2, ab.size());
+        assertTrue(ab.contains("depA"));
+        assertFalse(ab.contains("depC"));
+        assertFalse(ab.contains("never interned anywhere"));
+        assertSame(ab, ab.union(a));
+        assertSame(ab, b.union(ab));
+        assertSame(a, a.union(DependencySet.EMPTY));
+        assertEquals(List.of("depA", "depB"), List.copyOf(ab));
+
+        // Ids in different words.
+        for (int i = 0; i < 200; i++) {
+            SymbolTable.intern("depFill" + i);
+        }
+        DependencySet far = ab.union(DependencySet.of(SymbolTable.intern("depFar")));
+        assertEquals(Set.of("depA", "depB", "depFar"), far);
+        assertEquals(far, DependencySet.of(Set.of("depFar", "depB", "depA")));
+        assertThrows(UnsupportedOperationException.class, () -> far.add("depC"));
+    }
+
+    @Test
+    @DisplayName("Expression nodes should compute their op count and depth once and their " +
+            "dependencies on first use, sharing their children's dependency sets where possible")
+    void testNodeMetadata() throws IncompleteRpnException, UndefinedFunctionException {
+        Expression expr = RpnParser.parse("x y + x * sin() 2 ^", UnaryFunction.mathDefs());
+        assertEquals(4, expr.opCount());
+        assertEquals(5, expr.depth());
+        assertEquals(Set.of("x", "y"), expr.dependencies());
+        assertSame(expr.dependencies(), expr.dependencies());
+
+        Operation pow = (Operation) expr;
+        Application sin = (Application) pow.left();
+        assertSame(sin.argument().dependencies(), expr.dependencies());
+        assertEquals(1, new Constant(2).depth());
+        assertEquals(1, new Variable("x").depth());
+
+        RpnProgram program = RpnProgram.of(expr);
+        assertEquals(4, program.opCount());
+        assertEquals(5, program.depth());
+        assertEquals(expr.dependencies(), program.dependencies());
+    }
+
+    @Test
+    @DisplayName("Unions of sparse and dense sets of ids anywhere in the symbol table should " +
+            "contain exactly the names of both, in order of id")
+    void testRandomUnions() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            names.add("depRandom" + i);
+            SymbolTable.intern("depRandom" + i);
+        }
+        Random rng = new Random(2110);
+        for (int trial = 0; trial < 300; trial++) {
+            TreeSet<Integer> expected = new TreeSet<>();
+            DependencySet set = DependencySet.EMPTY;
+            int parts = 1 + rng.nextInt(6);
+            for (int p = 0; p < parts; p++) {
+                // Alternate between clusters of nearby ids and scattered ones.
+                int start = rng.nextInt(names.size());
+                int spread = rng.nextBoolean() ? 128 : names.size();
+                Set<String> part = new TreeSet<>();
+                for (int k = rng.nextInt(150); k > 0; k--) {
+                    part.add(names.get(Math.min(start + rng.nextInt(spread), names.size() - 1)));
+                }
+                for (String name : part) {
+                    expected.add(SymbolTable.lookup(name));
+                }
+                DependencySet other = DependencySet.of(part);
+                DependencySet union = set.union(other);
+                assertTrue(union.containsAll(set));
+                assertTrue(union.containsAll(other));
+                set = union;
+            }
+            if (expected.isEmpty()) {
+                assertSame(DependencySet.EMPTY, set);
+                continue;
+            }
+            List<String> expectedNames = new ArrayList<>();
+            for (int id : expected) {
+                expectedNames.add(SymbolTable.name(id));
+            }
+            assertEquals(expectedNames, List.copyOf(set));
+            assertEquals(expected.size(), set.size());
+            assertEquals(set, DependencySet.of(Set.copyOf(expectedNames)));
+            assertEquals(Set.copyOf(expectedNames).hashCode(), set.hashCode());
+            for (int id = expected.first() - 70; id < expected.last() + 70; id++) {
+                assertEquals(expected.contains(id), set.containsId(id));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Formulas over variables with high ids should not retain memory " +
+            "proportional to their ids, and Variables with the same name should share a set")
+    void testHighIdMemory() throws IncompleteRpnException, UndefinedFunctionException {
+        String prefix = "depHigh";
+        for (int i = 0; i < 100_000; i++) {
+            SymbolTable.intern(prefix + i);
+        }
+        assertSame(new Variable(prefix + 5).dependencies(),
+                new Variable(prefix + 5).dependencies());
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long before = memory.getHeapMemoryUsage().getUsed();
+        int formulas = 10_000;
+        List<Expression> retained = new ArrayList<>();
+        Random rng = new Random(2110);
+        for (int i = 0; i < formulas; i++) {
+            retained.add(RpnParser.parse(prefix + rng.nextInt(100_000) + " " + prefix
+                    + rng.nextInt(100_000) + " + " + prefix + rng.nextInt(100_000) + " *",
+                    UnaryFunction.mathDefs()));
+        }
+        System.gc();
+        long perFormula = (memory.getHeapMemoryUsage().getUsed() - before) / formulas;
+        assertEquals(3, retained.get(0).dependencies().size(), 1);
+        // Five nodes, their sets, and some parser garbage that survived; a dense bitset from
+        // id 0 would take over 12 KB per set.
+        assertTrue(perFormula < 2_000, "Retained " + perFormula + " bytes per formula");
+    }
+
+    @Test
+    @DisplayName("Building and querying a long chain of operations over distinct variables " +
+            "should take memory and time linear in its length")
+    void testDistinctChain() {
+        int n = 200_000;
+        String prefix = "depChain";
+        Variable[] vars = new Variable[n];
+        for (int i = 0; i < n; i++) {
+            vars[i] = new Variable(prefix + i);
+        }
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long before = memory.getHeapMemoryUsage().getUsed();
+        Expression expr = vars[0];
+        for (int i = 1; i < n; i++) {
+            expr = new Operation(Operator.ADD, expr, vars[i]);
+        }
+        Set<String> deps = expr.dependencies();
+        System.gc();
+        long perNode = (memory.getHeapMemoryUsage().getUsed() - before) / n;
+        assertEquals(n, deps.size());
+        assertTrue(deps.contains(prefix + 0) && deps.contains(prefix + (n - 1)));
+        assertSame(deps, expr.dependencies());
+        // A node and the root's set, a few ids per node; a set at every node would be over
+        // 200 KB per node on average.
+        assertTrue(perNode < 200, "Retained " + perNode + " bytes per node");
+
+        // Querying from the bottom up reuses each set below, and a child equal to its parent
+        // shares its set.
+        Operation sum = new Operation(Operator.MULTIPLY, new Constant(2),
+                new Application(UnaryFunction.SQRT, expr));
+        assertSame(deps, sum.dependencies());
+        assertSame(deps, ((Application) sum.right()).dependencies());
+        Operation inner = (Operation) ((Operation) expr).left();
+        assertEquals(n - 1, inner.dependencies().size());
+        assertFalse(inner.dependencies().contains(prefix + (n - 1)));
+    }
+}
@@ -0,0 +1,124 @@
+package cs2110;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class DualEvaluatorTest {
+
+    /**
+     * Return the result of `evalWithGradient()` for `rpn` at x = `x`, y = `y`, with respect to x
+     * and y.
+     */
+    private static double[] gradient(String rpn, Map<String, UnaryFunction> defs, double x,
+            double y) throws Exception {
+        Expression expr = RpnParser.parse(rpn, defs);
+        return expr.evalWithGradient(MapVarTable.of("x", x, "y", y), "x", "y");
+    }
+
+    @Test
+    @DisplayName("The partials of each operator should follow the rules of differentiation, " +
+            "and the value should be that of `eval()`")
+    void testOperators() throws Exception {
+        Map<String, UnaryFunction> defs = UnaryFunction.mathDefs();
+        assertArrayEquals(new double[]{5, 1, 1}, gradient("x y +", defs, 2, 3));
+        assertArrayEquals(new double[]{-1, 1, -1}, gradient("x y -", defs, 2, 3));
+        assertArrayEquals(new double[]{6, 3, 2}, gradient("x y *", defs, 2, 3));
+        assertArrayEquals(new double[]{0.5, 0.25, -0.125}, gradient("x y /", defs, 2, 4));
+        assertArrayEquals(new double[]{8, 12, 8 * Math.log(2)}, gradient("x y ^", defs, 2, 3));
+        assertArrayEquals(new double[]{27, 0, 27 * Math.log(3)}, gradient("3 y ^", defs, 0, 3));
+
+        // Chain: d/dx (x*y + x^2) / y = (y + 2x) / y.
+        double[] g = gradient("x y * x 2 ^ + y /", defs, 1.5, 0.25);
+        Expression expr = RpnParser.parse("x y * x 2 ^ + y /", defs);
+        assertEquals(expr.eval(MapVarTable.of("x", 1.5, "y", 0.25)), g[0]);
+        assertEquals((0.25 + 3) / 0.25, g[1], 1e-12);
+        assertEquals(-(1.5 * 1.5) / (0.25 * 0.25), g[2], 1e-12);
+
+        // A negative base is fine when the exponent does not vary.
+        assertArrayEquals(new double[]{-8, 12, 0}, gradient("x 3 ^", defs, -2, 0));
+    }
+
+    @Test
+    @DisplayName("Partials through the built-in functions should use their derivatives")
+    void testBuiltins() throws Exception {
+        Map<String, UnaryFunction> defs = UnaryFunction.mathDefs();
+        double x = 0.7;
+        assertEquals(1, gradient("x abs()", defs, x, 0)[1]);
+        assertEquals(-1, gradient("x abs()", defs, -x, 0)[1]);
+        assertEquals(0.5 / Math.sqrt(x), gradient("x sqrt()", defs, x, 0)[1]);
+        assertEquals(Math.exp(x), gradient("x exp()", defs, x, 0)[1]);
+        assertEquals(1 / x, gradient("x log()", defs, x, 0)[1]);
+        assertEquals(Math.cos(x), gradient("x sin()", defs, x, 0)[1]);
+        assertEquals(-Math.sin(x), gradient("x cos()", defs, x, 0)[1]);
+        assertEquals(1 / (Math.cos(x) * Math.cos(x)), gradient("x tan()", defs, x, 0)[1]);
+        assertEquals(2 * Math.cos(2 * x), gradient("x 2 * sin()", defs, x, 0)[1], 1e-15);
+
+        // Constant arguments have zero partials, even where the derivative is infinite.
+        assertArrayEquals(new double[]{0, 0, 0}, gradient("0 sqrt()", defs, x, 0));
+    }
+
+    @Test
+    @DisplayName("Functions defined by expressions, and functions given a derivative, should " +
+            "be differentiable; other functions should only be rejected when a partial needs " +
+            "their derivative")
+    void testUserFunctions() throws Exception {
+        Map<String, UnaryFunction> defs = new HashMap<>(UnaryFunction.mathDefs());
+        defs.put("sq", UnaryFunction.fromExpression("sq", RpnParser.parse("t t *", defs), "t"));
+        defs.put("f", UnaryFunction.fromExpression("f", RpnParser.parse("t sq() sin()", defs),
+                "t"));
+        defs.put("cube", new UnaryFunction("cube", t -> t * t * t, t -> 3 * t * t, true));
+        defs.put("opaque", new UnaryFunction("opaque", t -> t + 1));
+        assertTrue(defs.get("f").isDifferentiable());
+        assertFalse(defs.get("opaque").isDifferentiable());
+
+        // A defined function is differentiable unless its derivative needs one that is not.
+        UnaryFunction g = UnaryFunction.fromExpression("g", RpnParser.parse("t opaque()", defs),
+                "t");
+        assertFalse(g.isDifferentiable());
+        assertThrows(UnsupportedOperationException.class, () -> g.derivative(1));
+        UnaryFunction h = UnaryFunction.fromExpression("h",
+                RpnParser.parse("3 opaque() t cube() *", defs), "t");
+        assertTrue(h.isDifferentiable());
+        assertEquals(4 * 3 * 2 * 2, h.derivative(2));
+        assertEquals(2 * 1.5 * Math.cos(1.5 * 1.5), defs.get("f").derivative(1.5), 1e-15);
+
+        double x = 1.25;
+        assertEquals(2 * x * Math.cos(x * x), gradient("x f()", defs, x, 0)[1], 1e-15);
+        assertEquals(3 * x * x * 2, gradient("x cube() y *", defs, x, 2)[1]);
+        assertArrayEquals(new double[]{4, 0, 0}, gradient("3 opaque()", defs, x, 0));
+        assertThrows(UnsupportedOperationException.class,
+                () -> gradient("x opaque()", defs, x, 0));
+    }
+
+    @Test
+    @DisplayName("Gradients should agree with finite differences, be the same for compiled " +
+            "and let expressions, and work on very deep trees")
+    void testForms() throws Exception {
+        Map<String, UnaryFunction> defs = UnaryFunction.mathDefs();
+        Expression expr = RpnParser.parse("x y * sin() x y * sin() * y exp() / x sqrt() +",
+                defs);
+        VarTable vars = MapVarTable.of("x", 0.9, "y", -0.3);
+        double[] g = expr.evalWithGradient(vars, "y", "z", "x");
+        double h = 1e-6;
+        double dx = (expr.eval(MapVarTable.of("x", 0.9 + h, "y", -0.3))
+                - expr.eval(MapVarTable.of("x", 0.9 - h, "y", -0.3))) / (2 * h);
+        double dy = (expr.eval(MapVarTable.of("x", 0.9, "y", -0.3 + h))
+                - expr.eval(MapVarTable.of("x", 0.9, "y", -0.3 - h))) / (2 * h);
+        assertEquals(dy, g[1], 1e-8);
+        assertEquals(0, g[2]);
+        assertEquals(dx, g[3], 1e-8);
+        assertArrayEquals(g, LetExpression.of(expr).evalWithGradient(vars, "y", "z", "x"));
+        assertArrayEquals(g, RpnProgram.of(expr).evalWithGradient(vars, "y", "z", "x"));
+        assertArrayEquals(new double[]{expr.eval(vars)}, expr.evalWithGradient(vars));
+        assertThrows(UnboundVariableException.class,
+                () -> expr.evalWithGradient(MapVarTable.of("x", 1), "x"));
+
+        Expression deep = TraversalTest.chain(1_000_000);
+        assertArrayEquals(new double[]{1_000_002, 1}, deep.evalWithGradient(
+                MapVarTable.of("x", 2), "x"));
+    }
+}
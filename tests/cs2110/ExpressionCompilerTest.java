@@ -0,0 +1,105 @@
+package cs2110;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ExpressionCompilerTest {
+
+    @Test
+    @DisplayName("A compiled expression should evaluate to the same value as its source, both " +
+            "positionally and with a var table")
+    void testEval()
+            throws UnboundVariableException, IncompleteRpnException, UndefinedFunctionException {
+        Expression expr = RpnParser.parse("x 2 ^ y x * + sqrt() y cos() / 1.5 -",
+                UnaryFunction.mathDefs());
+        CompiledExpression compiled = ExpressionCompiler.compile(expr, List.of("x", "y"));
+        VarTable vars = MapVarTable.of("x", 3, "y", 0.5);
+        assertEquals(expr.eval(vars), compiled.eval(vars));
+        assertEquals(expr.eval(vars), compiled.eval(new double[]{3, 0.5}));
+        assertEquals(expr.infixString(), compiled.infixString());
+        assertEquals(expr.opCount(), compiled.opCount());
+    }
+
+    @Test
+    @DisplayName("A compiled expression should call user-defined functions and operators")
+    void testCustom() {
+        UnaryFunction twice = new UnaryFunction("twice", x -> 2 * x);
+        Operator max = new Operator() {
+            public double operate(double operand1, double operand2) {
+                return Math.max(operand1, operand2);
+            }
+
+            public String symbol() {
+                return "max";
+            }
+        };
+        Expression expr = new Operation(max, new Application(twice, new Variable("x")),
+                new Constant(5));
+        CompiledExpression compiled = ExpressionCompiler.compile(expr, List.of("x"));
+        assertEquals(5, compiled.eval(new double[]{1}));
+        assertEquals(8, compiled.eval(new double[]{4}));
+    }
+
+    @Test
+    @DisplayName("Evaluating a compiled expression with a var table should only require the " +
+            "variables it depends on")
+    void testUnbound() throws UnboundVariableException {
+        Expression expr = new Operation(Operator.ADD, new Variable("x"), new Constant(1));
+        CompiledExpression compiled = ExpressionCompiler.compile(expr, List.of("y", "x"));
+        assertEquals(3, compiled.eval(MapVarTable.of("x", 2)));
+        assertThrows(UnboundVariableException.class, () -> compiled.eval(MapVarTable.of("y", 2)));
+        assertThrows(IllegalArgumentException.class,
+                () -> ExpressionCompiler.compile(expr, List.of("y")));
+    }
+
+    @Test
+    @DisplayName("Expressions too large for one method should still compile and evaluate")
+    void testLarge() throws UnboundVariableException {
+        // Build a balanced sum of 2^15 terms, whose bytecode would exceed the 64 KiB method limit.
+        List<Expression> terms = new ArrayList<>();
+        for (int i = 0; i < 1 << 15; i++) {
+            terms.add(new Operation(Operator.MULTIPLY, new Variable("x"), new Constant(i)));
+        }
+        while (terms.size() > 1) {
+            List<Expression> sums = new ArrayList<>();
+            for (int i = 0; i < terms.size(); i += 2) {
+                sums.add(new Operation(Operator.ADD, terms.get(i), terms.get(i + 1)));
+            }
+            terms = sums;
+        }
+        Expression expr = terms.get(0);
+        CompiledExpression compiled = ExpressionCompiler.compile(expr, List.of("x"));
+        assertEquals(expr.eval(MapVarTable.of("x", 0.5)), compiled.eval(new double[]{0.5}));
+    }
+
+    @Test
+    @DisplayName("A compiled expression with one parameter should evaluate the same way when " +
+            "passed its argument directly")
+    void testUnary()
+            throws UnboundVariableException, IncompleteRpnException, UndefinedFunctionException {
+        Expression expr = RpnParser.parse("z 2 ^ z sin() * 1 z / -", UnaryFunction.mathDefs());
+        CompiledExpression compiled = ExpressionCompiler.compile(expr, List.of("z"));
+        for (double z : new double[]{-3, 0.5, 2, 1e6}) {
+            assertEquals(expr.eval(MapVarTable.of("z", z)), compiled.eval(z));
+            assertEquals(compiled.eval(new double[]{z}), compiled.eval(z));
+        }
+    }
+
+    @Test
+    @DisplayName("A function defined by an expression should evaluate its body with the " +
+            "parameter bound to its argument, including inside other expressions")
+    void testFromExpression()
+            throws UnboundVariableException, IncompleteRpnException, UndefinedFunctionException {
+        Expression body = RpnParser.parse("z z * 1 +", Map.of());
+        UnaryFunction f = UnaryFunction.fromExpression("f", body, "z");
+        assertEquals(10.0, f.apply(3));
+        Expression expr = RpnParser.parse("x f() f()", Map.of("f", f));
+        assertEquals(26.0, expr.eval(MapVarTable.of("x", 2)));
+        assertEquals(26.0, ExpressionCompiler.compile(expr, List.of("x")).eval(2.0));
+    }
+}
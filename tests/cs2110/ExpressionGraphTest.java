@@ -0,0 +1,193 @@
+package cs2110;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ExpressionGraphTest {
+
+    /**
+     * Run the tasks in `tasks` until there are none left.
+     */
+    private static void drain(Queue<Runnable> tasks) {
+        while (!tasks.isEmpty()) {
+            tasks.remove().run();
+        }
+    }
+
+    @Test
+    @DisplayName("An ObservableVarTable should notify listeners of changes only")
+    void testObservableVarTable() throws UnboundVariableException {
+        ObservableVarTable vars = new ObservableVarTable();
+        List<String> changes = new ArrayList<>();
+        ObservableVarTable.Listener listener = id -> changes.add(SymbolTable.name(id));
+        vars.addListener(listener);
+        vars.set("x", 1);
+        vars.set("x", 1);
+        vars.set("y", 2);
+        vars.set("x", -0.0);
+        vars.set("x", 0.0);
+        vars.unset("z");
+        vars.unset("y");
+        assertEquals(List.of("x", "y", "x", "x", "y"), changes);
+        assertEquals(0.0, vars.get("x"));
+        assertEquals(1, vars.size());
+        assertFalse(vars.contains("y"));
+        vars.removeListener(listener);
+        vars.set("x", 5);
+        assertEquals(5, changes.size());
+    }
+
+    @Test
+    @DisplayName("A throwing listener should not stop the others from being notified, and its " +
+            "exception should go to the failure handler rather than out of `set()`")
+    void testFailingListener() throws UnboundVariableException {
+        ObservableVarTable vars = new ObservableVarTable();
+        List<String> changes = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        vars.addListener(id -> {
+            throw new IllegalStateException("first");
+        });
+        vars.addListener(id -> changes.add(SymbolTable.name(id)));
+        vars.addListener(id -> {
+            throw new IllegalArgumentException("third");
+        });
+        vars.setFailureHandler((thread, e) -> {
+            assertSame(Thread.currentThread(), thread);
+            failures.add(e);
+        });
+        vars.set("x", 1);
+        assertEquals(1, vars.get("x"));
+        assertEquals(List.of("x"), changes);
+        assertEquals(2, failures.size());
+        assertEquals("first", failures.get(0).getMessage());
+        assertEquals("third", failures.get(1).getMessage());
+    }
+
+    @Test
+    @DisplayName("Bursts of changes should be coalesced into one batch, recomputing only the " +
+            "expressions depending on changed variables and notifying only changed values")
+    void testBatches() throws Exception {
+        ObservableVarTable vars = new ObservableVarTable();
+        vars.set("x", 1);
+        vars.set("y", 2);
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        ExpressionGraph graph = new ExpressionGraph(vars, tasks::add);
+        List<Double> sums = new ArrayList<>();
+        List<Double> squares = new ArrayList<>();
+        ExpressionGraph.Subscription sum = graph.subscribe(
+                RpnParser.parse("x y +", UnaryFunction.mathDefs()), sums::add);
+        ExpressionGraph.Subscription square = graph.subscribe(
+                RpnParser.parse("y y *", UnaryFunction.mathDefs()), squares::add);
+        assertEquals(1, tasks.size());
+        assertTrue(Double.isNaN(sum.value()));
+        drain(tasks);
+        assertEquals(List.of(3.0), sums);
+        assertEquals(List.of(4.0), squares);
+
+        for (int i = 0; i < 100; i++) {
+            vars.set("x", i);
+        }
+        assertEquals(1, tasks.size());
+        drain(tasks);
+        assertEquals(List.of(3.0, 101.0), sums);
+        assertEquals(List.of(4.0), squares);
+        assertEquals(101, sum.value());
+
+        // A change that leaves the value the same is not pushed.
+        vars.set("x", 98);
+        vars.set("y", 3);
+        drain(tasks);
+        assertEquals(List.of(3.0, 101.0), sums);
+        assertEquals(List.of(4.0, 9.0), squares);
+
+        vars.unset("y");
+        drain(tasks);
+        assertTrue(Double.isNaN(square.value()));
+        assertEquals(3, squares.size());
+
+        square.cancel();
+        vars.set("y", 4);
+        drain(tasks);
+        assertEquals(3, squares.size());
+        assertEquals(102, sum.value());
+
+        // Cancelling again, even after the last subscription to a variable, has no effect.
+        square.cancel();
+        sum.cancel();
+        sum.cancel();
+        vars.set("y", 5);
+        assertTrue(tasks.isEmpty());
+        ExpressionGraph.Subscription twice = graph.subscribe(
+                RpnParser.parse("x 2 *", UnaryFunction.mathDefs()), value -> {});
+        twice.cancel();
+        twice.cancel();
+        drain(tasks);
+        assertTrue(Double.isNaN(twice.value()));
+
+        graph.close();
+        vars.set("x", 0);
+        assertTrue(tasks.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Listeners should see the final values after concurrent updates, and a " +
+            "failing listener should not stop the graph")
+    void testConcurrentUpdates() throws Exception {
+        ObservableVarTable vars = new ObservableVarTable();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (ExpressionGraph graph = new ExpressionGraph(vars, executor)) {
+            int threads = 4;
+            int ticks = 5000;
+            for (int t = 0; t < threads; t++) {
+                vars.set("v" + t, 0);
+            }
+            CountDownLatch done = new CountDownLatch(1);
+            double expected = threads * (double) (ticks - 1);
+            graph.subscribe(RpnParser.parse("v0 v1 + v2 + v3 +", UnaryFunction.mathDefs()),
+                    value -> {
+                        if (value == expected) {
+                            done.countDown();
+                        }
+                    });
+            List<Throwable> failures = new CopyOnWriteArrayList<>();
+            graph.setFailureHandler((thread, e) -> failures.add(e));
+            graph.subscribe(new Variable("v0"), value -> {
+                throw new IllegalStateException("listener failure");
+            });
+
+            List<Thread> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String name = "v" + t;
+                Thread writer = new Thread(() -> {
+                    for (int i = 0; i < ticks; i++) {
+                        vars.set(name, i);
+                    }
+                });
+                writers.add(writer);
+                writer.start();
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertFalse(failures.isEmpty());
+            for (Throwable failure : failures) {
+                assertInstanceOf(IllegalStateException.class, failure);
+                assertEquals("listener failure", failure.getMessage());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package cs2110;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ExpressionInternerTest {
+
+    @Test
+    @DisplayName("Structurally equal expressions should have equal hash codes")
+    void testHashCode() throws IncompleteRpnException, UndefinedFunctionException {
+        Map<String, UnaryFunction> defs = UnaryFunction.mathDefs();
+        String rpn = "x 2 ^ sin() y 0 * +";
+        Expression a = RpnParser.parse(rpn, defs);
+        Expression b = RpnParser.parse(rpn, defs);
+        assertNotSame(a, b);
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertEquals(new Constant(0.0).hashCode(), new Constant(-0.0).hashCode());
+
+        Set<Expression> set = new HashSet<>();
+        set.add(a);
+        assertTrue(set.contains(b));
+        assertFalse(set.contains(RpnParser.parse("x 2 ^ cos() y 0 * +", defs)));
+    }
+
+    @Test
+    @DisplayName("Parsing with an interner should share equal subtrees within and across " +
+            "formulas")
+    void testSharing() throws IncompleteRpnException, UndefinedFunctionException {
+        ExpressionInterner interner = new ExpressionInterner();
+        Map<String, UnaryFunction> defs = UnaryFunction.mathDefs();
+        Operation a = (Operation) RpnParser.parse("B5 B6 * B5 B6 * +", defs, interner);
+        assertSame(a.left(), a.right());
+        Operation b = (Operation) RpnParser.parse("B5 B6 * sqrt() B5 B6 * -", defs, interner);
+        assertSame(a.left(), b.right());
+        assertSame(a.left(), ((Application) b.left()).argument());
+        assertSame(a, RpnParser.parse("B5 B6 * B5 B6 * +", defs, interner));
+        // Distinct nodes: B5, B6, B5*B6, sum, sqrt, difference.
+        assertEquals(6, interner.size());
+        assertEquals(RpnParser.parse("B5 B6 * B5 B6 * +", defs), a);
+    }
+
+    @Test
+    @DisplayName("Interning should keep constants with different bits distinct, even if equal")
+    void testSignedZero() {
+        ExpressionInterner interner = new ExpressionInterner();
+        Expression zero = interner.constant(0.0);
+        Expression negativeZero = interner.constant(-0.0);
+        assertNotSame(zero, negativeZero);
+        assertEquals("-0.0", negativeZero.infixString());
+        assertSame(zero, interner.intern(new Constant(0.0)));
+    }
+
+    @Test
+    @DisplayName("Interning an existing tree should return canonical nodes, reusing the tree's " +
+            "own nodes where they are new")
+    void testIntern() throws IncompleteRpnException, UndefinedFunctionException {
+        ExpressionInterner interner = new ExpressionInterner();
+        Expression tree = RpnParser.parse("x 1 + x 1 + *", Map.of());
+        Expression canonical = interner.intern(tree);
+        assertEquals(tree, canonical);
+        assertSame(((Operation) canonical).left(), ((Operation) canonical).right());
+        assertSame(canonical, interner.intern(RpnParser.parse("x 1 + x 1 + *", Map.of())));
+        assertSame(canonical, interner.intern(canonical));
+    }
+}
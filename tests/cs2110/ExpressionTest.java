@@ -523,6 +523,42 @@ class OperationExpressionTest {
                 new Operation(Operator.ADD, new Variable("x"), new Constant(6)),
                 new Constant(1)), opt);
     }
+
+    /**
+     * Return a balanced tree of additions of depth `depth` whose leaves are `x`, except for the
+     * rightmost, which is `y`.
+     */
+    private static Expression sumTree(int depth, boolean rightmost) {
+        if (depth == 0) {
+            return new Variable(rightmost ? "y" : "x");
+        }
+        return new Operation(Operator.ADD, sumTree(depth - 1, false),
+                sumTree(depth - 1, rightmost));
+    }
+
+    @Test
+    @DisplayName("Optimizing should neither evaluate subtrees nor look up unbound variables, " +
+            "and should not modify the original tree")
+    void testOptimizeWithoutExceptions() throws UnboundVariableException {
+        VarTable vars = new MapVarTable() {
+            @Override
+            public double get(String name) throws UnboundVariableException {
+                assertTrue(contains(name), "looked up unbound " + name);
+                return super.get(name);
+            }
+        };
+        vars.set("x", 1);
+        Expression expr = sumTree(16, true);
+        Expression opt = expr.optimize(vars);
+        assertEquals(16, opt.opCount());
+        assertEquals("(32768.0 + (16384.0 + (8192.0 + (4096.0 + (2048.0 + (1024.0 + (512.0 + " +
+                "(256.0 + (128.0 + (64.0 + (32.0 + (16.0 + (8.0 + (4.0 + (2.0 + (1.0 + y)))))))" +
+                ")))))))))",
+                opt.infixString());
+        vars.set("y", 1);
+        assertEquals(65536.0, expr.eval(vars));
+        assertSame(opt, opt.optimize(MapVarTable.empty()));
+    }
 }
 
 class ApplicationExpressionTest {
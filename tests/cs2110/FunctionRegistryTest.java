@@ -0,0 +1,60 @@
+package cs2110;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class FunctionRegistryTest {
+
+    @Test
+    @DisplayName("Looking up a range of characters should find the function with exactly that " +
+            "name")
+    void testLookup() {
+        FunctionRegistry registry = FunctionRegistry.math();
+        String s = "x sqrt() 2 ^ sq() abs()";
+        assertSame(UnaryFunction.SQRT, registry.lookup(s, 2, 6));
+        assertSame(UnaryFunction.ABS, registry.lookup(s, 18, 21));
+        assertNull(registry.lookup(s, 2, 4));
+        assertNull(registry.lookup(s, 13, 15));
+        assertSame(UnaryFunction.SIN, registry.get("sin"));
+        assertNull(registry.get("sinh"));
+    }
+
+    @Test
+    @DisplayName("A registry should behave as a map as functions are added and removed, " +
+            "including beyond its initial capacity")
+    void testMap() {
+        FunctionRegistry registry = new FunctionRegistry(UnaryFunction.mathDefs());
+        assertEquals(UnaryFunction.mathDefs(), registry);
+        for (int i = 0; i < 100; i++) {
+            registry.put("f" + i, new UnaryFunction("f" + i, x -> x));
+        }
+        assertEquals(107, registry.size());
+        assertEquals("f42", registry.lookup("(f42)", 1, 4).name());
+
+        registry.remove("f42");
+        assertNull(registry.get("f42"));
+        assertEquals("f43", registry.get("f43").name());
+        assertThrows(UnsupportedOperationException.class,
+                () -> registry.entrySet().iterator().next().setValue(UnaryFunction.ABS));
+    }
+
+    @Test
+    @DisplayName("Parsing should resolve functions from the caller's definitions, and report " +
+            "the name of an undefined function")
+    void testParse() throws IncompleteRpnException, UndefinedFunctionException {
+        FunctionRegistry registry = new FunctionRegistry();
+        registry.put("twice", new UnaryFunction("twice", x -> 2 * x));
+        assertEquals("twice(x)", RpnParser.parse("x twice()", registry).infixString());
+        assertEquals("twice(x)", RpnParser.compile("x twice()", registry).infixString());
+
+        UndefinedFunctionException e = assertThrows(UndefinedFunctionException.class,
+                () -> RpnParser.parse("x twice() sin()", registry));
+        assertEquals("sin", e.name());
+        e = assertThrows(UndefinedFunctionException.class,
+                () -> RpnParser.parse("x cube()", Map.of()));
+        assertEquals("cube", e.name());
+    }
+}
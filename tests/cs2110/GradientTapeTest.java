@@ -0,0 +1,103 @@
+package cs2110;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class GradientTapeTest {
+
+    @Test
+    @DisplayName("The gradient should contain every variable, in order of first appearance, " +
+            "and agree with forward-mode differentiation")
+    void testGradient() throws Exception {
+        Expression expr = RpnParser.parse("y x * sin() x y / + x 3 ^ - z 0.5 ^ * 2 -",
+                UnaryFunction.mathDefs());
+        VarTable vars = MapVarTable.of("x", 0.8, "y", 1.7);
+        vars.set("z", 2.5);
+        GradientTape tape = new GradientTape();
+        assertEquals(expr.eval(vars), tape.record(expr, vars));
+        assertEquals(3, tape.variableCount());
+        assertEquals("y", tape.variable(0));
+        assertEquals("x", tape.variable(1));
+        assertEquals("z", tape.variable(2));
+
+        double[] forward = expr.evalWithGradient(vars, "y", "x", "z");
+        double[] out = new double[3];
+        tape.gradient(out);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(forward[i + 1], out[i], 1e-14);
+        }
+        assertEquals(Map.of("x", out[1], "y", out[0], "z", out[2]), tape.gradient());
+    }
+
+    @Test
+    @DisplayName("A tape should compute the gradient over hundreds of variables in one " +
+            "backward sweep, and be reusable for other expressions")
+    void testManyVariables() throws Exception {
+        // sum of i * v_i^2, whose partial with respect to v_i is 2 * i * v_i.
+        int n = 300;
+        StringBuilder rpn = new StringBuilder("0");
+        ArrayVarTable vars = new ArrayVarTable();
+        for (int i = 0; i < n; i++) {
+            rpn.append(" v").append(i).append(" 2 ^ ").append(i).append(" * +");
+            vars.set("v" + i, 0.5 + i);
+        }
+        Expression expr = RpnParser.parse(rpn.toString(), UnaryFunction.mathDefs());
+        GradientTape tape = new GradientTape();
+        double[] out = new double[n];
+        for (int run = 0; run < 3; run++) {
+            tape.record(expr, vars);
+            tape.gradient(out);
+            assertEquals(n, tape.variableCount());
+            for (int i = 0; i < n; i++) {
+                assertEquals("v" + i, tape.variable(i));
+                assertEquals(2 * i * (0.5 + i), out[i]);
+            }
+
+            // The same tape, used for a smaller expression with a different variable order.
+            Expression small = RpnParser.parse("v7 v3 *", UnaryFunction.mathDefs());
+            assertEquals(7.5 * 3.5, tape.record(small, vars));
+            assertEquals(Map.of("v7", 3.5, "v3", 7.5), tape.gradient());
+            assertEquals("v7", tape.variable(0));
+        }
+    }
+
+    @Test
+    @DisplayName("Only subexpressions depending on a variable should be differentiated, and " +
+            "failed recordings should leave nothing recorded")
+    void testEdgeCases() throws Exception {
+        Map<String, UnaryFunction> defs = new HashMap<>(UnaryFunction.mathDefs());
+        defs.put("opaque", new UnaryFunction("opaque", t -> t + 1));
+        GradientTape tape = new GradientTape();
+        VarTable vars = MapVarTable.of("x", -2, "y", 3);
+
+        tape.record(RpnParser.parse("0 sqrt() x * 2 opaque() +", defs), vars);
+        assertEquals(Map.of("x", 0.0), tape.gradient());
+        tape.record(RpnParser.parse("x 3 ^", defs), vars);
+        assertEquals(Map.of("x", 12.0), tape.gradient());
+        tape.record(RpnParser.parse("5", defs), vars);
+        assertEquals(Map.of(), tape.gradient());
+
+        tape.record(RpnParser.parse("x opaque()", defs), vars);
+        assertThrows(UnsupportedOperationException.class, () -> tape.gradient());
+
+        assertThrows(UnboundVariableException.class,
+                () -> tape.record(RpnParser.parse("x z +", defs), vars));
+        assertEquals(0, tape.variableCount());
+        assertThrows(IllegalStateException.class, () -> tape.gradient());
+
+        Expression expr = RpnParser.parse("x y * exp() y /", defs);
+        tape.record(expr, vars);
+        Map<String, Double> expected = tape.gradient();
+        tape.record(LetExpression.of(expr), vars);
+        assertEquals(expected, tape.gradient());
+        tape.record(RpnProgram.of(expr), vars);
+        assertEquals(expected, tape.gradient());
+
+        tape.record(TraversalTest.chain(1_000_000), vars);
+        assertEquals(Map.of("x", 1.0), tape.gradient());
+    }
+}
@@ -0,0 +1,61 @@
+package cs2110;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class InlinerTest {
+
+    /**
+     * Return the function definitions `sqr(z) = z^2` and `f(z) = sqr(z) + 1`, along with the core
+     * math functions.
+     */
+    private static Map<String, UnaryFunction> defs()
+            throws IncompleteRpnException, UndefinedFunctionException {
+        Map<String, UnaryFunction> defs = new HashMap<>(UnaryFunction.mathDefs());
+        defs.put("sqr", UnaryFunction.fromExpression("sqr",
+                RpnParser.parse("z z *", defs), "z"));
+        defs.put("f", UnaryFunction.fromExpression("f",
+                RpnParser.parse("z sqr() 1 +", defs), "z"));
+        return defs;
+    }
+
+    @Test
+    @DisplayName("Inlining should replace chains of defined functions with their bodies, " +
+            "leaving built-in functions alone")
+    void testInline()
+            throws IncompleteRpnException, UndefinedFunctionException, UnboundVariableException {
+        Expression expr = RpnParser.parse("x sin() f()", defs());
+        Expression inlined = Inliner.inline(expr);
+        assertEquals("((sin(x) * sin(x)) + 1.0)", inlined.infixString());
+        for (double x : new double[]{-1, 0, 2.5}) {
+            VarTable vars = MapVarTable.of("x", x);
+            assertEquals(expr.eval(vars), inlined.eval(vars));
+        }
+
+        Expression plain = RpnParser.parse("x sin() 2 *", defs());
+        assertSame(plain, Inliner.inline(plain));
+    }
+
+    @Test
+    @DisplayName("Optimizing should fold constants across calls to defined functions")
+    void testOptimize() throws IncompleteRpnException, UndefinedFunctionException {
+        Expression expr = RpnParser.parse("y 2 f() *", defs());
+        assertEquals("(y * 5.0)", expr.optimize(MapVarTable.empty()).infixString());
+    }
+
+    @Test
+    @DisplayName("Applications whose inlined form would exceed the size limit should be kept")
+    void testLimit()
+            throws IncompleteRpnException, UndefinedFunctionException, UnboundVariableException {
+        Expression expr = RpnParser.parse("x sqr() sqr() sqr() sqr()", defs());
+        Expression inlined = Inliner.inline(expr, 8);
+        assertTrue(Inliner.size(inlined, Integer.MAX_VALUE) < 32);
+        assertTrue(inlined.infixString().contains("sqr("));
+        VarTable vars = MapVarTable.of("x", 1.5);
+        assertEquals(expr.eval(vars), inlined.eval(vars));
+    }
+}
@@ -0,0 +1,112 @@
+package cs2110;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the array kernels of the standard operators and math functions against scalar loops
+ * that call `Operator.operate(double, double)` or `UnaryFunction.apply(double)` once per element,
+ * as row-at-a-time evaluation does.  Each kernel is timed both as the plain loop of
+ * `ArrayKernels.SCALAR` and as the implementation in `ArrayKernels.DEFAULT`, which is the Vector
+ * API one if VectorKernels was compiled and the JVM is run with
+ * `--add-modules jdk.incubator.vector`.  Not a unit test; run `main()` directly, ideally with a
+ * fixed heap (e.g., -Xms2g -Xmx2g) so that allocation does not skew the timings.
+ */
+class KernelBenchmark {
+
+    /**
+     * Number of elements in each column.
+     */
+    private static final int N = 10_000_000;
+
+    /**
+     * Number of timed repetitions per measurement (after as many untimed warmup runs).
+     */
+    private static final int REPS = 5;
+
+    /**
+     * A binary kernel of some ArrayKernels implementation.
+     */
+    private interface BinaryKernel {
+        void run(ArrayKernels kernels, double[] a, double[] b, double[] r, int n);
+    }
+
+    /**
+     * A unary kernel of some ArrayKernels implementation.
+     */
+    private interface UnaryKernel {
+        void run(ArrayKernels kernels, double[] a, double[] r, int n);
+    }
+
+    public static void main(String[] args) {
+        Random rng = new Random(2110);
+        double[] a = new double[N];
+        double[] b = new double[N];
+        for (int i = 0; i < N; i++) {
+            a[i] = rng.nextDouble() * 10 + 0.5;
+            b[i] = rng.nextDouble() * 4 - 2;
+        }
+        double[] out = new double[N];
+
+        List<Operator> ops = List.of(Operator.ADD, Operator.SUBTRACT, Operator.MULTIPLY,
+                Operator.DIVIDE, Operator.POW);
+        List<BinaryKernel> opKernels = List.of(ArrayKernels::add, ArrayKernels::subtract,
+                ArrayKernels::multiply, ArrayKernels::divide, ArrayKernels::pow);
+        List<UnaryFunction> funcs = List.of(UnaryFunction.ABS, UnaryFunction.SQRT,
+                UnaryFunction.EXP, UnaryFunction.LOG, UnaryFunction.SIN, UnaryFunction.COS,
+                UnaryFunction.TAN);
+        List<UnaryKernel> funcKernels = List.of(ArrayKernels::abs, ArrayKernels::sqrt,
+                ArrayKernels::exp, ArrayKernels::log, ArrayKernels::sin, ArrayKernels::cos,
+                ArrayKernels::tan);
+
+        System.out.println("Array kernels: " + ArrayKernels.DEFAULT.getClass().getSimpleName());
+        System.out.printf("%-8s %12s %12s %8s %12s %8s%n", "kernel", "scalar (ms)", "loop (ms)",
+                "speedup", "default (ms)", "speedup");
+        for (int k = 0; k < ops.size(); k++) {
+            Operator op = ops.get(k);
+            BinaryKernel kernel = opKernels.get(k);
+            double scalar = time(() -> {
+                for (int i = 0; i < N; i++) {
+                    out[i] = op.operate(a[i], b[i]);
+                }
+            });
+            double loop = time(() -> kernel.run(ArrayKernels.SCALAR, a, b, out, N));
+            double best = time(() -> kernel.run(ArrayKernels.DEFAULT, a, b, out, N));
+            report(op.symbol(), scalar, loop, best);
+        }
+        for (int k = 0; k < funcs.size(); k++) {
+            UnaryFunction f = funcs.get(k);
+            UnaryKernel kernel = funcKernels.get(k);
+            double scalar = time(() -> {
+                for (int i = 0; i < N; i++) {
+                    out[i] = f.apply(a[i]);
+                }
+            });
+            double loop = time(() -> kernel.run(ArrayKernels.SCALAR, a, out, N));
+            double best = time(() -> kernel.run(ArrayKernels.DEFAULT, a, out, N));
+            report(f.name(), scalar, loop, best);
+        }
+    }
+
+    /**
+     * Return the median time in milliseconds of running `task`, after warming it up.
+     */
+    private static double time(Runnable task) {
+        double[] times = new double[REPS];
+        for (int rep = -REPS; rep < REPS; rep++) {
+            long start = System.nanoTime();
+            task.run();
+            if (rep >= 0) {
+                times[rep] = (System.nanoTime() - start) / 1e6;
+            }
+        }
+        Arrays.sort(times);
+        return times[REPS / 2];
+    }
+
+    private static void report(String name, double scalar, double loop, double best) {
+        System.out.printf("%-8s %12.1f %12.1f %7.2fx %12.1f %7.2fx%n", name, scalar, loop,
+                scalar / loop, best, scalar / best);
+    }
+}
@@ -0,0 +1,59 @@
+package cs2110;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class LetExpressionTest {
+
+    @Test
+    @DisplayName("Repeated subexpressions should be evaluated once, with the saving reported " +
+            "in terms of opCount()")
+    void testShared()
+            throws IncompleteRpnException, UndefinedFunctionException, UnboundVariableException {
+        // B9 / B7 appears three times; (B9 / B7) * B6 twice.
+        Expression expr = RpnParser.parse("B9 B7 / B6 * B9 B7 / B6 * + B9 B7 / sqrt() -",
+                UnaryFunction.mathDefs());
+        LetExpression let = LetExpression.of(expr);
+        assertEquals(2, let.tempCount());
+        assertEquals(8, expr.opCount());
+        assertEquals(5, let.opCount());
+        assertEquals(3, let.opsSaved());
+
+        VarTable vars = MapVarTable.of("B9", 12, "B7", 3);
+        vars.set("B6", 0.5);
+        assertEquals(expr.eval(vars), let.eval(vars));
+        assertEquals(expr.infixString(), let.infixString());
+    }
+
+    @Test
+    @DisplayName("Calls to functions that are not marked pure should not be shared")
+    void testImpure()
+            throws IncompleteRpnException, UndefinedFunctionException, UnboundVariableException {
+        AtomicInteger calls = new AtomicInteger();
+        UnaryFunction counted = new UnaryFunction("counted", x -> x + calls.incrementAndGet());
+        UnaryFunction twice = new UnaryFunction("twice", x -> 2 * x, true);
+        Map<String, UnaryFunction> defs = Map.of("counted", counted, "twice", twice);
+
+        LetExpression let = LetExpression.of(
+                RpnParser.parse("x counted() x counted() + x twice() x twice() * +", defs));
+        assertEquals(1, let.tempCount());
+        assertEquals(1, let.opsSaved());
+        assertEquals(3 + 4 + 16, let.eval(MapVarTable.of("x", 2)));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    @DisplayName("Evaluating should report the same unbound variable as the original expression")
+    void testUnbound() throws IncompleteRpnException, UndefinedFunctionException {
+        Expression expr = RpnParser.parse("c a b * + a b * +", Map.of());
+        LetExpression let = LetExpression.of(expr);
+        assertEquals(1, let.tempCount());
+        UnboundVariableException e = assertThrows(UnboundVariableException.class,
+                () -> let.eval(MapVarTable.empty()));
+        assertEquals("c", e.name());
+    }
+}
@@ -0,0 +1,68 @@
+package cs2110;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class LexerTest {
+
+    /**
+     * Return the class and text of each token in `tokens`, for comparing
+     * tokenizers.
+     */
+    private static List<String> describe(Iterable<Token> tokens) {
+        List<String> ans = new ArrayList<>();
+        for (Token t : tokens) {
+            ans.add(t.getClass().getSimpleName() + ":" + t.value());
+        }
+        return ans;
+    }
+
+    @Test
+    @DisplayName("The lexer should split tokens on any whitespace and report their offsets")
+    void testOffsets() {
+        Lexer lexer = new Lexer("  x\t2.5\n^ ");
+        assertTrue(lexer.next());
+        assertEquals(Lexer.Kind.VARIABLE, lexer.kind());
+        assertEquals(2, lexer.start());
+        assertEquals(3, lexer.end());
+
+        assertTrue(lexer.next());
+        assertEquals(Lexer.Kind.NUMBER, lexer.kind());
+        assertEquals(2.5, lexer.numberValue());
+
+        assertTrue(lexer.next());
+        assertEquals(Lexer.Kind.OPERATOR, lexer.kind());
+        assertEquals(Operator.POW, lexer.operator());
+
+        assertFalse(lexer.next());
+        assertFalse(new Lexer("").next());
+        assertFalse(new Lexer(" \t ").next());
+    }
+
+    @Test
+    @DisplayName("The lexer should classify tokens exactly as Token.parse() does")
+    void testClassification() {
+        String[] cases = {"1.5", "-1", "+.5", "1.", ".", "1e5", "1e", "1E-3d", "2f", "1dd",
+                "NaN", "-Infinity", "Inf", "0x1p3", "0X.8P-1f", "0x1", "+", "-", "*", "/", "^",
+                "--", "sin()", "()", "1()", "x", "B12", "sin(", "1 2 + abs() y *"};
+        for (String c : cases) {
+            assertEquals(describe(Token.scannerTokenizer(c)), describe(Token.tokenizer(c)), c);
+        }
+    }
+
+    @Test
+    @DisplayName("A function token produced by the lexer should report its name without the " +
+            "\"()\" suffix")
+    void testFunctionName() {
+        Lexer lexer = new Lexer("x sqrt()");
+        lexer.next();
+        lexer.next();
+        assertEquals(Lexer.Kind.FUNCTION, lexer.kind());
+        assertEquals("sqrt", lexer.input().subSequence(lexer.start(), lexer.nameEnd()).toString());
+        assertEquals("sqrt", ((Token.Function) lexer.token()).name());
+    }
+}
@@ -0,0 +1,101 @@
+package cs2110;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class MemoizedExpressionTest {
+
+    @Test
+    @DisplayName("Re-evaluating after a variable changes should recompute only the nodes on " +
+            "the paths from its occurrences to the root")
+    void testDirtyPaths() throws Exception {
+        // Postorder: x, y, *, sin, z, 2, ^, +  (8 nodes).
+        Expression expr = RpnParser.parse("x y * sin() z 2 ^ +", UnaryFunction.mathDefs());
+        MemoizedExpression memo = new MemoizedExpression(expr);
+        VarTable vars = MapVarTable.of("x", 1, "y", 2);
+        vars.set("z", 3);
+        assertEquals(0, memo.lastRecomputed());
+        assertEquals(expr.eval(vars), memo.eval(vars));
+        assertEquals(8, memo.lastRecomputed());
+
+        assertEquals(expr.eval(vars), memo.eval(vars));
+        assertEquals(0, memo.lastRecomputed());
+
+        vars.set("z", -4);
+        assertEquals(expr.eval(vars), memo.eval(vars));
+        assertEquals(3, memo.lastRecomputed());
+
+        vars.set("x", 0.5);
+        assertEquals(expr.eval(vars), memo.eval(vars));
+        assertEquals(4, memo.lastRecomputed());
+
+        // A change in the sign of zero is a change.
+        vars.set("x", 0.0);
+        memo.eval(vars);
+        vars.set("x", -0.0);
+        assertEquals(expr.eval(vars), memo.eval(vars));
+        assertEquals(4, memo.lastRecomputed());
+
+        // Variables appearing several times dirty every path, sharing their common ancestors.
+        Expression twice = RpnParser.parse("x 1 + x 2 * * y +", UnaryFunction.mathDefs());
+        MemoizedExpression memoTwice = new MemoizedExpression(twice);
+        memoTwice.eval(vars);
+        vars.set("x", 7);
+        assertEquals(twice.eval(vars), memoTwice.eval(vars));
+        assertEquals(6, memoTwice.lastRecomputed());
+        assertEquals(twice.postfixString(), memoTwice.postfixString());
+        assertSame(twice.dependencies(), memoTwice.dependencies());
+    }
+
+    @Test
+    @DisplayName("Memoized results should always equal those of the original expression")
+    void testRandomUpdates() throws Exception {
+        Expression expr = RpnParser.parse("a b + c * d e / - a sin() ^ b sqrt() e * + c abs() /",
+                UnaryFunction.mathDefs());
+        MemoizedExpression memo = new MemoizedExpression(LetExpression.of(expr));
+        String[] names = {"a", "b", "c", "d", "e"};
+        ArrayVarTable vars = new ArrayVarTable();
+        for (String name : names) {
+            vars.set(name, 1);
+        }
+        Random rng = new Random(2110);
+        for (int i = 0; i < 1000; i++) {
+            vars.set(names[rng.nextInt(names.length)], rng.nextInt(5) - 2 + rng.nextDouble());
+            assertEquals(expr.eval(vars), memo.eval(vars));
+            assertTrue(memo.lastRecomputed() <= expr.opCount() + 12);
+        }
+    }
+
+    @Test
+    @DisplayName("An unbound variable should throw without disturbing the cache, and impure " +
+            "functions should be applied on every evaluation")
+    void testUnboundAndImpure() throws Exception {
+        int[] calls = {0};
+        Map<String, UnaryFunction> defs = new HashMap<>(UnaryFunction.mathDefs());
+        defs.put("tick", new UnaryFunction("tick", t -> t + calls[0]++));
+        Expression expr = RpnParser.parse("x tick() y *", defs);
+        MemoizedExpression memo = new MemoizedExpression(expr);
+        VarTable vars = MapVarTable.of("x", 10, "y", 2);
+        assertEquals(20, memo.eval(vars));
+        assertEquals(22, memo.eval(vars));
+        assertEquals(2, memo.lastRecomputed());
+        assertEquals(2, calls[0]);
+
+        vars.unset("y");
+        assertThrows(UnboundVariableException.class, () -> memo.eval(vars));
+        assertEquals(2, calls[0]);
+        vars.set("y", 3);
+        assertEquals(36, memo.eval(vars));
+
+        Expression deep = TraversalTest.chain(1_000_000);
+        MemoizedExpression memoDeep = new MemoizedExpression(deep);
+        assertEquals(1_000_003, memoDeep.eval(MapVarTable.of("x", 3)));
+        assertEquals(1_000_003, memoDeep.eval(MapVarTable.of("x", 3)));
+        assertEquals(0, memoDeep.lastRecomputed());
+    }
+}
@@ -0,0 +1,63 @@
+package cs2110;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ParseCacheTest {
+
+    @Test
+    @DisplayName("Parsing the same formula twice, even with different whitespace, should return " +
+            "the cached tree")
+    void testHit() throws IncompleteRpnException, UndefinedFunctionException {
+        ParseCache cache = new ParseCache();
+        Map<String, UnaryFunction> defs = UnaryFunction.mathDefs();
+        Expression expr = cache.parse("x 2 ^ sin()", defs);
+        assertEquals(RpnParser.parse("x 2 ^ sin()", defs), expr);
+        assertSame(expr, cache.parse("  x\t2  ^ sin() ", defs));
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.hits());
+
+        // Different definitions are a different entry.
+        assertNotSame(expr, cache.parse("x 2 ^ sin()", UnaryFunction.mathDefs()));
+        assertEquals(2, cache.misses());
+    }
+
+    @Test
+    @DisplayName("The least recently used entries should be evicted once a limit is exceeded")
+    void testEviction() throws IncompleteRpnException, UndefinedFunctionException {
+        ParseCache cache = new ParseCache(2, 1000);
+        Map<String, UnaryFunction> defs = Map.of();
+        Expression a = cache.parse("1 a +", defs);
+        cache.parse("1 b +", defs);
+        assertSame(a, cache.parse("1 a +", defs));
+        cache.parse("1 c +", defs);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictions());
+        assertSame(a, cache.parse("1 a +", defs));
+
+        ParseCache small = new ParseCache(100, 8);
+        small.parse("1 2 +", defs);
+        small.parse("3 4 +", defs);
+        assertEquals(1, small.size());
+    }
+
+    @Test
+    @DisplayName("Invalidating a definitions map should make formulas be parsed with its new " +
+            "contents")
+    void testInvalidate() throws IncompleteRpnException, UndefinedFunctionException {
+        ParseCache cache = new ParseCache();
+        Map<String, UnaryFunction> defs = new HashMap<>();
+        assertThrows(UndefinedFunctionException.class, () -> cache.parse("x f()", defs));
+        Expression plain = cache.parse("x 1 +", defs);
+
+        defs.put("f", UnaryFunction.ABS);
+        cache.invalidate(defs);
+        assertEquals(0, cache.size());
+        assertEquals("abs(x)", cache.parse("x f()", defs).infixString());
+        assertNotSame(plain, cache.parse("x 1 +", defs));
+    }
+}
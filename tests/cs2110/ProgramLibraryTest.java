@@ -0,0 +1,157 @@
+package cs2110;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ProgramLibraryTest {
+
+    private static final String[] SOURCES = {
+            "1.5",
+            "x",
+            "x y + 2 *",
+            "x 2 ^ y 3 / - sin()",
+            "x sqrt() 1e-300 x / + y y * -",
+            "x x x x + * - abs() exp() log()",
+    };
+
+    /**
+     * Return the expressions in `SOURCES`.
+     */
+    private static List<Expression> parseAll()
+            throws IncompleteRpnException, UndefinedFunctionException {
+        List<Expression> exprs = new ArrayList<>();
+        for (String source : SOURCES) {
+            exprs.add(RpnParser.parse(source, UnaryFunction.mathDefs()));
+        }
+        return exprs;
+    }
+
+    @Test
+    @DisplayName("Programs evaluated from a library file should give the same results as the " +
+            "expressions they were written from, and load as equal programs")
+    void testRoundTrip(@TempDir Path dir) throws Exception {
+        List<Expression> exprs = parseAll();
+        Path file = dir.resolve("lib.rpnl");
+        ProgramLibrary.write(exprs, file);
+        ProgramLibrary library = ProgramLibrary.open(file, UnaryFunction.mathDefs());
+        assertEquals(exprs.size(), library.size());
+
+        VarTable map = MapVarTable.of("x", 0.75, "y", -2);
+        ArrayVarTable array = ArrayVarTable.of("x", 0.75);
+        array.set("y", -2);
+        for (int i = 0; i < exprs.size(); i++) {
+            double expected = exprs.get(i).eval(map);
+            assertEquals(expected, library.eval(i, map));
+            assertEquals(expected, library.eval(i, array));
+            RpnProgram program = library.load(i);
+            assertEquals(RpnProgram.of(exprs.get(i)), program);
+            assertEquals(exprs.get(i).postfixString(), program.postfixString());
+        }
+        assertThrows(UnboundVariableException.class,
+                () -> library.eval(2, MapVarTable.of("x", 1)));
+        assertThrows(IndexOutOfBoundsException.class, () -> library.eval(exprs.size(), map));
+    }
+
+    @Test
+    @DisplayName("Functions should be stored by name and resolved when a library is opened")
+    void testFunctions(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("lib.rpnl");
+        Map<String, UnaryFunction> defs = new HashMap<>(UnaryFunction.mathDefs());
+        defs.put("twice", UnaryFunction.fromExpression("twice",
+                RpnParser.parse("t 2 *", defs), "t"));
+        ProgramLibrary.write(List.of(RpnParser.parse("x twice() sin()", defs)), file);
+
+        assertThrows(UndefinedFunctionException.class,
+                () -> ProgramLibrary.open(file, UnaryFunction.mathDefs()));
+
+        Map<String, UnaryFunction> other = new HashMap<>(UnaryFunction.mathDefs());
+        other.put("twice", new UnaryFunction("twice", t -> 3 * t));
+        ProgramLibrary library = ProgramLibrary.open(file, other);
+        assertEquals(Math.sin(6), library.eval(0, MapVarTable.of("x", 2)));
+    }
+
+    @Test
+    @DisplayName("Opening a file that is not a valid library should throw an IOException")
+    void testCorrupt(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("lib.rpnl");
+        ProgramLibrary.write(parseAll(), file);
+        byte[] bytes = Files.readAllBytes(file);
+
+        Path bad = dir.resolve("bad.rpnl");
+        Files.write(bad, "x y +".getBytes());
+        assertThrows(IOException.class, () -> ProgramLibrary.open(bad, Map.of()));
+
+        byte[] version = bytes.clone();
+        version[7] = 2;
+        Files.write(bad, version);
+        assertThrows(IOException.class,
+                () -> ProgramLibrary.open(bad, UnaryFunction.mathDefs()));
+
+        for (int length : new int[]{bytes.length - 1, bytes.length / 2, 12}) {
+            Files.write(bad, Arrays.copyOf(bytes, length));
+            assertThrows(IOException.class,
+                    () -> ProgramLibrary.open(bad, UnaryFunction.mathDefs()));
+        }
+
+        // Replace the last program's final instruction with an ADD, which lacks an operand.
+        byte[] patched = bytes.clone();
+        ByteBuffer buf = ByteBuffer.wrap(patched);
+        String last = SOURCES[SOURCES.length - 1];
+        int constants = 8 * RpnProgram.of(RpnParser.parse(last, UnaryFunction.mathDefs()))
+                .constants().length;
+        buf.putInt(patched.length - constants - 8, RpnProgram.ADD);
+        Files.write(bad, patched);
+        assertThrows(IOException.class,
+                () -> ProgramLibrary.open(bad, UnaryFunction.mathDefs()));
+
+        // Overstate the first program's maximum stack depth, which `eval()` would allocate.
+        buf = ByteBuffer.wrap(bytes);
+        int pos = 8;
+        for (int n = buf.getInt(pos), k = 0; k < n; k++) {
+            pos += 4;
+            pos += buf.getInt(pos);
+        }
+        pos += 4;
+        pos += 4 + 4 * buf.getInt(pos);
+        int body = buf.getInt(pos + 4);
+        for (int maxDepth : new int[]{Integer.MAX_VALUE, buf.getInt(body) + 1}) {
+            patched = bytes.clone();
+            ByteBuffer.wrap(patched).putInt(body, maxDepth);
+            Files.write(bad, patched);
+            assertThrows(IOException.class,
+                    () -> ProgramLibrary.open(bad, UnaryFunction.mathDefs()));
+        }
+    }
+
+    @Test
+    @DisplayName("Writing an expression with a custom operator should throw an " +
+            "IllegalArgumentException")
+    void testCustomOperator(@TempDir Path dir) {
+        Operator max = new Operator() {
+            @Override
+            public double operate(double operand1, double operand2) {
+                return Math.max(operand1, operand2);
+            }
+
+            @Override
+            public String symbol() {
+                return "max";
+            }
+        };
+        Expression expr = new Operation(max, new Variable("x"), new Constant(1));
+        assertThrows(IllegalArgumentException.class,
+                () -> ProgramLibrary.write(List.of(expr), dir.resolve("lib.rpnl")));
+    }
+}
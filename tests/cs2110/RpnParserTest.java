@@ -139,4 +139,57 @@ class RpnParserTest {
         assertThrows(UndefinedFunctionException.class, () -> RpnParser.parse("1 foo()", Map.of()));
         assertThrows(UndefinedFunctionException.class, () -> RpnParser.parse("3 bar()", Map.of()));
     }
+
+    @Test
+    @DisplayName("Compiling an expression should yield a program that evaluates and formats " +
+            "identically to the parsed expression tree")
+    void testCompileMatchesParse()
+            throws UnboundVariableException, IncompleteRpnException, UndefinedFunctionException {
+        String[] cases = {"1.5", "x", "2 1 2 / -", "x 2 ^ y x * + sqrt()",
+                "1 0 cos() 2 ^ 0 sin() 2 ^ + - sin()", "x x * x / abs() y -"};
+        VarTable vars = MapVarTable.of("x", 3, "y", -1.25);
+        for (String c : cases) {
+            Expression tree = RpnParser.parse(c, UnaryFunction.mathDefs());
+            RpnProgram program = RpnParser.compile(c, UnaryFunction.mathDefs());
+            assertEquals(tree.eval(vars), program.eval(vars), c);
+            assertEquals(tree.infixString(), program.infixString(), c);
+            assertEquals(tree.postfixString(), program.postfixString(), c);
+            assertEquals(tree.opCount(), program.opCount(), c);
+            assertEquals(tree.dependencies(), program.dependencies(), c);
+            assertEquals(tree, program.toExpression(), c);
+        }
+    }
+
+    @Test
+    @DisplayName("A compiled program should look up each distinct variable once and throw an " +
+            "UnboundVariableException if one is missing")
+    void testCompileVariables() throws IncompleteRpnException, UndefinedFunctionException {
+        RpnProgram program = RpnParser.compile("x y * x +", Map.of());
+        assertArrayEquals(new String[]{"x", "y"}, program.names());
+        assertEquals(2, program.maxDepth());
+        assertThrows(UnboundVariableException.class,
+                () -> program.eval(MapVarTable.of("x", 1)));
+        assertEquals(7.0, program.execute(new double[]{1, 6}, new double[program.maxDepth()]));
+    }
+
+    @Test
+    @DisplayName("Optimizing a compiled program should fold constant subexpressions")
+    void testCompileOptimize()
+            throws UnboundVariableException, IncompleteRpnException, UndefinedFunctionException {
+        RpnProgram program = RpnParser.compile("1 2 + x * y 4 sqrt() - /", UnaryFunction.mathDefs());
+        Expression opt = program.optimize(MapVarTable.of("y", 1));
+        assertEquals("((3.0 * x) / -1.0)", opt.infixString());
+        assertEquals(2, opt.opCount());
+        assertEquals(-6.0, opt.eval(MapVarTable.of("x", 2)));
+    }
+
+    @Test
+    @DisplayName("Compiling a malformed expression should throw the same exceptions as parsing it")
+    void testCompileErrors() {
+        assertThrows(IncompleteRpnException.class, () -> RpnParser.compile("", Map.of()));
+        assertThrows(IncompleteRpnException.class, () -> RpnParser.compile("1 1 1 +", Map.of()));
+        assertThrows(IncompleteRpnException.class, () -> RpnParser.compile("1 1 + +", Map.of()));
+        assertThrows(IncompleteRpnException.class, () -> RpnParser.compile("abs() 1", Map.of()));
+        assertThrows(UndefinedFunctionException.class, () -> RpnParser.compile("1 foo()", Map.of()));
+    }
 }
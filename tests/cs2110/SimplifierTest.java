@@ -0,0 +1,82 @@
+package cs2110;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import cs2110.Simplifier.Mode;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class SimplifierTest {
+
+    /**
+     * Return the infix string of the RPN expression `rpn` simplified under `mode`.
+     */
+    private static String simplified(String rpn, Mode mode)
+            throws IncompleteRpnException, UndefinedFunctionException {
+        return Simplifier.simplify(RpnParser.parse(rpn, UnaryFunction.mathDefs()), mode)
+                .infixString();
+    }
+
+    @Test
+    @DisplayName("Strict mode should apply only identities that are exact for all inputs")
+    void testStrict() throws IncompleteRpnException, UndefinedFunctionException {
+        assertEquals("x", simplified("x 1 * 1 /", Mode.STRICT));
+        assertEquals("(x * x)", simplified("x 2 ^", Mode.STRICT));
+        assertEquals("(y * 0.25)", simplified("y 4 /", Mode.STRICT));
+        assertEquals("(y / 3.0)", simplified("y 3 /", Mode.STRICT));
+        assertEquals("(x + 3.0)", simplified("x 1 2 + abs() +", Mode.STRICT));
+
+        // `x + 0` is -0.0 + 0 = 0.0 when x is -0.0, and `x * 0` is NaN for infinite x.
+        assertEquals("(x + 0.0)", simplified("x 0 +", Mode.STRICT));
+        assertEquals("(x * 0.0)", simplified("x 0 *", Mode.STRICT));
+    }
+
+    @Test
+    @DisplayName("Fast mode should also drop zeros, expand small powers and combine constants")
+    void testFast() throws IncompleteRpnException, UndefinedFunctionException {
+        assertEquals("x", simplified("x 0 +", Mode.FAST));
+        assertEquals("0.0", simplified("x sin() 0 *", Mode.FAST));
+        assertEquals("1.0", simplified("x y + x y + /", Mode.FAST));
+        assertEquals("((x * x) * x)", simplified("x 3 ^", Mode.FAST));
+        assertEquals("(1.0 / (x * x))", simplified("x -2 ^", Mode.FAST));
+        assertEquals("sqrt(x)", simplified("x 0.5 ^", Mode.FAST));
+        assertEquals("(x * 0.2)", simplified("x 5 /", Mode.FAST));
+        assertEquals("(x + 5.0)", simplified("x 2 + 3 +", Mode.FAST));
+        assertEquals("(x + -1.0)", simplified("x 2 - 1 +", Mode.FAST));
+        assertEquals("(6.0 * y)", simplified("2 3 y * *", Mode.FAST));
+    }
+
+    @Test
+    @DisplayName("Strictly simplified expressions should give bit-identical results, including " +
+            "for signed zeros, infinities and NaN, and throw for the same unbound variables")
+    void testStrictExact()
+            throws IncompleteRpnException, UndefinedFunctionException, UnboundVariableException {
+        String[] rpns = {"x 2 ^ y 0.5 / +", "x -0.0 + 1 * y 1 ^ -", "x 0 - y 8 / *",
+                "x 2 ^ 2 ^ 1 /"};
+        double[] values = {0.0, -0.0, 1e-310, -3.5, 1e300, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.NaN};
+        for (String rpn : rpns) {
+            Expression expr = RpnParser.parse(rpn, UnaryFunction.mathDefs());
+            Expression simple = Simplifier.simplify(expr, Mode.STRICT);
+            assertNotEquals(expr.infixString(), simple.infixString());
+            assertEquals(expr.dependencies(), simple.dependencies());
+            for (double x : values) {
+                for (double y : values) {
+                    VarTable vars = MapVarTable.of("x", x, "y", y);
+                    assertEquals(Double.doubleToRawLongBits(expr.eval(vars)),
+                            Double.doubleToRawLongBits(simple.eval(vars)), rpn);
+                }
+            }
+            assertThrows(UnboundVariableException.class,
+                    () -> simple.eval(MapVarTable.of("y", 1)));
+        }
+    }
+
+    @Test
+    @DisplayName("Simplifying should not modify the original expression")
+    void testNotMutated() throws IncompleteRpnException, UndefinedFunctionException {
+        Expression expr = RpnParser.parse("x 1 * 2 3 + *", UnaryFunction.mathDefs());
+        assertEquals("(x * 5.0)", Simplifier.simplify(expr, Mode.FAST).infixString());
+        assertEquals("((x * 1.0) * (2.0 + 3.0))", expr.infixString());
+    }
+}
@@ -0,0 +1,59 @@
+package cs2110;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class TabulatorTest {
+
+    @Test
+    @DisplayName("Abscissa should be evenly spaced and include both endpoints exactly")
+    void testAbscissa() {
+        assertEquals(10.0, Tabulator.abscissa(10, 17, 2, 0));
+        assertEquals(17.0, Tabulator.abscissa(10, 17, 2, 1));
+        assertEquals(0.3, Tabulator.abscissa(0.1, 0.3, 3, 2));
+        assertEquals(0.25, Tabulator.abscissa(0, 1, 5, 1));
+        assertEquals(-1.0, Tabulator.abscissa(-1, 1, 1, 0));
+    }
+
+    @Test
+    @DisplayName("A table should have one line per sample, in order, with the ordinate equal " +
+            "to the expression's value at the abscissa")
+    void testWrite() throws UnboundVariableException, IncompleteRpnException,
+            UndefinedFunctionException, IOException {
+        Expression expr = RpnParser.parse("x sin() a * x 3 ^ +", UnaryFunction.mathDefs());
+        VarTable vars = MapVarTable.of("a", 2);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            Tabulator table = new Tabulator(expr, "x", vars, pool);
+
+            // Use enough samples to be split into several chunks.
+            int n = 3 * Tabulator.CHUNK_SIZE + 11;
+            StringBuilder out = new StringBuilder();
+            table.write(-2, 5, n, out);
+            String[] lines = out.toString().split(System.lineSeparator());
+            assertEquals(n, lines.length);
+            for (int i = 0; i < n; i += 97) {
+                double x = Tabulator.abscissa(-2, 5, n, i);
+                vars.set("x", x);
+                assertEquals(x + " " + expr.eval(vars), lines[i]);
+            }
+            assertEquals("5.0 " + table.eval(5), lines[n - 1]);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Creating a tabulator for an expression with an unbound variable other than " +
+            "the abscissa should throw an UnboundVariableException")
+    void testUnbound() throws IncompleteRpnException, UndefinedFunctionException {
+        Expression expr = RpnParser.parse("x y +", UnaryFunction.mathDefs());
+        UnboundVariableException e = assertThrows(UnboundVariableException.class,
+                () -> new Tabulator(expr, "x", MapVarTable.empty()));
+        assertEquals("y", e.name());
+    }
+}
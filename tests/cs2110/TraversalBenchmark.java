@@ -0,0 +1,161 @@
+package cs2110;
+
+import java.util.Arrays;
+
+/**
+ * Times evaluating, printing and optimizing chains of additions of depths 10, 1e3, 1e5 and 1e6,
+ * comparing the nodes' own methods (recursive up to `Traversal.RECURSION_LIMIT`, explicit-stack
+ * beyond) against plain recursion.  The recursive versions run on a thread with a 1 GB stack so
+ * that they can handle the deepest trees.  Not a unit test; run `main()` directly, ideally with
+ * a fixed heap (e.g., -Xms2g -Xmx2g) so that allocation does not skew the timings.
+ */
+class TraversalBenchmark {
+
+    /**
+     * Approximate number of nodes visited per timed run, whatever the depth.
+     */
+    private static final int NODES = 10_000_000;
+
+    /**
+     * Number of timed repetitions per measurement (after as many untimed warmup runs).
+     */
+    private static final int REPS = 5;
+
+    /**
+     * Accumulates results so that the JIT cannot discard the benchmarked work.
+     */
+    private static double sink;
+
+    public static void main(String[] args) throws Exception {
+        Thread thread = new Thread(null, TraversalBenchmark::run, "benchmark", 1L << 30);
+        thread.start();
+        thread.join();
+    }
+
+    private static void run() {
+        try {
+            System.out.printf("%-10s %-10s %14s %14s %8s%n", "depth", "operation", "recursive",
+                    "methods", "ratio");
+            for (int depth : new int[]{10, 1_000, 100_000, 1_000_000}) {
+                Expression expr = TraversalTest.chain(depth);
+                int reps = Math.max(1, NODES / depth);
+                VarTable vars = MapVarTable.of("x", 1);
+                VarTable empty = MapVarTable.empty();
+                report(depth, "eval", time(() -> {
+                    for (int i = 0; i < reps; i++) {
+                        sink += recursiveEval(expr, vars);
+                    }
+                }, reps, depth), time(() -> {
+                    for (int i = 0; i < reps; i++) {
+                        sink += expr.eval(vars);
+                    }
+                }, reps, depth));
+                int stringReps = Math.max(1, reps / 10);
+                report(depth, "infix", time(() -> {
+                    for (int i = 0; i < stringReps; i++) {
+                        sink += recursiveInfix(expr).length();
+                    }
+                }, stringReps, depth), time(() -> {
+                    for (int i = 0; i < stringReps; i++) {
+                        sink += expr.infixString().length();
+                    }
+                }, stringReps, depth));
+                report(depth, "optimize", time(() -> {
+                    for (int i = 0; i < reps; i++) {
+                        sink += recursiveOptimize(expr, empty).opCount();
+                    }
+                }, reps, depth), time(() -> {
+                    for (int i = 0; i < reps; i++) {
+                        sink += expr.optimize(empty).opCount();
+                    }
+                }, reps, depth));
+            }
+            System.out.println(sink == 42 ? "" : "(done)");
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Return the value of `expr`, computed by plain recursion.
+     */
+    private static double recursiveEval(Expression expr, VarTable vars)
+            throws UnboundVariableException {
+        if (expr instanceof Operation node) {
+            double left = recursiveEval(node.left(), vars);
+            return node.op().operate(left, recursiveEval(node.right(), vars));
+        } else if (expr instanceof Application node) {
+            return node.func().apply(recursiveEval(node.argument(), vars));
+        }
+        return expr.eval(vars);
+    }
+
+    /**
+     * Return the infix string of `expr`, built by plain recursion into a StringBuilder (so that
+     * the comparison is not dominated by the quadratic cost of concatenating strings).
+     */
+    private static String recursiveInfix(Expression expr) {
+        StringBuilder sb = new StringBuilder();
+        appendInfix(expr, sb);
+        return sb.toString();
+    }
+
+    private static void appendInfix(Expression expr, StringBuilder sb) {
+        if (expr instanceof Operation node) {
+            sb.append('(');
+            appendInfix(node.left(), sb);
+            sb.append(' ').append(node.op().symbol()).append(' ');
+            appendInfix(node.right(), sb);
+            sb.append(')');
+        } else if (expr instanceof Application node) {
+            sb.append(node.func().name()).append('(');
+            appendInfix(node.argument(), sb);
+            sb.append(')');
+        } else {
+            sb.append(expr.infixString());
+        }
+    }
+
+    /**
+     * Return `expr` optimized by plain recursion.
+     */
+    private static Expression recursiveOptimize(Expression expr, VarTable vars) {
+        if (expr instanceof Operation node) {
+            return node.fold(recursiveOptimize(node.left(), vars),
+                    recursiveOptimize(node.right(), vars));
+        } else if (expr instanceof Application node) {
+            return node.fold(recursiveOptimize(node.argument(), vars), vars);
+        }
+        return expr.optimize(vars);
+    }
+
+    /**
+     * Interface for benchmarked code, which may throw.
+     */
+    private interface Task {
+
+        void run() throws Exception;
+    }
+
+    /**
+     * Return the median time in nanoseconds per node of running `task`, which visits `reps`
+     * trees of `depth` operations, after warming it up.
+     */
+    private static double time(Task task, int reps, int depth) throws Exception {
+        double[] times = new double[REPS];
+        for (int rep = -REPS; rep < REPS; rep++) {
+            long start = System.nanoTime();
+            task.run();
+            if (rep >= 0) {
+                times[rep] = (double) (System.nanoTime() - start) / reps / depth;
+            }
+        }
+        Arrays.sort(times);
+        return times[REPS / 2];
+    }
+
+    private static void report(int depth, String operation, double recursive, double methods) {
+        System.out.printf("%-10d %-10s %11.2f ns %11.2f ns %7.2fx%n", depth, operation, recursive,
+                methods, methods / recursive);
+    }
+}
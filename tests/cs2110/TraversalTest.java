@@ -0,0 +1,134 @@
+package cs2110;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.CharBuffer;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class TraversalTest {
+
+    /**
+     * Return the tree for `((x + 1) + 1) ... + 1` with `n` additions, built by the parser.
+     */
+    static Expression chain(int n) throws IncompleteRpnException, UndefinedFunctionException {
+        StringBuilder rpn = new StringBuilder("x");
+        for (int i = 0; i < n; i++) {
+            rpn.append(" 1 +");
+        }
+        return RpnParser.parse(rpn.toString(), UnaryFunction.mathDefs());
+    }
+
+    @Test
+    @DisplayName("Evaluating, printing, optimizing and comparing a tree a million levels deep " +
+            "should not overflow the stack")
+    void testDeepChain()
+            throws IncompleteRpnException, UndefinedFunctionException, UnboundVariableException {
+        int n = 1_000_000;
+        Expression expr = chain(n);
+        assertEquals(n + 1, expr.depth());
+        assertEquals(n + 0.5, expr.eval(MapVarTable.of("x", 0.5)));
+        assertThrows(UnboundVariableException.class, () -> expr.eval(MapVarTable.empty()));
+
+        assertEquals("(".repeat(n) + "x" + " + 1.0)".repeat(n), expr.infixString());
+        assertEquals("x" + " 1.0 +".repeat(n), expr.postfixString());
+
+        assertEquals(new Constant(n + 2), expr.optimize(MapVarTable.of("x", 2)));
+        assertSame(expr, expr.optimize(MapVarTable.empty()));
+
+        assertEquals(chain(n), expr);
+        assertNotEquals(chain(n - 1), expr);
+        assertNotEquals(expr, new Operation(Operator.ADD,
+                ((Operation) chain(n - 1)).left(), new Constant(1)));
+    }
+
+    @Test
+    @DisplayName("Deep trees should give the same results as shallow trees of the same shape, " +
+            "including through function applications")
+    void testDeepApplications()
+            throws IncompleteRpnException, UndefinedFunctionException, UnboundVariableException {
+        StringBuilder rpn = new StringBuilder("x");
+        String infix = "x";
+        for (int i = 0; i < 3 * Traversal.RECURSION_LIMIT; i++) {
+            rpn.append(i % 3 == 0 ? " sin()" : i % 3 == 1 ? " y *" : " 2.0 ^");
+            infix = i % 3 == 0 ? "sin(" + infix + ")"
+                    : i % 3 == 1 ? "(" + infix + " * y)" : "(" + infix + " ^ 2.0)";
+        }
+        Expression expr = RpnParser.parse(rpn.toString(), UnaryFunction.mathDefs());
+        assertTrue(expr.depth() > Traversal.RECURSION_LIMIT);
+        VarTable vars = MapVarTable.of("x", 0.3, "y", 1.1);
+
+        // Evaluating the program does not use trees, so gives an independent expected value.
+        RpnProgram program = RpnProgram.of(expr);
+        assertEquals(program.eval(vars), expr.eval(vars));
+        assertEquals(new Constant(program.eval(vars)), expr.optimize(vars));
+        assertEquals(rpn.toString(), expr.postfixString());
+        assertEquals(infix, expr.infixString());
+    }
+
+    @Test
+    @DisplayName("Batch evaluation, compilation, tabulation, definition and the other " +
+            "whole-tree passes should handle a tree 100,000 levels deep")
+    void testDeepPasses() throws IncompleteRpnException, UndefinedFunctionException,
+            UnboundVariableException, IOException {
+        int n = 100_000;
+        Expression expr = chain(n);
+        Expression right = new Constant(0);
+        for (int i = 0; i < n; i++) {
+            right = new Operation(Operator.ADD, new Variable("x"), right);
+        }
+
+        double[] x = {0.5, -2, 7};
+        double[] out = new double[x.length];
+        expr.evalBatch(Map.of("x", x), out);
+        assertArrayEquals(new double[]{n + 0.5, n - 2, n + 7}, out);
+        right.evalBatch(Map.of("x", x), out);
+        assertArrayEquals(new double[]{n * 0.5, n * -2.0, n * 7.0}, out);
+
+        CompiledExpression compiled = ExpressionCompiler.compile(expr, List.of("x"));
+        assertEquals(n + 0.5, compiled.eval(new double[]{0.5}));
+        assertEquals(n + 0.5, RpnProgram.of(expr).eval(MapVarTable.of("x", 0.5)));
+
+        StringBuilder table = new StringBuilder();
+        new Tabulator(expr, "x", MapVarTable.empty()).write(0, 2, 3, table);
+        assertEquals("0.0 " + (n + 0.0) + "\n1.0 " + (n + 1.0) + "\n2.0 " + (n + 2.0) + "\n",
+                table.toString());
+
+        UnaryFunction f = UnaryFunction.fromExpression("f", expr, "x");
+        assertEquals(n + 0.5, f.apply(0.5));
+        assertEquals(1, f.derivative(0.5));
+
+        VarTable vars = MapVarTable.of("x", 0.5);
+        assertEquals(n + 0.5, LetExpression.of(expr).eval(vars));
+        assertEquals(n + 0.5, new ExpressionInterner().intern(expr).eval(vars));
+        assertEquals(n + 0.5, Simplifier.simplify(expr, Simplifier.Mode.STRICT).eval(vars));
+        assertEquals(2 * n + 0.5, Inliner.inline(new Application(f, expr)).eval(vars));
+    }
+
+    @Test
+    @DisplayName("Writing infix and postfix text to an Appendable should produce the same text " +
+            "as the String methods")
+    void testWrite() throws IncompleteRpnException, UndefinedFunctionException, IOException {
+        Expression expr = RpnParser.parse("x 0.1 + sqrt() 2.0E23 y - *", UnaryFunction.mathDefs());
+        StringWriter infix = new StringWriter();
+        expr.writeInfix(infix);
+        assertEquals("(sqrt((x + 0.1)) * (2.0E23 - y))", infix.toString());
+        assertEquals(expr.infixString(), infix.toString());
+
+        CharBuffer postfix = CharBuffer.allocate(64);
+        expr.writePostfix(postfix);
+        assertEquals("x 0.1 + sqrt() 2.0E23 y - *", postfix.flip().toString());
+        assertEquals(expr.postfixString(), postfix.toString());
+        assertThrows(BufferOverflowException.class, () -> expr.writeInfix(CharBuffer.allocate(8)));
+
+        Expression deep = chain(100_000);
+        StringBuilder sb = new StringBuilder();
+        deep.writePostfix(sb);
+        assertEquals(deep.postfixString(), sb.toString());
+    }
+}